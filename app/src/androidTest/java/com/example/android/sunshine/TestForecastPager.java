@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.example.android.sunshine.ForecastPager.MAX_LOADED_PAGES;
+import static com.example.android.sunshine.ForecastPager.PAGE_SIZE;
+import static com.example.android.sunshine.ForecastPager.PREFETCH_DISTANCE;
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Checks {@link ForecastPager}'s bookkeeping without a database: when it asks for the next page,
+ * how it stitches later pages onto a reloaded first page, where the list ends, and that it only
+ * keeps a few pages open. The test stands in for the background queries and answers each page
+ * request itself, with rows numbered by epoch day.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestForecastPager {
+
+    private static final long FIRST_DAY = 17000;
+
+    private final List<ForecastPager.PageRequest> mRequests = new ArrayList<>();
+    private final List<int[]> mChangedRanges = new ArrayList<>();
+    private int mInsertedStart = -1;
+    private int mInsertedCount = -1;
+
+    private ForecastPager mPager;
+
+    @Before
+    public void setUp() {
+        mPager = new ForecastPager(
+                new ForecastPager.PageLoader() {
+                    @Override
+                    public void load(ForecastPager.PageRequest request) {
+                        mRequests.add(request);
+                    }
+                },
+                new ForecastPager.Listener() {
+                    @Override
+                    public void onRowsInserted(int positionStart, int rowCount) {
+                        mInsertedStart = positionStart;
+                        mInsertedCount = rowCount;
+                    }
+
+                    @Override
+                    public void onRowsChanged(int positionStart, int rowCount) {
+                        mChangedRanges.add(new int[]{positionStart, rowCount});
+                    }
+
+                    @Override
+                    public void onAllRowsChanged() {
+                    }
+                });
+    }
+
+    @Test
+    public void testNextPageLoadsNearTheEnd() {
+        mPager.setFirstPage(createPage(FIRST_DAY, PAGE_SIZE));
+
+        mPager.onRowShown(PAGE_SIZE - PREFETCH_DISTANCE - 1);
+        assertTrue(mRequests.isEmpty());
+
+        mPager.onRowShown(PAGE_SIZE - PREFETCH_DISTANCE);
+        assertEquals(1, mRequests.size());
+        assertEquals(FIRST_DAY + PAGE_SIZE - 1, mRequests.get(0).getAfterEpochDay());
+
+        /* Only one load of the next page at a time */
+        mPager.onRowShown(PAGE_SIZE - 1);
+        assertEquals(1, mRequests.size());
+
+        answer(mRequests.get(0), PAGE_SIZE);
+        assertEquals(2 * PAGE_SIZE, mPager.getCount());
+        assertEquals(PAGE_SIZE, mInsertedStart);
+        assertEquals(PAGE_SIZE, mInsertedCount);
+        assertEquals(FIRST_DAY + PAGE_SIZE, getDay(PAGE_SIZE));
+    }
+
+    @Test
+    public void testNothingLoadsPastTheEnd() {
+        mPager.setFirstPage(createPage(FIRST_DAY, PAGE_SIZE));
+        mPager.onRowShown(PAGE_SIZE - 1);
+
+        /* A short page is the last one */
+        answer(mRequests.remove(0), 5);
+        assertEquals(PAGE_SIZE + 5, mPager.getCount());
+        mPager.onRowShown(PAGE_SIZE + 4);
+        assertTrue(mRequests.isEmpty());
+
+        /* So is a short first page */
+        mPager.setFirstPage(createPage(FIRST_DAY, 5));
+        assertEquals(5, mPager.getCount());
+        mPager.onRowShown(4);
+        assertTrue(mRequests.isEmpty());
+
+        mPager.setFirstPage(null);
+        assertEquals(0, mPager.getCount());
+    }
+
+    @Test
+    public void testLaterPagesFollowReloadedFirstPage() {
+        mPager.setFirstPage(createPage(FIRST_DAY, PAGE_SIZE));
+        scrollToEnd();
+        scrollToEnd();
+        assertEquals(3 * PAGE_SIZE, mPager.getCount());
+
+        /* The same days again, so the open pages reload in place and keep their rows till then */
+        mPager.setFirstPage(createPage(FIRST_DAY, PAGE_SIZE));
+        assertEquals(3 * PAGE_SIZE, mPager.getCount());
+        assertEquals(2, mRequests.size());
+        assertEquals(FIRST_DAY + PAGE_SIZE - 1, mRequests.get(0).getAfterEpochDay());
+        assertEquals(FIRST_DAY + 2 * PAGE_SIZE - 1, mRequests.get(1).getAfterEpochDay());
+        assertEquals(FIRST_DAY + PAGE_SIZE, getDay(PAGE_SIZE));
+
+        answer(mRequests.remove(0), PAGE_SIZE);
+        answer(mRequests.remove(0), PAGE_SIZE);
+        assertEquals(3 * PAGE_SIZE, mPager.getCount());
+        assertEquals(2, mChangedRanges.size());
+        assertEquals(PAGE_SIZE, mChangedRanges.get(0)[0]);
+        assertEquals(2 * PAGE_SIZE, mChangedRanges.get(1)[0]);
+        assertEquals(FIRST_DAY + 2 * PAGE_SIZE + 1, getDay(2 * PAGE_SIZE + 1));
+
+        /* A day passes. The later pages no longer line up, and a reload in flight is dropped. */
+        mPager.setFirstPage(createPage(FIRST_DAY, PAGE_SIZE));
+        ForecastPager.PageRequest staleRequest = mRequests.remove(0);
+        mRequests.clear();
+        mPager.setFirstPage(createPage(FIRST_DAY + 1, PAGE_SIZE));
+        assertEquals(PAGE_SIZE, mPager.getCount());
+        assertTrue(mRequests.isEmpty());
+
+        Cursor stalePage = answer(staleRequest, PAGE_SIZE);
+        assertTrue(stalePage.isClosed());
+        assertEquals(PAGE_SIZE, mPager.getCount());
+
+        mPager.onRowShown(PAGE_SIZE - PREFETCH_DISTANCE);
+        assertEquals(FIRST_DAY + PAGE_SIZE, mRequests.get(0).getAfterEpochDay());
+        answer(mRequests.remove(0), PAGE_SIZE);
+        assertEquals(FIRST_DAY + PAGE_SIZE + 1, getDay(PAGE_SIZE));
+    }
+
+    @Test
+    public void testFarPagesAreClosedAndLoadedAgain() {
+        mPager.setFirstPage(createPage(FIRST_DAY, PAGE_SIZE));
+        Cursor secondPage = scrollToEnd();
+        for (int i = 0; i < MAX_LOADED_PAGES + 1; i++) {
+            scrollToEnd();
+        }
+        int count = (MAX_LOADED_PAGES + 3) * PAGE_SIZE;
+        assertEquals(count, mPager.getCount());
+
+        /* The pages furthest back were closed, but their rows stay where they were */
+        assertTrue(secondPage.isClosed());
+        assertNull(mPager.moveToPosition(PAGE_SIZE));
+        assertTrue(mPager.getItemId(PAGE_SIZE) < -1);
+        assertNotNull(mPager.moveToPosition(count - 1));
+
+        /* Scrolling back loads the page again, and now the page at the end is the furthest */
+        mPager.onRowShown(PAGE_SIZE);
+        assertEquals(1, mRequests.size());
+        assertEquals(FIRST_DAY + PAGE_SIZE - 1, mRequests.get(0).getAfterEpochDay());
+        answer(mRequests.remove(0), PAGE_SIZE);
+
+        assertEquals(count, mPager.getCount());
+        assertEquals(FIRST_DAY + PAGE_SIZE, getDay(PAGE_SIZE));
+        assertEquals(PAGE_SIZE, mChangedRanges.get(0)[0]);
+        assertNull(mPager.moveToPosition(count - 1));
+
+        mPager.close();
+        assertEquals(0, mPager.getCount());
+    }
+
+    /*
+     * Shows the last row, which asks for the next page, and answers with a full page.
+     */
+    private Cursor scrollToEnd() {
+        mPager.onRowShown(mPager.getCount() - 1);
+        assertEquals(1, mRequests.size());
+        return answer(mRequests.remove(0), PAGE_SIZE);
+    }
+
+    private Cursor answer(ForecastPager.PageRequest request, int rowCount) {
+        Cursor page = createPage(request.getAfterEpochDay() + 1, rowCount);
+        mPager.onPageLoaded(request, page);
+        return page;
+    }
+
+    private long getDay(int position) {
+        Cursor cursor = mPager.moveToPosition(position);
+        return SunshineDateUtils.getEpochDay(cursor.getLong(MainActivity.INDEX_WEATHER_DATE));
+    }
+
+    private static Cursor createPage(long firstDay, int rowCount) {
+        MatrixCursor page = new MatrixCursor(MainActivity.MAIN_FORECAST_PROJECTION, rowCount);
+        for (long day = firstDay; day < firstDay + rowCount; day++) {
+            page.addRow(new Object[]{day * SunshineDateUtils.DAY_IN_MILLIS, 20.0, 10.0, 800});
+        }
+        return page;
+    }
+}
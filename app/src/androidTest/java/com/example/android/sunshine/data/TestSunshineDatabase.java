@@ -32,7 +32,6 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.HashSet;
-import java.util.concurrent.TimeUnit;
 
 import static com.example.android.sunshine.data.TestUtilities.getConstantNameByStringValue;
 import static com.example.android.sunshine.data.TestUtilities.getStaticIntegerField;
@@ -95,8 +94,8 @@ public class TestSunshineDatabase {
     private static final String tableNameVariableName = "TABLE_NAME";
     private static String REFLECTED_TABLE_NAME;
 
-    private static final String columnDateVariableName = "COLUMN_DATE";
-    static String REFLECTED_COLUMN_DATE;
+    private static final String columnEpochDayVariableName = "COLUMN_EPOCH_DAY";
+    static String REFLECTED_COLUMN_EPOCH_DAY;
 
     private static final String columnWeatherIdVariableName = "COLUMN_WEATHER_ID";
     static String REFLECTED_COLUMN_WEATHER_ID;
@@ -134,7 +133,7 @@ public class TestSunshineDatabase {
             }
 
             REFLECTED_TABLE_NAME = getStaticStringField(weatherEntryClass, tableNameVariableName);
-            REFLECTED_COLUMN_DATE = getStaticStringField(weatherEntryClass, columnDateVariableName);
+            REFLECTED_COLUMN_EPOCH_DAY = getStaticStringField(weatherEntryClass, columnEpochDayVariableName);
             REFLECTED_COLUMN_WEATHER_ID = getStaticStringField(weatherEntryClass, columnWeatherIdVariableName);
             REFLECTED_COLUMN_MIN = getStaticStringField(weatherEntryClass, columnMinVariableName);
             REFLECTED_COLUMN_MAX = getStaticStringField(weatherEntryClass, columnMaxVariableName);
@@ -193,7 +192,7 @@ public class TestSunshineDatabase {
 
     @Test
     public void testDatabaseVersionWasIncremented() {
-        int expectedDatabaseVersion = 3;
+        int expectedDatabaseVersion = 5;
         String databaseVersionShouldBe1 = "Database version should be "
                 + expectedDatabaseVersion + " but isn't."
                 + "\n Database version: ";
@@ -257,7 +256,7 @@ public class TestSunshineDatabase {
         /* Query for a weather record with our new weather ID */
         Cursor newWeatherIdCursor = database.query(
                 REFLECTED_TABLE_NAME,
-                new String[]{REFLECTED_COLUMN_DATE},
+                new String[]{REFLECTED_COLUMN_EPOCH_DAY},
                 null,
                 null,
                 null,
@@ -348,7 +347,7 @@ public class TestSunshineDatabase {
         ContentValues testWeatherValues = TestUtilities.createTestWeatherContentValues();
 
         /* Get the date of the testWeatherValues to ensure we use a different date later */
-        long originalDate = testWeatherValues.getAsLong(REFLECTED_COLUMN_DATE);
+        long originalDate = testWeatherValues.getAsLong(REFLECTED_COLUMN_EPOCH_DAY);
 
         /* Insert ContentValues into database and get a row ID back */
         long firstRowId = database.insert(
@@ -366,8 +365,8 @@ public class TestSunshineDatabase {
          * Now we need to change the date associated with our test content values because the
          * database policy is to replace identical dates on conflict.
          */
-        long dayAfterOriginalDate = originalDate + TimeUnit.DAYS.toMillis(1);
-        testWeatherValues.put(REFLECTED_COLUMN_DATE, dayAfterOriginalDate);
+        long dayAfterOriginalDate = originalDate + 1;
+        testWeatherValues.put(REFLECTED_COLUMN_EPOCH_DAY, dayAfterOriginalDate);
 
         /* Insert ContentValues into database and get another row ID back */
         long secondRowId = database.insert(
@@ -436,6 +435,51 @@ public class TestSunshineDatabase {
         database.close();
     }
 
+    /**
+     * Upgrading from version 4 should keep the weather we have, with each date in milliseconds
+     * turned into an epoch day.
+     */
+    @Test
+    public void testOnUpgradeMigratesDatesToEpochDays() {
+
+        /* Put the weather table back the way it was in version 4 */
+        database.execSQL("DROP TABLE " + REFLECTED_TABLE_NAME);
+        database.execSQL("CREATE TABLE " + REFLECTED_TABLE_NAME + " ("
+                + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "date INTEGER NOT NULL, "
+                + "weather_id INTEGER NOT NULL, "
+                + "min REAL NOT NULL, "
+                + "max REAL NOT NULL, "
+                + "humidity REAL NOT NULL, "
+                + "pressure REAL NOT NULL, "
+                + "wind REAL NOT NULL, "
+                + "degrees REAL NOT NULL, "
+                + "UNIQUE (date) ON CONFLICT REPLACE)");
+
+        ContentValues oldWeatherValues = TestUtilities.createTestWeatherContentValues();
+        oldWeatherValues.remove(REFLECTED_COLUMN_EPOCH_DAY);
+        oldWeatherValues.put("date", TestUtilities.DATE_NORMALIZED);
+        assertTrue(database.insert(REFLECTED_TABLE_NAME, null, oldWeatherValues) != -1);
+
+        dbHelper.onUpgrade(database, 4, 5);
+
+        Cursor weatherCursor = database.query(
+                REFLECTED_TABLE_NAME,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null);
+
+        assertEquals("The weather should have survived the upgrade",
+                1,
+                weatherCursor.getCount());
+        TestUtilities.validateThenCloseCursor("Error: weather changed in the upgrade",
+                weatherCursor,
+                TestUtilities.createTestWeatherContentValues());
+    }
+
     /**
      * This method tests that our database contains all of the tables that we think it should
      * contain. Although in our case, we just have one table that we expect should be added
@@ -456,6 +500,8 @@ public class TestSunshineDatabase {
 
         /* Here, we add the name of our only table in this particular database */
         tableNameHashSet.add(REFLECTED_TABLE_NAME);
+        /* The weather history archive lives alongside it */
+        tableNameHashSet.add(WeatherContract.ArchiveEntry.TABLE_NAME);
         /* Students, here is where you would add any other table names if you had them */
 //        tableNameHashSet.add(MyAwesomeSuperCoolTableName);
 //        tableNameHashSet.add(MyOtherCoolTableNameThatContainsOtherCoolData);
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+import com.example.android.sunshine.utilities.SyntheticWeatherGenerator;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Checks that {@link SyntheticWeatherGenerator} is reproducible, that its weather is within the
+ * bounds the rest of the app expects, and that it can stream a large dataset into the provider.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestSyntheticWeatherGenerator {
+
+    private static final long SEED = 20161002L;
+
+    /* October 2, 2016, normalized */
+    private static final long FIRST_DATE = 1475366400000L;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    @Before
+    public void setUp() {
+        mContext.getContentResolver().delete(WeatherContract.WeatherEntry.CONTENT_URI, null, null);
+    }
+
+    /**
+     * A row depends on the seed, location and date alone, not on what was generated before it.
+     */
+    @Test
+    public void testSameSeedGivesSameWeather() {
+        SyntheticWeatherGenerator first = new SyntheticWeatherGenerator(SEED, 3);
+        SyntheticWeatherGenerator second = new SyntheticWeatherGenerator(SEED, 3);
+
+        /* Warm the first generator up on other days, so its sequence has moved on */
+        for (int i = 0; i < 100; i++) {
+            first.createWeatherValues(FIRST_DATE + i * SunshineDateUtils.DAY_IN_MILLIS);
+        }
+
+        long date = FIRST_DATE + 42 * SunshineDateUtils.DAY_IN_MILLIS;
+        assertEquals(second.createWeatherValues(date), first.createWeatherValues(date));
+    }
+
+    @Test
+    public void testLocationsHaveDifferentWeather() {
+        ContentValues here = new SyntheticWeatherGenerator(SEED, 0).createWeatherValues(FIRST_DATE);
+        ContentValues there = new SyntheticWeatherGenerator(SEED, 1).createWeatherValues(FIRST_DATE);
+        assertFalse(here.equals(there));
+    }
+
+    /**
+     * Ten years of weather should stay within sensible bounds and use a good spread of
+     * conditions.
+     */
+    @Test
+    public void testWeatherIsWithinBounds() {
+        SyntheticWeatherGenerator generator = new SyntheticWeatherGenerator(SEED, 0);
+        Set<Integer> weatherIds = new HashSet<>();
+
+        for (int i = 0; i < 3653; i++) {
+            ContentValues values =
+                    generator.createWeatherValues(FIRST_DATE + i * SunshineDateUtils.DAY_IN_MILLIS);
+
+            double high = values.getAsDouble(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP);
+            double low = values.getAsDouble(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP);
+            assertTrue(low <= high);
+            assertTrue(high < 60 && low > -70);
+
+            double humidity = values.getAsDouble(WeatherContract.WeatherEntry.COLUMN_HUMIDITY);
+            assertTrue(humidity >= 0 && humidity <= 100);
+
+            double degrees = values.getAsDouble(WeatherContract.WeatherEntry.COLUMN_DEGREES);
+            assertTrue(degrees >= 0 && degrees <= 360);
+
+            weatherIds.add(values.getAsInteger(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID));
+        }
+
+        assertTrue("Only saw " + weatherIds, weatherIds.size() >= 10);
+    }
+
+    /**
+     * Streams a dataset much larger than a single batch into the provider.
+     */
+    @Test
+    public void testInsertStreamsIntoProvider() {
+        int dayCount = 20000;
+        int inserted = new SyntheticWeatherGenerator(SEED, 0)
+                .insert(mContext, FIRST_DATE, dayCount);
+        assertEquals(dayCount, inserted);
+
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherContract.WeatherEntry.CONTENT_URI,
+                null,
+                null,
+                null,
+                null);
+        assertTrue(cursor != null);
+        try {
+            assertEquals(dayCount, cursor.getCount());
+        } finally {
+            cursor.close();
+        }
+    }
+}
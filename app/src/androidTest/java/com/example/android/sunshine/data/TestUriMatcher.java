@@ -44,6 +44,9 @@ public class TestUriMatcher {
     private static final String weatherCodeWithDateVariableName = "CODE_WEATHER_WITH_DATE";
     private static int REFLECTED_WEATHER_WITH_DATE_CODE;
 
+    private static final String weatherCodeUpcomingVariableName = "CODE_WEATHER_UPCOMING";
+    private static int REFLECTED_WEATHER_UPCOMING_CODE;
+
     private UriMatcher testMatcher;
 
     @Before
@@ -61,6 +64,10 @@ public class TestUriMatcher {
                     WeatherProvider.class,
                     weatherCodeWithDateVariableName);
 
+            REFLECTED_WEATHER_UPCOMING_CODE = getStaticIntegerField(
+                    WeatherProvider.class,
+                    weatherCodeUpcomingVariableName);
+
         } catch (NoSuchFieldException e) {
             fail(studentReadableNoSuchField(e));
         } catch (IllegalAccessException e) {
@@ -101,5 +108,12 @@ public class TestUriMatcher {
         assertEquals(weatherWithDateUriCodeDoesNotMatch,
                 expectedWeatherWithDateCode,
                 actualWeatherWithDateCode);
+
+        /* "upcoming" isn't a number, so it mustn't be mistaken for a date */
+        String weatherUpcomingUriCodeDoesNotMatch =
+                "Error: The CODE_WEATHER_UPCOMING URI was matched incorrectly.";
+        assertEquals(weatherUpcomingUriCodeDoesNotMatch,
+                REFLECTED_WEATHER_UPCOMING_CODE,
+                testMatcher.match(WeatherContract.WeatherEntry.UPCOMING_URI));
     }
 }
@@ -32,7 +32,7 @@ import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import static com.example.android.sunshine.data.WeatherContract.WeatherEntry.COLUMN_DATE;
+import static com.example.android.sunshine.data.WeatherContract.WeatherEntry.COLUMN_EPOCH_DAY;
 import static com.example.android.sunshine.data.WeatherContract.WeatherEntry.COLUMN_DEGREES;
 import static com.example.android.sunshine.data.WeatherContract.WeatherEntry.COLUMN_HUMIDITY;
 import static com.example.android.sunshine.data.WeatherContract.WeatherEntry.COLUMN_MAX_TEMP;
@@ -120,7 +120,7 @@ class TestUtilities {
 
         ContentValues testWeatherValues = new ContentValues();
 
-        testWeatherValues.put(COLUMN_DATE, DATE_NORMALIZED);
+        testWeatherValues.put(COLUMN_EPOCH_DAY, SunshineDateUtils.getEpochDay(DATE_NORMALIZED));
         testWeatherValues.put(COLUMN_DEGREES, 1.1);
         testWeatherValues.put(COLUMN_HUMIDITY, 1.2);
         testWeatherValues.put(COLUMN_PRESSURE, 1.3);
@@ -157,7 +157,7 @@ class TestUtilities {
 
             ContentValues weatherValues = new ContentValues();
 
-            weatherValues.put(COLUMN_DATE, normalizedTestDate);
+            weatherValues.put(COLUMN_EPOCH_DAY, SunshineDateUtils.getEpochDay(normalizedTestDate));
             weatherValues.put(COLUMN_DEGREES, 1.1);
             weatherValues.put(COLUMN_HUMIDITY, 1.2 + 0.01 * (float) i);
             weatherValues.put(COLUMN_PRESSURE, 1.3 - 0.01 * (float) i);
@@ -188,6 +188,7 @@ class TestUtilities {
     static class TestContentObserver extends ContentObserver {
         final HandlerThread mHT;
         boolean mContentChanged;
+        volatile int mChangeCount;
 
         private TestContentObserver(HandlerThread ht) {
             super(new Handler(ht.getLooper()));
@@ -222,6 +223,7 @@ class TestUtilities {
          */
         @Override
         public void onChange(boolean selfChange, Uri uri) {
+            mChangeCount++;
             mContentChanged = true;
         }
 
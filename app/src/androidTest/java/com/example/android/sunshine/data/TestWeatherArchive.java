@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.sunshine.data.WeatherContract.ArchiveEntry;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Checks that the weather history archive is downsampled into weeks and months as it ages, that
+ * it is trimmed to its retention budget, and that none of this touches the weather table.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestWeatherArchive {
+
+    private static final String LOCATION = "37.39,-122.08";
+
+    /* A little over a year, so that every tier of the archive gets used */
+    private static final int HISTORY_DAYS = 400;
+
+    /* Large enough that nothing has to be dropped */
+    private static final long GENEROUS_BUDGET = 1024 * 1024;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+    private final ContentResolver mResolver = mContext.getContentResolver();
+
+    private long mTodayEpochDay;
+
+    @Before
+    public void setUp() {
+        mResolver.delete(ArchiveEntry.CONTENT_URI, null, null);
+        mResolver.delete(WeatherContract.WeatherEntry.CONTENT_URI, null, null);
+
+        mTodayEpochDay = SunshineDateUtils.getNormalizedUtcDateForToday()
+                / SunshineDateUtils.DAY_IN_MILLIS;
+
+        /* Archive one row for every day from HISTORY_DAYS ago up to and including today */
+        ContentValues[] history = new ContentValues[HISTORY_DAYS];
+        for (int i = 0; i < HISTORY_DAYS; i++) {
+            history[i] = createDay(mTodayEpochDay - HISTORY_DAYS + 1 + i);
+        }
+        assertEquals(HISTORY_DAYS, mResolver.bulkInsert(ArchiveEntry.CONTENT_URI, history));
+    }
+
+    @Test
+    public void testOldDaysAreDownsampled() {
+        int rowsRemoved = WeatherArchive.compact(mContext, GENEROUS_BUDGET);
+        assertTrue(rowsRemoved > 0);
+
+        /* Days are only kept within the last DAILY_RETENTION_DAYS, give or take a partial week */
+        long oldestDay = getLong("MIN(" + ArchiveEntry.COLUMN_EPOCH_DAY + ")",
+                ArchiveEntry.RESOLUTION_DAY);
+        assertTrue(oldestDay >= mTodayEpochDay - WeatherArchiveCompactor.DAILY_RETENTION_DAYS - 6);
+
+        assertTrue(getLong("COUNT(*)", ArchiveEntry.RESOLUTION_WEEK) > 0);
+        assertTrue(getLong("COUNT(*)", ArchiveEntry.RESOLUTION_MONTH) > 0);
+
+        /* Nothing was dropped, so every day is still accounted for exactly once */
+        assertEquals(HISTORY_DAYS, getLong("SUM(" + ArchiveEntry.COLUMN_DAY_COUNT + ")", null));
+        assertEquals(HISTORY_DAYS - rowsRemoved, getLong("COUNT(*)", null));
+    }
+
+    /**
+     * A week's temperatures are the lowest low and highest high of its days.
+     */
+    @Test
+    public void testWeeksSummarizeTheirDays() {
+        WeatherArchive.compact(mContext, GENEROUS_BUDGET);
+
+        Cursor cursor = mResolver.query(ArchiveEntry.CONTENT_URI,
+                new String[]{
+                        ArchiveEntry.COLUMN_EPOCH_DAY,
+                        ArchiveEntry.COLUMN_DAY_COUNT,
+                        ArchiveEntry.COLUMN_MIN_TEMP,
+                        ArchiveEntry.COLUMN_MAX_TEMP},
+                ArchiveEntry.COLUMN_RESOLUTION + " = ?",
+                new String[]{Integer.toString(ArchiveEntry.RESOLUTION_WEEK)},
+                null);
+        assertTrue(cursor != null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            do {
+                long monday = cursor.getLong(0);
+                assertEquals(7, cursor.getInt(1));
+
+                double expectedMin = Double.MAX_VALUE;
+                double expectedMax = -Double.MAX_VALUE;
+                for (long day = monday; day < monday + 7; day++) {
+                    expectedMin = Math.min(expectedMin, getMinTemp(day));
+                    expectedMax = Math.max(expectedMax, getMinTemp(day) + 10);
+                }
+                assertEquals(expectedMin, cursor.getDouble(2), 0);
+                assertEquals(expectedMax, cursor.getDouble(3), 0);
+            } while (cursor.moveToNext());
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Compacting twice in a row shouldn't change anything the second time.
+     */
+    @Test
+    public void testCompactionIsIdempotent() {
+        WeatherArchive.compact(mContext, GENEROUS_BUDGET);
+        long rowCount = getLong("COUNT(*)", null);
+
+        assertEquals(0, WeatherArchive.compact(mContext, GENEROUS_BUDGET));
+        assertEquals(rowCount, getLong("COUNT(*)", null));
+    }
+
+    /**
+     * Over budget, the oldest rows go first.
+     */
+    @Test
+    public void testSmallBudgetDropsOldestRows() {
+        int maxRows = 10;
+        WeatherArchive.compact(mContext, maxRows * WeatherArchiveCompactor.ESTIMATED_ROW_BYTES);
+
+        assertEquals(maxRows, getLong("COUNT(*)", null));
+        assertEquals(mTodayEpochDay - maxRows + 1,
+                getLong("MIN(" + ArchiveEntry.COLUMN_EPOCH_DAY + ")", null));
+    }
+
+    @Test
+    public void testArchiveDoesNotTouchWeatherTable() {
+        ContentValues[] weather = TestUtilities.createBulkInsertTestWeatherValues();
+        assertEquals(weather.length,
+                mResolver.bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, weather));
+
+        WeatherArchive.archive(mContext, weather);
+        WeatherArchive.compact(mContext, 0);
+
+        Cursor cursor = mResolver.query(WeatherContract.WeatherEntry.CONTENT_URI,
+                null,
+                null,
+                null,
+                null);
+        assertTrue(cursor != null);
+        try {
+            assertEquals(weather.length, cursor.getCount());
+        } finally {
+            cursor.close();
+        }
+        assertEquals(0, getLong("COUNT(*)", null));
+    }
+
+    private static double getMinTemp(long epochDay) {
+        return epochDay % 17;
+    }
+
+    private static ContentValues createDay(long epochDay) {
+        ContentValues values = new ContentValues();
+        values.put(ArchiveEntry.COLUMN_LOCATION, LOCATION);
+        values.put(ArchiveEntry.COLUMN_EPOCH_DAY, epochDay);
+        values.put(ArchiveEntry.COLUMN_RESOLUTION, ArchiveEntry.RESOLUTION_DAY);
+        values.put(ArchiveEntry.COLUMN_DAY_COUNT, 1);
+        values.put(ArchiveEntry.COLUMN_WEATHER_ID, epochDay % 3 == 0 ? 500 : 800);
+        values.put(ArchiveEntry.COLUMN_MIN_TEMP, getMinTemp(epochDay));
+        values.put(ArchiveEntry.COLUMN_MAX_TEMP, getMinTemp(epochDay) + 10);
+        values.put(ArchiveEntry.COLUMN_HUMIDITY, 60);
+        values.put(ArchiveEntry.COLUMN_PRESSURE, 1013);
+        values.put(ArchiveEntry.COLUMN_WIND_SPEED, 3);
+        values.put(ArchiveEntry.COLUMN_DEGREES, 90);
+        return values;
+    }
+
+    /**
+     * Evaluates an aggregate over the archive.
+     *
+     * @param resolution Only look at rows with this resolution, or null for all of them
+     */
+    private long getLong(String aggregate, Integer resolution) {
+        Cursor cursor = mResolver.query(ArchiveEntry.CONTENT_URI,
+                new String[]{aggregate},
+                resolution == null ? null : ArchiveEntry.COLUMN_RESOLUTION + " = ?",
+                resolution == null ? null : new String[]{resolution.toString()},
+                null);
+        assertTrue(cursor != null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+}
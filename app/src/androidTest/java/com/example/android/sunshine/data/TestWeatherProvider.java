@@ -16,6 +16,8 @@
 package com.example.android.sunshine.data;
 
 import android.content.ComponentName;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
@@ -27,10 +29,14 @@ import android.net.Uri;
 import android.support.test.InstrumentationRegistry;
 import android.support.test.runner.AndroidJUnit4;
 
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.ArrayList;
+
 import static com.example.android.sunshine.data.TestUtilities.BULK_INSERT_RECORDS_TO_INSERT;
 import static com.example.android.sunshine.data.TestUtilities.createBulkInsertTestWeatherValues;
 import static junit.framework.Assert.assertEquals;
@@ -301,7 +307,7 @@ public class TestWeatherProvider {
                 /* Values for "where" clause */
                 null,
                 /* Sort by date from smaller to larger (past to future) */
-                WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+                WeatherContract.WeatherEntry.COLUMN_EPOCH_DAY + " ASC");
 
         /*
          * Although we already tested the number of records that the ContentProvider reported
@@ -423,6 +429,275 @@ public class TestWeatherProvider {
         shouldBeEmptyCursor.close();
     }
 
+    /**
+     * The weather table stores epoch days, but callers that still insert and read COLUMN_DATE in
+     * milliseconds, or hold on to a URI with a date in milliseconds, should not notice.
+     */
+    @Test
+    public void testDatesInMillisStillWork() {
+        ContentValues weatherValues = TestUtilities.createTestWeatherContentValues();
+        weatherValues.remove(WeatherContract.WeatherEntry.COLUMN_EPOCH_DAY);
+        weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DATE, TestUtilities.DATE_NORMALIZED);
+
+        ContentResolver contentResolver = mContext.getContentResolver();
+        assertEquals(1, contentResolver.bulkInsert(
+                WeatherContract.WeatherEntry.CONTENT_URI,
+                new ContentValues[]{weatherValues}));
+
+        /* The caller's values must not have been rewritten */
+        assertEquals(TestUtilities.DATE_NORMALIZED,
+                (long) weatherValues.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE));
+
+        String[] projection = {
+                WeatherContract.WeatherEntry.COLUMN_DATE,
+                WeatherContract.WeatherEntry.COLUMN_EPOCH_DAY
+        };
+        long epochDay = SunshineDateUtils.getEpochDay(TestUtilities.DATE_NORMALIZED);
+        Uri[] uris = {
+                WeatherContract.WeatherEntry.buildWeatherUriWithEpochDay(epochDay),
+                WeatherContract.WeatherEntry.buildWeatherUriWithDate(TestUtilities.DATE_NORMALIZED),
+                WeatherContract.WeatherEntry.CONTENT_URI.buildUpon()
+                        .appendPath(Long.toString(TestUtilities.DATE_NORMALIZED))
+                        .build()
+        };
+
+        for (Uri uri : uris) {
+            assertEquals(TestUtilities.DATE_NORMALIZED,
+                    WeatherContract.WeatherEntry.getDateFromUri(uri));
+
+            Cursor cursor = contentResolver.query(uri, projection, null, null, null);
+            assertNotNull(cursor);
+            try {
+                assertTrue("No weather for " + uri, cursor.moveToFirst());
+                assertEquals(TestUtilities.DATE_NORMALIZED, cursor.getLong(0));
+                assertEquals(epochDay, cursor.getLong(1));
+            } finally {
+                cursor.close();
+            }
+        }
+    }
+
+    /**
+     * The upcoming URI should only return weather from today onwards, sorted by date, and should
+     * still honor a selection of the caller's own.
+     */
+    @Test
+    public void testUpcomingQuery() {
+        long today = SunshineDateUtils.getEpochDay(
+                SunshineDateUtils.normalizeDate(System.currentTimeMillis()));
+
+        /* A few days in the past, today, and a few days in the future, inserted out of order */
+        ContentValues[] weatherValues = new ContentValues[7];
+        for (int i = 0; i < weatherValues.length; i++) {
+            weatherValues[i] = TestUtilities.createTestWeatherContentValues();
+            weatherValues[i].put(WeatherContract.WeatherEntry.COLUMN_EPOCH_DAY, today + 3 - i);
+            weatherValues[i].put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, 800 + i);
+        }
+        ContentResolver contentResolver = mContext.getContentResolver();
+        contentResolver.bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, weatherValues);
+
+        String[] projection = {WeatherContract.WeatherEntry.COLUMN_EPOCH_DAY};
+
+        Cursor cursor = contentResolver.query(WeatherContract.WeatherEntry.UPCOMING_URI,
+                projection,
+                null,
+                null,
+                null);
+        assertNotNull(cursor);
+        try {
+            assertEquals(4, cursor.getCount());
+            for (int i = 0; cursor.moveToNext(); i++) {
+                assertEquals(today + i, cursor.getLong(0));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        /* Today is 803, so this leaves today and tomorrow */
+        cursor = contentResolver.query(WeatherContract.WeatherEntry.UPCOMING_URI,
+                projection,
+                WeatherContract.WeatherEntry.COLUMN_WEATHER_ID + " >= ?",
+                new String[]{"802"},
+                null);
+        assertNotNull(cursor);
+        try {
+            assertEquals(2, cursor.getCount());
+            assertTrue(cursor.moveToFirst());
+            assertEquals(today, cursor.getLong(0));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Paging through the weather should visit every row exactly once, in date order, whatever
+     * sort order the caller asks for, and the last page should be the only short one.
+     */
+    @Test
+    public void testPagedQuery() {
+        testBulkInsert();
+
+        ContentResolver contentResolver = mContext.getContentResolver();
+        String[] projection = {WeatherContract.WeatherEntry.COLUMN_EPOCH_DAY};
+        int pageSize = 4;
+
+        Uri pageUri = WeatherContract.WeatherEntry.buildPageUri(
+                WeatherContract.WeatherEntry.CONTENT_URI, pageSize);
+        long previousEpochDay = Long.MIN_VALUE;
+        int rowCount = 0;
+        int pageCount = 0;
+
+        while (pageUri != null) {
+            Cursor page = contentResolver.query(pageUri,
+                    projection,
+                    null,
+                    null,
+                    WeatherContract.WeatherEntry.COLUMN_EPOCH_DAY + " DESC");
+            assertNotNull(page);
+            try {
+                assertTrue(page.getCount() <= pageSize);
+                while (page.moveToNext()) {
+                    long epochDay = page.getLong(0);
+                    assertTrue(epochDay > previousEpochDay);
+                    previousEpochDay = epochDay;
+                    rowCount++;
+                }
+                pageCount++;
+
+                pageUri = page.getCount() < pageSize
+                        ? null
+                        : WeatherContract.WeatherEntry.buildPageUri(
+                                WeatherContract.WeatherEntry.CONTENT_URI,
+                                previousEpochDay,
+                                pageSize);
+            } finally {
+                page.close();
+            }
+        }
+
+        assertEquals(BULK_INSERT_RECORDS_TO_INSERT, rowCount);
+        assertEquals(BULK_INSERT_RECORDS_TO_INSERT / pageSize + 1, pageCount);
+    }
+
+    /**
+     * A batch is applied in one transaction. Each day it changed is notified once, at that day's
+     * URI, and the forecast list is notified once at CHANGES_URI, however many operations the
+     * batch contains. Days the batch didn't touch aren't notified at all.
+     */
+    @Test
+    public void testApplyBatchNotifiesOnce() throws Exception {
+        testBulkInsert();
+
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        operations.add(ContentProviderOperation
+                .newDelete(WeatherContract.WeatherEntry.CONTENT_URI)
+                .build());
+        ContentValues[] weatherValues = createBulkInsertTestWeatherValues();
+        for (ContentValues weather : weatherValues) {
+            weather.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, 800);
+            operations.add(ContentProviderOperation
+                    .newInsert(WeatherContract.WeatherEntry.CONTENT_URI)
+                    .withValues(weather)
+                    .build());
+        }
+
+        long changedDay = SunshineDateUtils.getEpochDay(
+                weatherValues[0].getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE));
+        long untouchedDay = changedDay - 1;
+
+        ContentResolver contentResolver = mContext.getContentResolver();
+
+        TestUtilities.TestContentObserver listObserver = TestUtilities.getTestContentObserver();
+        contentResolver.registerContentObserver(WeatherContract.WeatherEntry.CHANGES_URI,
+                false,
+                listObserver);
+
+        TestUtilities.TestContentObserver changedDayObserver =
+                TestUtilities.getTestContentObserver();
+        contentResolver.registerContentObserver(
+                WeatherContract.WeatherEntry.buildWeatherUriWithEpochDay(changedDay),
+                false,
+                changedDayObserver);
+
+        TestUtilities.TestContentObserver untouchedDayObserver =
+                TestUtilities.getTestContentObserver();
+        contentResolver.registerContentObserver(
+                WeatherContract.WeatherEntry.buildWeatherUriWithEpochDay(untouchedDay),
+                false,
+                untouchedDayObserver);
+
+        ContentProviderResult[] results =
+                contentResolver.applyBatch(WeatherContract.CONTENT_AUTHORITY, operations);
+        assertEquals(operations.size(), results.length);
+        assertEquals(BULK_INSERT_RECORDS_TO_INSERT, (int) results[0].count);
+
+        /* Give any stray notifications, and the delayed list notification, time to arrive */
+        Thread.sleep(500);
+        listObserver.waitForNotificationOrFail();
+        changedDayObserver.waitForNotificationOrFail();
+        contentResolver.unregisterContentObserver(listObserver);
+        contentResolver.unregisterContentObserver(changedDayObserver);
+        contentResolver.unregisterContentObserver(untouchedDayObserver);
+        untouchedDayObserver.mHT.quit();
+
+        assertEquals(1, listObserver.mChangeCount);
+        assertEquals(1, changedDayObserver.mChangeCount);
+        assertEquals(0, untouchedDayObserver.mChangeCount);
+
+        Cursor cursor = contentResolver.query(WeatherContract.WeatherEntry.CONTENT_URI,
+                null,
+                WeatherContract.WeatherEntry.COLUMN_WEATHER_ID + " = 800",
+                null,
+                null);
+        assertNotNull(cursor);
+        try {
+            assertEquals(BULK_INSERT_RECORDS_TO_INSERT, cursor.getCount());
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * If any operation in a batch fails, none of the batch takes effect.
+     */
+    @Test
+    public void testApplyBatchIsAllOrNothing() throws Exception {
+        testBulkInsert();
+
+        ContentValues badWeather = TestUtilities.createTestWeatherContentValues();
+        badWeather.remove(WeatherContract.WeatherEntry.COLUMN_EPOCH_DAY);
+        badWeather.put(WeatherContract.WeatherEntry.COLUMN_DATE, TestUtilities.DATE_NORMALIZED + 1);
+
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        operations.add(ContentProviderOperation
+                .newDelete(WeatherContract.WeatherEntry.CONTENT_URI)
+                .build());
+        operations.add(ContentProviderOperation
+                .newInsert(WeatherContract.WeatherEntry.CONTENT_URI)
+                .withValues(badWeather)
+                .build());
+
+        ContentResolver contentResolver = mContext.getContentResolver();
+        try {
+            contentResolver.applyBatch(WeatherContract.CONTENT_AUTHORITY, operations);
+            fail("A date that isn't normalized should have failed the batch");
+        } catch (IllegalArgumentException expected) {
+        }
+
+        /* The delete was rolled back along with the insert */
+        Cursor cursor = contentResolver.query(WeatherContract.WeatherEntry.CONTENT_URI,
+                null,
+                null,
+                null,
+                null);
+        assertNotNull(cursor);
+        try {
+            assertEquals(BULK_INSERT_RECORDS_TO_INSERT, cursor.getCount());
+        } finally {
+            cursor.close();
+        }
+    }
+
     /**
      * This method will clear all rows from the weather table in our database.
      * <p>
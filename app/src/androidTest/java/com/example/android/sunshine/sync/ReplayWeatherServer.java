@@ -0,0 +1,301 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.sync;
+
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A tiny HTTP server that stands in for the weather server during tests. It answers every request
+ * with the same recorded OpenWeatherMap response, shaped by a few knobs:
+ * <ul>
+ * <li>latency: how long to wait before sending anything back</li>
+ * <li>bandwidth: how fast to send the response once it starts</li>
+ * <li>status code: anything other than 200 is sent with an empty body</li>
+ * <li>payload size: the response is padded with trailing whitespace, which JSON parsers ignore,
+ * to see how sync copes with larger responses</li>
+ * </ul>
+ * It only listens on the loopback interface and uses nothing but java.net, so it runs in the
+ * instrumentation process and needs no network connection at all. Point the app at it with
+ * {@link com.example.android.sunshine.utilities.NetworkUtils#setForecastBaseUrl(String)}.
+ * <p>
+ * Fixtures are recorded with {@link #record(URL, File)} and kept in the test assets.
+ */
+class ReplayWeatherServer {
+
+    private static final String TAG = ReplayWeatherServer.class.getSimpleName();
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /* How often a throttled response is written, in chunks sized to match the bandwidth */
+    private static final long THROTTLE_INTERVAL_MILLIS = 50;
+
+    private final byte[] mRecordedResponse;
+
+    private volatile long mLatencyMillis;
+    private volatile int mBytesPerSecond;
+    private volatile int mStatusCode = HttpURLConnection.HTTP_OK;
+    private volatile int mPayloadSize;
+
+    private final AtomicInteger mRequestCount = new AtomicInteger();
+
+    /* The first request we failed to answer, rethrown by shutdown() so the test fails */
+    private final AtomicReference<IOException> mServeError = new AtomicReference<>();
+
+    private ServerSocket mServerSocket;
+    private ExecutorService mExecutor;
+
+    /**
+     * @param recordedResponse The body to answer successful requests with
+     */
+    ReplayWeatherServer(byte[] recordedResponse) {
+        mRecordedResponse = recordedResponse;
+    }
+
+    /**
+     * Reads a recorded response, for example one of the fixtures in the test assets.
+     */
+    static byte[] readFully(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Records a response from a real weather server, so that it can be replayed as a fixture.
+     * This needs a network connection and is only meant to be run by hand.
+     *
+     * @param source      The URL to fetch, as built by NetworkUtils
+     * @param destination Where to save the response
+     */
+    static void record(URL source, File destination) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) source.openConnection();
+        try {
+            byte[] response = readFully(connection.getInputStream());
+            FileOutputStream out = new FileOutputStream(destination);
+            try {
+                out.write(response);
+            } finally {
+                out.close();
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * @param latencyMillis How long to wait after reading a request before answering it
+     */
+    void setLatencyMillis(long latencyMillis) {
+        mLatencyMillis = latencyMillis;
+    }
+
+    /**
+     * @param bytesPerSecond How fast to send responses, or 0 for as fast as possible
+     */
+    void setBandwidth(int bytesPerSecond) {
+        mBytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * @param statusCode The HTTP status code to answer with
+     */
+    void setStatusCode(int statusCode) {
+        mStatusCode = statusCode;
+    }
+
+    /**
+     * @param payloadSize The size to pad successful responses to, in bytes. Responses are never
+     *                    truncated, so anything smaller than the recorded response has no effect.
+     */
+    void setPayloadSize(int payloadSize) {
+        mPayloadSize = payloadSize;
+    }
+
+    /**
+     * @return How many requests have been answered, or started to be, since the server started
+     */
+    int getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    /**
+     * Starts listening on a free port on the loopback interface.
+     */
+    void start() throws IOException {
+        mServerSocket = new ServerSocket(0, 0, InetAddress.getByName("127.0.0.1"));
+        mExecutor = Executors.newCachedThreadPool();
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                acceptConnections();
+            }
+        });
+    }
+
+    /**
+     * @return The base URL to hand to NetworkUtils. Query parameters are accepted and ignored.
+     */
+    String getBaseUrl() {
+        return "http://127.0.0.1:" + mServerSocket.getLocalPort() + "/staticweather";
+    }
+
+    /**
+     * Stops listening and waits briefly for requests being answered to finish.
+     *
+     * @throws IOException If the server failed to answer any request while it was running, so
+     *                     that a broken server fails the test instead of just looking like a slow
+     *                     or flaky network
+     */
+    void shutdown() throws IOException, InterruptedException {
+        mServerSocket.close();
+        mExecutor.shutdownNow();
+        mExecutor.awaitTermination(5, TimeUnit.SECONDS);
+
+        IOException serveError = mServeError.get();
+        if (serveError != null) {
+            throw new IOException("Failed to answer a request", serveError);
+        }
+    }
+
+    private void acceptConnections() {
+        while (!mServerSocket.isClosed()) {
+            final Socket socket;
+            try {
+                socket = mServerSocket.accept();
+            } catch (IOException e) {
+                /* The server socket was closed by shutdown() */
+                return;
+            }
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    serve(socket);
+                }
+            });
+        }
+    }
+
+    private void serve(Socket socket) {
+        try {
+            /* We answer every request the same way, so all we need is for it to have arrived */
+            BufferedReader reader =
+                    new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF_8));
+            String line;
+            do {
+                line = reader.readLine();
+            } while (line != null && !line.isEmpty());
+            mRequestCount.incrementAndGet();
+
+            Thread.sleep(mLatencyMillis);
+
+            int statusCode = mStatusCode;
+            byte[] body = statusCode == HttpURLConnection.HTTP_OK ? getBody() : new byte[0];
+            String headers = "HTTP/1.1 " + statusCode + " " + getReasonPhrase(statusCode) + "\r\n"
+                    + "Content-Type: application/json; charset=utf-8\r\n"
+                    + "Content-Length: " + body.length + "\r\n"
+                    + "Connection: close\r\n"
+                    + "\r\n";
+
+            OutputStream out = socket.getOutputStream();
+            out.write(headers.getBytes(UTF_8));
+            writeThrottled(out, body);
+            out.flush();
+        } catch (SocketException e) {
+            /* The client hung up, which is its business */
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to answer a request", e);
+            mServeError.compareAndSet(null, e);
+        } catch (InterruptedException e) {
+            /* shutdown() was called while we were waiting */
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private byte[] getBody() {
+        int payloadSize = mPayloadSize;
+        if (payloadSize <= mRecordedResponse.length) {
+            return mRecordedResponse;
+        }
+        byte[] body = Arrays.copyOf(mRecordedResponse, payloadSize);
+        Arrays.fill(body, mRecordedResponse.length, payloadSize, (byte) ' ');
+        return body;
+    }
+
+    private void writeThrottled(OutputStream out, byte[] body)
+            throws IOException, InterruptedException {
+        int bytesPerSecond = mBytesPerSecond;
+        if (bytesPerSecond <= 0) {
+            out.write(body);
+            return;
+        }
+
+        int chunkSize = (int) Math.max(1, bytesPerSecond * THROTTLE_INTERVAL_MILLIS / 1000);
+        for (int offset = 0; offset < body.length; offset += chunkSize) {
+            out.write(body, offset, Math.min(chunkSize, body.length - offset));
+            out.flush();
+            Thread.sleep(THROTTLE_INTERVAL_MILLIS);
+        }
+    }
+
+    private static String getReasonPhrase(int statusCode) {
+        switch (statusCode) {
+            case HttpURLConnection.HTTP_OK:
+                return "OK";
+            case HttpURLConnection.HTTP_NOT_FOUND:
+                return "Not Found";
+            case HttpURLConnection.HTTP_INTERNAL_ERROR:
+                return "Internal Server Error";
+            case HttpURLConnection.HTTP_UNAVAILABLE:
+                return "Service Unavailable";
+            default:
+                return "Status " + statusCode;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.sync;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.preference.PreferenceManager;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.sunshine.R;
+import com.example.android.sunshine.data.SunshinePreferences;
+import com.example.android.sunshine.data.WeatherContract;
+import com.example.android.sunshine.utilities.NetworkUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.net.HttpURLConnection;
+import java.util.Arrays;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Runs SunshineSyncTask end to end against a {@link ReplayWeatherServer}, so that sync latency and
+ * throughput can be measured with no network and no dependence on the real weather server. Each
+ * benchmark logs its timings; filter logcat on this class's name to see them.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestSyncBenchmark {
+
+    private static final String TAG = TestSyncBenchmark.class.getSimpleName();
+
+    /* A recorded response from the static weather server, in the test assets */
+    private static final String FIXTURE = "forecast_mountain_view.json";
+    private static final int FIXTURE_DAYS = 14;
+
+    private static final int ITERATIONS = 10;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    private ReplayWeatherServer mServer;
+
+    @Before
+    public void setUp() throws Exception {
+        byte[] fixture = ReplayWeatherServer.readFully(
+                InstrumentationRegistry.getContext().getAssets().open(FIXTURE));
+        mServer = new ReplayWeatherServer(fixture);
+        mServer.start();
+        NetworkUtils.setForecastBaseUrl(mServer.getBaseUrl());
+
+        mContext.getContentResolver().delete(WeatherContract.WeatherEntry.CONTENT_URI, null, null);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        NetworkUtils.setForecastBaseUrl(null);
+        mServer.shutdown();
+    }
+
+    /**
+     * A replayed response should end up in the database just as a real one would.
+     */
+    @Test
+    public void testSyncStoresReplayedForecast() {
+        SunshineSyncTask.syncWeather(mContext);
+
+        assertEquals(1, mServer.getRequestCount());
+        assertEquals(FIXTURE_DAYS, getWeatherRowCount());
+    }
+
+    /**
+     * A failing server must leave the weather we already have alone.
+     */
+    @Test
+    public void testServerErrorKeepsExistingWeather() {
+        SunshineSyncTask.syncWeather(mContext);
+
+        mServer.setStatusCode(HttpURLConnection.HTTP_UNAVAILABLE);
+        SunshineSyncTask.syncWeather(mContext);
+
+        assertEquals(2, mServer.getRequestCount());
+        assertEquals(FIXTURE_DAYS, getWeatherRowCount());
+    }
+
+    /**
+     * Syncing the same forecast twice should only notify the user once, however soon or late
+     * the second sync comes.
+     */
+    @Test
+    public void testSameForecastNotifiesOnce() {
+        /* Notifications on, as they are by default, and as if none had ever been shown */
+        PreferenceManager.getDefaultSharedPreferences(mContext).edit()
+                .remove(mContext.getString(R.string.pref_enable_notifications_key))
+                .commit();
+        SunshinePreferences.saveLastNotificationHash(mContext, 0);
+        SunshinePreferences.saveLastNotificationTime(mContext, 0);
+
+        SunshineSyncTask.syncWeather(mContext);
+        long firstNotificationTime = SunshinePreferences.getLastNotificationTimeInMillis(mContext);
+        assertTrue(firstNotificationTime > 0);
+
+        SunshineSyncTask.syncWeather(mContext);
+        assertEquals(2, mServer.getRequestCount());
+        assertEquals(firstNotificationTime,
+                SunshinePreferences.getLastNotificationTimeInMillis(mContext));
+    }
+
+    /**
+     * The last good response is kept, so the weather can be stored again without the server.
+     */
+    @Test
+    public void testCachedResponseReplaysWithoutServer() {
+        SunshineSyncTask.syncWeather(mContext);
+        mContext.getContentResolver().delete(WeatherContract.WeatherEntry.CONTENT_URI, null, null);
+
+        assertTrue(SunshineSyncTask.syncWeatherFromCache(mContext));
+        assertEquals(1, mServer.getRequestCount());
+        assertEquals(FIXTURE_DAYS, getWeatherRowCount());
+    }
+
+    /**
+     * Sync time with a fast link, so that what we measure is mostly parsing and inserting.
+     */
+    @Test
+    public void testSyncLatencyOnFastLink() {
+        long[] millis = benchmarkSync();
+        Log.i(TAG, "Fast link: " + summarize(millis));
+    }
+
+    /**
+     * Sync time with a slow mobile connection: 300ms to the first byte, then 16KB/s.
+     */
+    @Test
+    public void testSyncLatencyOnSlowLink() {
+        long latencyMillis = 300;
+        mServer.setLatencyMillis(latencyMillis);
+        mServer.setBandwidth(16 * 1024);
+
+        long[] millis = benchmarkSync();
+        Log.i(TAG, "Slow link: " + summarize(millis));
+
+        assertTrue("Sync was faster than the link allows", millis[0] >= latencyMillis);
+    }
+
+    /**
+     * Throughput with a response padded to 256KB, roughly what a response with far more days and
+     * fields would weigh.
+     */
+    @Test
+    public void testSyncThroughputWithLargePayload() {
+        int payloadSize = 256 * 1024;
+        mServer.setPayloadSize(payloadSize);
+
+        long[] millis = benchmarkSync();
+        long medianMillis = Math.max(1, millis[millis.length / 2]);
+        Log.i(TAG, "256KB payload: " + summarize(millis)
+                + " throughput=" + (payloadSize * 1000L / 1024 / medianMillis) + "KB/s");
+
+        assertEquals(FIXTURE_DAYS, getWeatherRowCount());
+    }
+
+    /**
+     * Syncs {@link #ITERATIONS} times in a row.
+     *
+     * @return How long each sync took, in milliseconds, sorted shortest first
+     */
+    private long[] benchmarkSync() {
+        long[] millis = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = SystemClock.elapsedRealtime();
+            SunshineSyncTask.syncWeather(mContext);
+            millis[i] = SystemClock.elapsedRealtime() - start;
+        }
+        assertEquals(ITERATIONS, mServer.getRequestCount());
+        Arrays.sort(millis);
+        return millis;
+    }
+
+    private static String summarize(long[] sortedMillis) {
+        return "syncs=" + sortedMillis.length
+                + " min=" + sortedMillis[0] + "ms"
+                + " p50=" + sortedMillis[sortedMillis.length / 2] + "ms"
+                + " p90=" + sortedMillis[(int) Math.ceil(sortedMillis.length * 0.9) - 1] + "ms"
+                + " max=" + sortedMillis[sortedMillis.length - 1] + "ms";
+    }
+
+    private int getWeatherRowCount() {
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherContract.WeatherEntry.CONTENT_URI,
+                null,
+                null,
+                null,
+                null);
+        assertTrue(cursor != null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+}
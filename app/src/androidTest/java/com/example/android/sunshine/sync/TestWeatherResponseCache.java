@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.sync;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.net.URL;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+
+/**
+ * Checks that {@link WeatherResponseCache} gives back exactly what was put in, one body per URL,
+ * and that it stays within its size budget by dropping the least recently used bodies.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestWeatherResponseCache {
+
+    /* Each test body is 1KB, so this budget holds three of them */
+    private static final int BODY_LENGTH = 1024;
+    private static final long MAX_BYTES = 3 * BODY_LENGTH;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    private WeatherResponseCache mCache;
+
+    @Before
+    public void setUp() {
+        /* A directory of our own, so the app's real cache is left alone */
+        mCache = new WeatherResponseCache(
+                new File(mContext.getCacheDir(), "test_weather_responses"), MAX_BYTES);
+        mCache.clear();
+    }
+
+    @After
+    public void tearDown() {
+        mCache.clear();
+    }
+
+    @Test
+    public void testBodiesRoundTrip() throws Exception {
+        URL first = getUrl(1);
+        URL second = getUrl(2);
+
+        /* Not just ASCII, so that decoding is tested too */
+        String body = "{\"city\":{\"name\":\"Zürich\"},\"list\":[]}";
+        mCache.put(first, body);
+        assertEquals(body, mCache.get(first));
+        assertNull(mCache.get(second));
+
+        /* A newer body for the same URL replaces the old one */
+        mCache.put(first, "{}");
+        assertEquals("{}", mCache.get(first));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedBodyIsDropped() throws Exception {
+        /* All within the same second, which file times alone couldn't tell apart */
+        mCache.put(getUrl(1), createBody('a'));
+        mCache.put(getUrl(2), createBody('b'));
+        mCache.put(getUrl(3), createBody('c'));
+        mCache.get(getUrl(1));
+
+        /* One body too many, and the second is now the one that was used longest ago */
+        mCache.put(getUrl(4), createBody('d'));
+
+        assertEquals(createBody('a'), mCache.get(getUrl(1)));
+        assertNull(mCache.get(getUrl(2)));
+        assertEquals(createBody('c'), mCache.get(getUrl(3)));
+        assertEquals(createBody('d'), mCache.get(getUrl(4)));
+    }
+
+    private static URL getUrl(int location) throws Exception {
+        return new URL("https://example.com/forecast?id=" + location + "&mode=json");
+    }
+
+    private static String createBody(char c) {
+        StringBuilder body = new StringBuilder(BODY_LENGTH);
+        for (int i = 0; i < BODY_LENGTH; i++) {
+            body.append(c);
+        }
+        return body.toString();
+    }
+}
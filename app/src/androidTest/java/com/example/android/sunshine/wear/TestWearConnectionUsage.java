@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.wear;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Checks that {@link WearConnectionUsage} always says when the Data Layer connection can be
+ * disconnected, whether the last caller releases it before or after its sends complete.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestWearConnectionUsage {
+
+    @Test
+    public void testReleaseWithNothingInFlightDisconnects() {
+        WearConnectionUsage usage = new WearConnectionUsage();
+        usage.acquire();
+        usage.sendStarted();
+        assertFalse(usage.sendFinished());
+
+        assertTrue(usage.release());
+    }
+
+    /**
+     * WearIntentService gives up waiting for its sends after a timeout and releases the
+     * connection anyway. The last send to come back must then be the one to disconnect it.
+     */
+    @Test
+    public void testLastSendAfterReleaseDisconnects() {
+        WearConnectionUsage usage = new WearConnectionUsage();
+        usage.acquire();
+        usage.sendStarted();
+        usage.sendStarted();
+
+        assertFalse(usage.release());
+        assertFalse(usage.isIdle());
+
+        assertFalse(usage.sendFinished());
+        assertTrue(usage.sendFinished());
+        assertTrue(usage.isUnused());
+    }
+
+    /**
+     * A send finishing while somebody still holds the connection mustn't disconnect it.
+     */
+    @Test
+    public void testHeldConnectionIsNotDisconnected() {
+        WearConnectionUsage usage = new WearConnectionUsage();
+        usage.acquire();
+        usage.acquire();
+        usage.sendStarted();
+
+        assertFalse(usage.release());
+        assertFalse(usage.sendFinished());
+        assertTrue(usage.isIdle());
+        assertFalse(usage.isUnused());
+
+        assertTrue(usage.release());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUnbalancedReleaseThrows() {
+        new WearConnectionUsage().release();
+    }
+}
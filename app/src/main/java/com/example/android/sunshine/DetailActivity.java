@@ -16,13 +16,11 @@
 package com.example.android.sunshine;
 
 import android.content.Intent;
-import android.database.Cursor;
 import android.databinding.DataBindingUtil;
 import android.net.Uri;
 import android.os.Bundle;
 import android.support.v4.app.LoaderManager;
 import android.support.v4.app.ShareCompat;
-import android.support.v4.content.CursorLoader;
 import android.support.v4.content.Loader;
 import android.support.v7.app.AppCompatActivity;
 import android.view.Menu;
@@ -31,11 +29,9 @@ import android.view.MenuItem;
 
 import com.example.android.sunshine.data.WeatherContract;
 import com.example.android.sunshine.databinding.ActivityDetailBinding;
-import com.example.android.sunshine.utilities.SunshineDateUtils;
-import com.example.android.sunshine.utilities.SunshineWeatherUtils;
 
 public class DetailActivity extends AppCompatActivity implements
-        LoaderManager.LoaderCallbacks<Cursor> {
+        LoaderManager.LoaderCallbacks<DetailModel> {
 
     /*
      * In this Activity, you can share the selected day's forecast. No social sharing is complete
@@ -81,6 +77,15 @@ public class DetailActivity extends AppCompatActivity implements
      */
     private static final int ID_DETAIL_LOADER = 353;
 
+    /*
+     * Optional extras that let the caller seed this screen with values it has already loaded,
+     * such as a row from MainActivity's forecast list. When present, the date, weather
+     * condition and temperatures are displayed immediately rather than after the first load.
+     */
+    public static final String EXTRA_WEATHER_ID = "weather_id";
+    public static final String EXTRA_MAX_TEMP = "max_temp";
+    public static final String EXTRA_MIN_TEMP = "min_temp";
+
     /* A summary of the forecast that can be shared by clicking the share button in the ActionBar */
     private String mForecastSummary;
 
@@ -107,6 +112,19 @@ public class DetailActivity extends AppCompatActivity implements
         mUri = getIntent().getData();
         if (mUri == null) throw new NullPointerException("URI for DetailActivity cannot be null");
 
+        Intent intent = getIntent();
+        if (intent.hasExtra(EXTRA_WEATHER_ID)) {
+            long date = WeatherContract.WeatherEntry.getDateFromUri(mUri);
+            bindModel(DetailModel.fromForecastRow(this,
+                    date,
+                    intent.getIntExtra(EXTRA_WEATHER_ID, 0),
+                    intent.getDoubleExtra(EXTRA_MAX_TEMP, 0),
+                    intent.getDoubleExtra(EXTRA_MIN_TEMP, 0)));
+        }
+
+        /* DetailLoader reads from and writes to this cache, so make sure it is kept fresh */
+        DetailModelCache.initialize(this);
+
         /* This connects our Activity into the loader lifecycle. */
         getSupportLoaderManager().initLoader(ID_DETAIL_LOADER, null, this);
     }
@@ -179,7 +197,8 @@ public class DetailActivity extends AppCompatActivity implements
     }
 
     /**
-     * Creates and returns a CursorLoader that loads the data for our URI and stores it in a Cursor.
+     * Creates and returns a DetailLoader that queries the data for our URI and formats it into a
+     * DetailModel on a background thread.
      *
      * @param loaderId The loader ID for which we need to create a loader
      * @param loaderArgs Any arguments supplied by the caller
@@ -187,18 +206,13 @@ public class DetailActivity extends AppCompatActivity implements
      * @return A new Loader instance that is ready to start loading.
      */
     @Override
-    public Loader<Cursor> onCreateLoader(int loaderId, Bundle loaderArgs) {
+    public Loader<DetailModel> onCreateLoader(int loaderId, Bundle loaderArgs) {
 
         switch (loaderId) {
 
             case ID_DETAIL_LOADER:
 
-                return new CursorLoader(this,
-                        mUri,
-                        WEATHER_DETAIL_PROJECTION,
-                        null,
-                        null,
-                        null);
+                return new DetailLoader(this, mUri);
 
             default:
                 throw new RuntimeException("Loader Not Implemented: " + loaderId);
@@ -208,185 +222,99 @@ public class DetailActivity extends AppCompatActivity implements
     /**
      * Runs on the main thread when a load is complete. If initLoader is called (we call it from
      * onCreate in DetailActivity) and the LoaderManager already has completed a previous load
-     * for this Loader, onLoadFinished will be called immediately. Within onLoadFinished, we bind
-     * the data to our views so the user can see the details of the weather on the date they
-     * selected from the forecast.
+     * for this Loader, onLoadFinished will be called immediately. All of the formatting has
+     * already happened on the loader's thread, so all that is left to do is bind the model.
      *
-     * @param loader The cursor loader that finished.
-     * @param data   The cursor that is being returned.
+     * @param loader The DetailLoader that finished.
+     * @param model  The formatted weather, or null if there is no weather for this date.
      */
     @Override
-    public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
-
-        /*
-         * Before we bind the data to the UI that will display that data, we need to check the
-         * cursor to make sure we have the results that we are expecting. In order to do that, we
-         * check to make sure the cursor is not null and then we call moveToFirst on the cursor.
-         * Although it may not seem obvious at first, moveToFirst will return true if it contains
-         * a valid first row of data.
-         *
-         * If we have valid data, we want to continue on to bind that data to the UI. If we don't
-         * have any data to bind, we just return from this method.
-         */
-        boolean cursorHasValidData = false;
-        if (data != null && data.moveToFirst()) {
-            /* We have valid data, continue on to bind the data to the UI */
-            cursorHasValidData = true;
-        }
-
-        if (!cursorHasValidData) {
-            /* No data to display, simply return and do nothing */
+    public void onLoadFinished(Loader<DetailModel> loader, DetailModel model) {
+        /* No data to display, simply return and do nothing */
+        if (model == null) {
             return;
         }
 
+        bindModel(model);
+    }
+
+    /**
+     * Binds a DetailModel to our views. A model built from a row of the main forecast list has
+     * no humidity, pressure or wind information, in which case we leave that half of the screen
+     * as it is until the full model arrives.
+     *
+     * @param model The formatted weather to display
+     */
+    private void bindModel(DetailModel model) {
+
         /****************
          * Weather Icon *
          ****************/
-        /* Read weather condition ID from the cursor (ID provided by Open Weather Map) */
-        int weatherId = data.getInt(INDEX_WEATHER_CONDITION_ID);
-        /* Use our utility method to determine the resource ID for the proper art */
-        int weatherImageId = SunshineWeatherUtils.getLargeArtResourceIdForWeatherCondition(weatherId);
-
-        /* Set the resource ID on the icon to display the art */
-        mDetailBinding.primaryInfo.weatherIcon.setImageResource(weatherImageId);
+        mDetailBinding.primaryInfo.weatherIcon.setImageResource(model.weatherImageId);
+        /* Set the content description on the weather image (for accessibility purposes) */
+        mDetailBinding.primaryInfo.weatherIcon.setContentDescription(model.descriptionA11y);
 
         /****************
          * Weather Date *
          ****************/
-        /*
-         * Read the date from the cursor. It is important to note that the date from the cursor
-         * is the same date from the weather SQL table. The date that is stored is a GMT
-         * representation at midnight of the date when the weather information was loaded for.
-         *
-         * When displaying this date, one must add the GMT offset (in milliseconds) to acquire
-         * the date representation for the local date in local time.
-         * SunshineDateUtils#getFriendlyDateString takes care of this for us.
-         */
-        long localDateMidnightGmt = data.getLong(INDEX_WEATHER_DATE);
-        String dateText = SunshineDateUtils.getFriendlyDateString(this, localDateMidnightGmt, true);
-
-        mDetailBinding.primaryInfo.date.setText(dateText);
+        mDetailBinding.primaryInfo.date.setText(model.dateText);
 
         /***********************
          * Weather Description *
          ***********************/
-        /* Use the weatherId to obtain the proper description */
-        String description = SunshineWeatherUtils.getStringForWeatherCondition(this, weatherId);
-
-        /* Create the accessibility (a11y) String from the weather description */
-        String descriptionA11y = getString(R.string.a11y_forecast, description);
-
-        /* Set the text and content description (for accessibility purposes) */
-        mDetailBinding.primaryInfo.weatherDescription.setText(description);
-        mDetailBinding.primaryInfo.weatherDescription.setContentDescription(descriptionA11y);
-
-        /* Set the content description on the weather image (for accessibility purposes) */
-        mDetailBinding.primaryInfo.weatherIcon.setContentDescription(descriptionA11y);
+        mDetailBinding.primaryInfo.weatherDescription.setText(model.description);
+        mDetailBinding.primaryInfo.weatherDescription.setContentDescription(model.descriptionA11y);
 
         /**************************
          * High (max) temperature *
          **************************/
-        /* Read high temperature from the cursor (in degrees celsius) */
-        double highInCelsius = data.getDouble(INDEX_WEATHER_MAX_TEMP);
-        /*
-         * If the user's preference for weather is fahrenheit, formatTemperature will convert
-         * the temperature. This method will also append either °C or °F to the temperature
-         * String.
-         */
-        String highString = SunshineWeatherUtils.formatTemperature(this, highInCelsius);
-
-        /* Create the accessibility (a11y) String from the weather description */
-        String highA11y = getString(R.string.a11y_high_temp, highString);
-
-        /* Set the text and content description (for accessibility purposes) */
-        mDetailBinding.primaryInfo.highTemperature.setText(highString);
-        mDetailBinding.primaryInfo.highTemperature.setContentDescription(highA11y);
+        mDetailBinding.primaryInfo.highTemperature.setText(model.highString);
+        mDetailBinding.primaryInfo.highTemperature.setContentDescription(model.highA11y);
 
         /*************************
          * Low (min) temperature *
          *************************/
-        /* Read low temperature from the cursor (in degrees celsius) */
-        double lowInCelsius = data.getDouble(INDEX_WEATHER_MIN_TEMP);
-        /*
-         * If the user's preference for weather is fahrenheit, formatTemperature will convert
-         * the temperature. This method will also append either °C or °F to the temperature
-         * String.
-         */
-        String lowString = SunshineWeatherUtils.formatTemperature(this, lowInCelsius);
+        mDetailBinding.primaryInfo.lowTemperature.setText(model.lowString);
+        mDetailBinding.primaryInfo.lowTemperature.setContentDescription(model.lowA11y);
 
-        String lowA11y = getString(R.string.a11y_low_temp, lowString);
+        /* Store the forecast summary String in our forecast summary field to share later */
+        mForecastSummary = model.forecastSummary;
 
-        /* Set the text and content description (for accessibility purposes) */
-        mDetailBinding.primaryInfo.lowTemperature.setText(lowString);
-        mDetailBinding.primaryInfo.lowTemperature.setContentDescription(lowA11y);
+        if (!model.hasExtraDetails) {
+            return;
+        }
 
         /************
          * Humidity *
          ************/
-        /* Read humidity from the cursor */
-        float humidity = data.getFloat(INDEX_WEATHER_HUMIDITY);
-        String humidityString = getString(R.string.format_humidity, humidity);
-
-        String humidityA11y = getString(R.string.a11y_humidity, humidityString);
-
-        /* Set the text and content description (for accessibility purposes) */
-        mDetailBinding.extraDetails.humidity.setText(humidityString);
-        mDetailBinding.extraDetails.humidity.setContentDescription(humidityA11y);
-
-        mDetailBinding.extraDetails.humidityLabel.setContentDescription(humidityA11y);
+        mDetailBinding.extraDetails.humidity.setText(model.humidityString);
+        mDetailBinding.extraDetails.humidity.setContentDescription(model.humidityA11y);
+        mDetailBinding.extraDetails.humidityLabel.setContentDescription(model.humidityA11y);
 
         /****************************
          * Wind speed and direction *
          ****************************/
-        /* Read wind speed (in MPH) and direction (in compass degrees) from the cursor  */
-        float windSpeed = data.getFloat(INDEX_WEATHER_WIND_SPEED);
-        float windDirection = data.getFloat(INDEX_WEATHER_DEGREES);
-        String windString = SunshineWeatherUtils.getFormattedWind(this, windSpeed, windDirection);
-
-        String windA11y = getString(R.string.a11y_wind, windString);
-
-        /* Set the text and content description (for accessibility purposes) */
-        mDetailBinding.extraDetails.windMeasurement.setText(windString);
-        mDetailBinding.extraDetails.windMeasurement.setContentDescription(windA11y);
-
-        mDetailBinding.extraDetails.windLabel.setContentDescription(windA11y);
+        mDetailBinding.extraDetails.windMeasurement.setText(model.windString);
+        mDetailBinding.extraDetails.windMeasurement.setContentDescription(model.windA11y);
+        mDetailBinding.extraDetails.windLabel.setContentDescription(model.windA11y);
 
         /************
          * Pressure *
          ************/
-        /* Read pressure from the cursor */
-        float pressure = data.getFloat(INDEX_WEATHER_PRESSURE);
-
-        /*
-         * Format the pressure text using string resources. The reason we directly access
-         * resources using getString rather than using a method from SunshineWeatherUtils as
-         * we have for other data displayed in this Activity is because there is no
-         * additional logic that needs to be considered in order to properly display the
-         * pressure.
-         */
-        String pressureString = getString(R.string.format_pressure, pressure);
-
-        String pressureA11y = getString(R.string.a11y_pressure, pressureString);
-
-        /* Set the text and content description (for accessibility purposes) */
-        mDetailBinding.extraDetails.pressure.setText(pressureString);
-        mDetailBinding.extraDetails.pressure.setContentDescription(pressureA11y);
-
-        mDetailBinding.extraDetails.pressureLabel.setContentDescription(pressureA11y);
-
-        /* Store the forecast summary String in our forecast summary field to share later */
-        mForecastSummary = String.format("%s - %s - %s/%s",
-                dateText, description, highString, lowString);
+        mDetailBinding.extraDetails.pressure.setText(model.pressureString);
+        mDetailBinding.extraDetails.pressure.setContentDescription(model.pressureA11y);
+        mDetailBinding.extraDetails.pressureLabel.setContentDescription(model.pressureA11y);
     }
 
     /**
      * Called when a previously created loader is being reset, thus making its data unavailable.
      * The application should at this point remove any references it has to the Loader's data.
-     * Since we don't store any of this cursor's data, there are no references we need to remove.
+     * The DetailModel we bound is immutable and holds no reference to a Cursor, so there are no
+     * references we need to remove.
      *
      * @param loader The Loader that is being reset.
      */
     @Override
-    public void onLoaderReset(Loader<Cursor> loader) {
+    public void onLoaderReset(Loader<DetailModel> loader) {
     }
 }
\ No newline at end of file
@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.v4.content.AsyncTaskLoader;
+
+import com.example.android.sunshine.data.SunshinePreferences;
+import com.example.android.sunshine.data.WeatherContract;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+/**
+ * Loads the weather for a single day and formats it into a {@link DetailModel} on the loader's
+ * background thread. This behaves like a CursorLoader: it watches the URI it loaded from and
+ * reloads whenever that data changes. The difference is that the result handed to the main
+ * thread is already fully formatted.
+ * <p>
+ * If {@link DetailModelCache} already holds the model for our date (usually because
+ * MainActivity prefetched it), that model is delivered straight away and no query is made.
+ * <p>
+ * When the user changes units, the model we already have is reformatted rather than reloaded,
+ * since the weather itself hasn't changed. That still happens on the background thread, like any
+ * other load, so no formatting is ever done on the main thread.
+ */
+class DetailLoader extends AsyncTaskLoader<DetailModel> implements
+        SunshinePreferences.OnDisplaySettingsChangedListener {
+
+    private final Uri mUri;
+    private final long mDate;
+    private final ForceLoadContentObserver mObserver;
+
+    private DetailModel mModel;
+    private boolean mObserverRegistered;
+
+    /*
+     * Set when the units change, so that the next load reformats this model instead of querying.
+     * A change to the weather itself clears it again, since then only a query will do.
+     */
+    private volatile DetailModel mModelToReformat;
+
+    DetailLoader(Context context, Uri uri) {
+        super(context);
+        /*
+         * The provider notifies a day at its epoch day URI, so that's the one to watch, even if we
+         * were handed an older URI with the date in milliseconds.
+         */
+        long epochDay = WeatherContract.WeatherEntry.getEpochDayFromUri(uri);
+        mUri = WeatherContract.WeatherEntry.buildWeatherUriWithEpochDay(epochDay);
+        mDate = SunshineDateUtils.getNormalizedUtcDateForEpochDay(epochDay);
+        mObserver = new ForceLoadContentObserver();
+    }
+
+    /**
+     * Queries the ContentProvider for the weather at our URI and formats the result. This runs
+     * on a background thread.
+     *
+     * @return The formatted weather, or null if there is no weather for the date
+     */
+    @Override
+    public DetailModel loadInBackground() {
+        int generation = DetailModelCache.getGeneration();
+
+        DetailModel modelToReformat = mModelToReformat;
+        if (modelToReformat != null) {
+            mModelToReformat = null;
+            DetailModel model = modelToReformat.reformat(getContext());
+            DetailModelCache.put(model, generation);
+            return model;
+        }
+
+        Cursor cursor = getContext().getContentResolver().query(
+                mUri,
+                DetailActivity.WEATHER_DETAIL_PROJECTION,
+                null,
+                null,
+                null);
+
+        if (cursor == null) {
+            return null;
+        }
+
+        try {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            DetailModel model = DetailModel.fromCursor(getContext(), cursor);
+            DetailModelCache.put(model, generation);
+            return model;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Override
+    public void deliverResult(DetailModel model) {
+        if (isReset()) {
+            return;
+        }
+
+        mModel = model;
+
+        if (isStarted()) {
+            super.deliverResult(model);
+        }
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (!mObserverRegistered) {
+            getContext().getContentResolver().registerContentObserver(mUri, false, mObserver);
+            SunshinePreferences.registerDisplaySettingsListener(getContext(), this);
+            mObserverRegistered = true;
+        }
+
+        if (mModel == null) {
+            mModel = DetailModelCache.get(mDate);
+        }
+
+        if (mModel != null) {
+            deliverResult(mModel);
+        }
+
+        if (takeContentChanged() || mModel == null) {
+            forceLoad();
+        }
+    }
+
+    /**
+     * Has the model we already have reformatted for the new units, in the background. If we are
+     * stopped, for example because SettingsActivity is in front of DetailActivity, that happens
+     * when we are started again.
+     */
+    @Override
+    public void onDisplaySettingsChanged(SunshinePreferences.Snapshot snapshot) {
+        if (mModel == null) {
+            return;
+        }
+        mModelToReformat = mModel;
+        /* Loads now if we are started, or remembers to when we are */
+        super.onContentChanged();
+    }
+
+    /**
+     * Called when the weather for our date changes. A reformat that hasn't run yet would bring
+     * back the old weather, so query instead.
+     */
+    @Override
+    public void onContentChanged() {
+        mModelToReformat = null;
+        super.onContentChanged();
+    }
+
+    @Override
+    protected void onStopLoading() {
+        cancelLoad();
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        onStopLoading();
+
+        if (mObserverRegistered) {
+            getContext().getContentResolver().unregisterContentObserver(mObserver);
+            SunshinePreferences.unregisterDisplaySettingsListener(this);
+            mObserverRegistered = false;
+        }
+
+        mModel = null;
+        mModelToReformat = null;
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+import com.example.android.sunshine.utilities.SunshineWeatherUtils;
+
+/**
+ * A fully formatted, immutable representation of one day's weather as shown by
+ * {@link DetailActivity}. Every String the detail screen displays (including the accessibility
+ * descriptions and the share summary) is computed when the model is built, so that building can
+ * happen on a background thread and binding on the main thread is nothing but setText calls.
+ * <p>
+ * A model built from a row of the main forecast list only knows about the date, weather
+ * condition and temperatures. In that case {@link #hasExtraDetails} is false and the humidity,
+ * pressure and wind fields are null until the full model is loaded.
+ * <p>
+ * The unformatted values are kept as well, so that when the user changes units the model can be
+ * {@link #reformat reformatted} without going back to the database.
+ */
+class DetailModel {
+
+    final long date;
+    final int weatherId;
+
+    final int weatherImageId;
+    final String dateText;
+    final String description;
+    final String descriptionA11y;
+    final String highString;
+    final String highA11y;
+    final String lowString;
+    final String lowA11y;
+
+    final boolean hasExtraDetails;
+    final String humidityString;
+    final String humidityA11y;
+    final String windString;
+    final String windA11y;
+    final String pressureString;
+    final String pressureA11y;
+
+    final String forecastSummary;
+
+    /*
+     * The epoch day it was when dateText was formatted. dateText says "Today" or "Tomorrow" for
+     * the days close to it, so the model goes out of date when the day changes.
+     */
+    final long formattedOnEpochDay;
+
+    /* The values everything above was formatted from */
+    private final double mHighInCelsius;
+    private final double mLowInCelsius;
+    private final float mHumidity;
+    private final float mWindSpeed;
+    private final float mWindDirection;
+    private final float mPressure;
+
+    private DetailModel(Context context, long date, int weatherId, double highInCelsius,
+                        double lowInCelsius, boolean hasExtraDetails, float humidity,
+                        float windSpeed, float windDirection, float pressure) {
+        this.date = date;
+        this.weatherId = weatherId;
+
+        mHighInCelsius = highInCelsius;
+        mLowInCelsius = lowInCelsius;
+        mHumidity = humidity;
+        mWindSpeed = windSpeed;
+        mWindDirection = windDirection;
+        mPressure = pressure;
+
+        weatherImageId = SunshineWeatherUtils.getLargeArtResourceIdForWeatherCondition(weatherId);
+
+        /* Read before formatting, so that a day changing part way through makes us look stale */
+        formattedOnEpochDay = SunshineDateUtils.getEpochDayForToday();
+
+        /*
+         * The date stored in the database is a GMT representation at midnight of the date the
+         * weather is for. SunshineDateUtils#getFriendlyDateString adds the GMT offset for us.
+         */
+        dateText = SunshineDateUtils.getFriendlyDateString(context, date, true);
+
+        description = SunshineWeatherUtils.getStringForWeatherCondition(context, weatherId);
+        descriptionA11y = context.getString(R.string.a11y_forecast, description);
+
+        /* formatTemperature converts to fahrenheit if the user prefers it and appends the unit */
+        highString = SunshineWeatherUtils.formatTemperature(context, highInCelsius);
+        highA11y = context.getString(R.string.a11y_high_temp, highString);
+
+        lowString = SunshineWeatherUtils.formatTemperature(context, lowInCelsius);
+        lowA11y = context.getString(R.string.a11y_low_temp, lowString);
+
+        this.hasExtraDetails = hasExtraDetails;
+        if (hasExtraDetails) {
+            humidityString = context.getString(R.string.format_humidity, humidity);
+            humidityA11y = context.getString(R.string.a11y_humidity, humidityString);
+
+            windString = SunshineWeatherUtils.getFormattedWind(context, windSpeed, windDirection);
+            windA11y = context.getString(R.string.a11y_wind, windString);
+
+            pressureString = context.getString(R.string.format_pressure, pressure);
+            pressureA11y = context.getString(R.string.a11y_pressure, pressureString);
+        } else {
+            humidityString = null;
+            humidityA11y = null;
+            windString = null;
+            windA11y = null;
+            pressureString = null;
+            pressureA11y = null;
+        }
+
+        forecastSummary = String.format("%s - %s - %s/%s",
+                dateText, description, highString, lowString);
+    }
+
+    /**
+     * Builds a complete model from the current row of a cursor that was queried with
+     * {@link DetailActivity#WEATHER_DETAIL_PROJECTION}.
+     *
+     * @param context Used to access utility methods and resources
+     * @param cursor  Cursor positioned on the row to format
+     * @return A model containing every field the detail screen displays
+     */
+    static DetailModel fromCursor(Context context, Cursor cursor) {
+        return new DetailModel(context,
+                cursor.getLong(DetailActivity.INDEX_WEATHER_DATE),
+                cursor.getInt(DetailActivity.INDEX_WEATHER_CONDITION_ID),
+                cursor.getDouble(DetailActivity.INDEX_WEATHER_MAX_TEMP),
+                cursor.getDouble(DetailActivity.INDEX_WEATHER_MIN_TEMP),
+                true,
+                cursor.getFloat(DetailActivity.INDEX_WEATHER_HUMIDITY),
+                cursor.getFloat(DetailActivity.INDEX_WEATHER_WIND_SPEED),
+                cursor.getFloat(DetailActivity.INDEX_WEATHER_DEGREES),
+                cursor.getFloat(DetailActivity.INDEX_WEATHER_PRESSURE));
+    }
+
+    /**
+     * Builds a partial model from the values the main forecast list has already loaded. This is
+     * used to render the top half of the detail screen immediately while the full model loads.
+     *
+     * @param context       Used to access utility methods and resources
+     * @param date          Normalized UTC date of the forecast
+     * @param weatherId     Weather condition ID as returned by Open Weather Map
+     * @param highInCelsius High temperature in degrees celsius
+     * @param lowInCelsius  Low temperature in degrees celsius
+     * @return A model with {@link #hasExtraDetails} set to false
+     */
+    static DetailModel fromForecastRow(Context context, long date, int weatherId,
+                                       double highInCelsius, double lowInCelsius) {
+        return new DetailModel(context, date, weatherId, highInCelsius, lowInCelsius,
+                false, 0f, 0f, 0f, 0f);
+    }
+
+    /**
+     * Formats this model's weather again using the current preferences, for example after the
+     * user switched between metric and imperial units. No query is made, so this is cheap enough
+     * to call on the main thread.
+     *
+     * @param context Used to access utility methods and resources
+     * @return A new model with the same weather, formatted with the current preferences
+     */
+    DetailModel reformat(Context context) {
+        return new DetailModel(context, date, weatherId, mHighInCelsius, mLowInCelsius,
+                hasExtraDetails, mHumidity, mWindSpeed, mWindDirection, mPressure);
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine;
+
+import android.content.Context;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.support.v4.util.LruCache;
+import android.text.TextUtils;
+
+import com.example.android.sunshine.data.SunshinePreferences;
+import com.example.android.sunshine.data.WeatherContract;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import java.util.List;
+
+/**
+ * A small, process-wide LRU cache of {@link DetailModel}s keyed by normalized date. MainActivity
+ * fills it ahead of time through {@link DetailPrefetcher} and {@link DetailLoader} reads from it,
+ * so that tapping on a visible day usually finds its details already formatted.
+ * <p>
+ * The cache listens for changes to the weather table. When a single day changes, only that
+ * day's model is dropped; when the provider can't say which days changed, everything is. The
+ * models are formatted for the user's units, so a change of units drops everything too. Each
+ * change also bumps a generation number; writers capture the generation before they query and
+ * pass it back to {@link #put}, so a model built from data that changed while it was being built
+ * is never cached.
+ * <p>
+ * A model's date text is relative to the day it was formatted on ("Today", "Tomorrow"), so models
+ * formatted on any other day than today are neither returned nor cached. That way a day that
+ * changes between syncs never shows the wrong label.
+ */
+final class DetailModelCache {
+
+    /* Roughly two screens worth of forecast rows. DetailModels are only a handful of Strings. */
+    private static final int MAX_ENTRIES = 16;
+
+    private static final LruCache<Long, DetailModel> sCache =
+            new LruCache<Long, DetailModel>(MAX_ENTRIES);
+
+    private static volatile int sGeneration;
+
+    private static ContentObserver sInvalidator;
+
+    private static SunshinePreferences.OnDisplaySettingsChangedListener sDisplayInvalidator;
+
+    private DetailModelCache() {
+    }
+
+    /**
+     * Starts listening for changes to the weather data and the units. Safe to call more than
+     * once. Must be called on the main thread.
+     *
+     * @param context Used to access the ContentResolver
+     */
+    static synchronized void initialize(Context context) {
+        if (sInvalidator != null) {
+            return;
+        }
+
+        /*
+         * A null Handler means onChange is delivered on a binder thread, which is fine since
+         * LruCache is thread safe and we never touch a View from here.
+         */
+        sInvalidator = new ContentObserver(null) {
+            @Override
+            public void onChange(boolean selfChange) {
+                invalidate();
+            }
+
+            @Override
+            public void onChange(boolean selfChange, Uri uri) {
+                if (WeatherContract.WeatherEntry.CHANGES_URI.equals(uri)) {
+                    /* Every day in that change has already been notified on its own */
+                    return;
+                }
+                if (isSingleDayUri(uri)) {
+                    invalidate(WeatherContract.WeatherEntry.getDateFromUri(uri));
+                } else {
+                    invalidate();
+                }
+            }
+        };
+
+        context.getApplicationContext().getContentResolver().registerContentObserver(
+                WeatherContract.WeatherEntry.CONTENT_URI,
+                true,
+                sInvalidator);
+
+        sDisplayInvalidator = new SunshinePreferences.OnDisplaySettingsChangedListener() {
+            @Override
+            public void onDisplaySettingsChanged(SunshinePreferences.Snapshot snapshot) {
+                invalidate();
+            }
+        };
+        SunshinePreferences.registerDisplaySettingsListener(context, sDisplayInvalidator);
+    }
+
+    /**
+     * @return The current generation, to be passed back to {@link #put}
+     */
+    static int getGeneration() {
+        return sGeneration;
+    }
+
+    /**
+     * @param date Normalized UTC date
+     * @return The cached model for the date, or null if there isn't one
+     */
+    static DetailModel get(long date) {
+        DetailModel model = sCache.get(date);
+        if (model != null && model.formattedOnEpochDay != SunshineDateUtils.getEpochDayForToday()) {
+            /* Formatted before midnight; whatever it calls "Today" is yesterday now */
+            invalidate();
+            return null;
+        }
+        return model;
+    }
+
+    /**
+     * Caches a model, unless the weather data has changed since {@code generation} was read.
+     *
+     * @param model      The model to cache. Partial models are ignored.
+     * @param generation The value of {@link #getGeneration()} before the model's data was queried
+     */
+    static void put(DetailModel model, int generation) {
+        if (!model.hasExtraDetails
+                || model.formattedOnEpochDay != SunshineDateUtils.getEpochDayForToday()) {
+            return;
+        }
+        synchronized (sCache) {
+            if (generation == sGeneration) {
+                sCache.put(model.date, model);
+            }
+        }
+    }
+
+    /**
+     * Drops the cached model for one day. Called when that day's weather changes.
+     *
+     * @param date Normalized UTC date
+     */
+    static void invalidate(long date) {
+        synchronized (sCache) {
+            sGeneration++;
+            sCache.remove(date);
+        }
+    }
+
+    /**
+     * Drops every cached model. Called when the weather data or the units change.
+     */
+    static void invalidate() {
+        synchronized (sCache) {
+            sGeneration++;
+            sCache.evictAll();
+        }
+    }
+
+    /*
+     * Before API 16 onChange is never given a URI, and a change to the whole table is notified at
+     * CONTENT_URI itself; only weather/<epochDay> names a single day.
+     */
+    private static boolean isSingleDayUri(Uri uri) {
+        if (uri == null) {
+            return false;
+        }
+        List<String> segments = uri.getPathSegments();
+        return segments.size() == 2
+                && WeatherContract.PATH_WEATHER.equals(segments.get(0))
+                && TextUtils.isDigitsOnly(segments.get(1));
+    }
+}
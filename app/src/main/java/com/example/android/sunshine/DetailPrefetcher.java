@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.os.AsyncTask;
+
+import com.example.android.sunshine.data.WeatherContract;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+/**
+ * Warms {@link DetailModelCache} for the days currently visible in MainActivity's list. Only
+ * one prefetch runs at a time; starting a new one cancels any that is still in flight, since
+ * the user has scrolled on and the old range is no longer interesting.
+ */
+class DetailPrefetcher {
+
+    private final Context mContext;
+
+    private PrefetchTask mPrefetchTask;
+
+    DetailPrefetcher(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    /**
+     * Loads and formats the details for every date in the array that isn't already cached.
+     *
+     * @param dates Normalized UTC dates, in ascending order
+     */
+    void prefetch(long[] dates) {
+        long firstMissing = -1;
+        long lastMissing = -1;
+        for (long date : dates) {
+            if (DetailModelCache.get(date) == null) {
+                if (firstMissing == -1) firstMissing = date;
+                lastMissing = date;
+            }
+        }
+
+        /* Everything on screen is already cached, nothing to do */
+        if (firstMissing == -1) {
+            return;
+        }
+
+        cancel();
+        mPrefetchTask = new PrefetchTask(mContext, firstMissing, lastMissing);
+        mPrefetchTask.execute();
+    }
+
+    /**
+     * Cancels the prefetch in flight, if there is one.
+     */
+    void cancel() {
+        if (mPrefetchTask != null) {
+            mPrefetchTask.cancel(false);
+            mPrefetchTask = null;
+        }
+    }
+
+    private static class PrefetchTask extends AsyncTask<Void, Void, Void> {
+
+        private final Context mContext;
+        private final long mFirstDate;
+        private final long mLastDate;
+
+        PrefetchTask(Context context, long firstDate, long lastDate) {
+            mContext = context;
+            mFirstDate = firstDate;
+            mLastDate = lastDate;
+        }
+
+        @Override
+        protected Void doInBackground(Void... voids) {
+            int generation = DetailModelCache.getGeneration();
+
+            /* One range query for the whole visible window rather than one query per day */
+            String selection = WeatherContract.WeatherEntry.COLUMN_EPOCH_DAY + " >= ? AND "
+                    + WeatherContract.WeatherEntry.COLUMN_EPOCH_DAY + " <= ?";
+            String[] selectionArgs = {
+                    Long.toString(SunshineDateUtils.getEpochDay(mFirstDate)),
+                    Long.toString(SunshineDateUtils.getEpochDay(mLastDate))
+            };
+
+            Cursor cursor = mContext.getContentResolver().query(
+                    WeatherContract.WeatherEntry.CONTENT_URI,
+                    DetailActivity.WEATHER_DETAIL_PROJECTION,
+                    selection,
+                    selectionArgs,
+                    null);
+
+            if (cursor == null) {
+                return null;
+            }
+
+            try {
+                while (!isCancelled() && cursor.moveToNext()) {
+                    DetailModelCache.put(DetailModel.fromCursor(mContext, cursor), generation);
+                }
+            } finally {
+                cursor.close();
+            }
+            return null;
+        }
+    }
+}
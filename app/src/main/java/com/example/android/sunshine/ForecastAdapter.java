@@ -28,9 +28,12 @@ import android.widget.TextView;
 import com.example.android.sunshine.utilities.SunshineDateUtils;
 import com.example.android.sunshine.utilities.SunshineWeatherUtils;
 
+import java.util.Arrays;
+
 /**
  * {@link ForecastAdapter} exposes a list of weather forecasts
  * from a {@link android.database.Cursor} to a {@link android.support.v7.widget.RecyclerView}.
+ * The rows are loaded a page at a time by a {@link ForecastPager} as the user scrolls.
  */
 class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapterViewHolder> {
 
@@ -49,10 +52,12 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
     final private ForecastAdapterOnClickHandler mClickHandler;
 
     /**
-     * The interface that receives onClick messages.
+     * The interface that receives onClick messages. Along with the date, we pass along the
+     * values the list has already loaded for that day so that the detail screen can display
+     * them without waiting for its own query.
      */
     public interface ForecastAdapterOnClickHandler {
-        void onClick(long date);
+        void onClick(long date, int weatherId, double highInCelsius, double lowInCelsius);
     }
 
     /*
@@ -63,7 +68,7 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
      */
     private boolean mUseTodayLayout;
 
-    private Cursor mCursor;
+    private final ForecastPager mPager;
 
     /**
      * Creates a ForecastAdapter.
@@ -76,6 +81,25 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
         mContext = context;
         mClickHandler = clickHandler;
         mUseTodayLayout = mContext.getResources().getBoolean(R.bool.use_today_layout);
+        mPager = new ForecastPager(context, new ForecastPager.Listener() {
+            @Override
+            public void onRowsInserted(int positionStart, int rowCount) {
+                notifyItemRangeInserted(positionStart, rowCount);
+            }
+
+            @Override
+            public void onRowsChanged(int positionStart, int rowCount) {
+                notifyItemRangeChanged(positionStart, rowCount);
+            }
+
+            @Override
+            public void onAllRowsChanged() {
+                notifyDataSetChanged();
+            }
+        });
+
+        /* Lets the RecyclerView keep each day's view when the whole list is reloaded */
+        setHasStableIds(true);
     }
 
     /**
@@ -129,12 +153,21 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
      */
     @Override
     public void onBindViewHolder(ForecastAdapterViewHolder forecastAdapterViewHolder, int position) {
-        mCursor.moveToPosition(position);
+        Cursor cursor = mPager.moveToPosition(position);
+
+        /* If this row is close to the end of what we have, start loading the next page */
+        mPager.onRowShown(position);
+
+        if (cursor == null) {
+            /* The row's page was closed to save memory and is loading again; show it blank */
+            forecastAdapterViewHolder.clear();
+            return;
+        }
 
         /****************
          * Weather Icon *
          ****************/
-        int weatherId = mCursor.getInt(MainActivity.INDEX_WEATHER_CONDITION_ID);
+        int weatherId = cursor.getInt(MainActivity.INDEX_WEATHER_CONDITION_ID);
         int weatherImageId;
 
         int viewType = getItemViewType(position);
@@ -161,7 +194,7 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
          * Weather Date *
          ****************/
          /* Read date from the cursor */
-        long dateInMillis = mCursor.getLong(MainActivity.INDEX_WEATHER_DATE);
+        long dateInMillis = cursor.getLong(MainActivity.INDEX_WEATHER_DATE);
          /* Get human readable string using our utility method */
         String dateString = SunshineDateUtils.getFriendlyDateString(mContext, dateInMillis, false);
 
@@ -183,7 +216,7 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
          * High (max) temperature *
          **************************/
          /* Read high temperature from the cursor (in degrees celsius) */
-        double highInCelsius = mCursor.getDouble(MainActivity.INDEX_WEATHER_MAX_TEMP);
+        double highInCelsius = cursor.getDouble(MainActivity.INDEX_WEATHER_MAX_TEMP);
          /*
           * If the user's preference for weather is fahrenheit, formatTemperature will convert
           * the temperature. This method will also append either °C or °F to the temperature
@@ -201,7 +234,7 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
          * Low (min) temperature *
          *************************/
          /* Read low temperature from the cursor (in degrees celsius) */
-        double lowInCelsius = mCursor.getDouble(MainActivity.INDEX_WEATHER_MIN_TEMP);
+        double lowInCelsius = cursor.getDouble(MainActivity.INDEX_WEATHER_MIN_TEMP);
          /*
           * If the user's preference for weather is fahrenheit, formatTemperature will convert
           * the temperature. This method will also append either °C or °F to the temperature
@@ -223,8 +256,18 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
      */
     @Override
     public int getItemCount() {
-        if (null == mCursor) return 0;
-        return mCursor.getCount();
+        return mPager.getCount();
+    }
+
+    /**
+     * Each row's id is its date, so a day keeps its view when the list is reloaded around it.
+     *
+     * @param position index within our RecyclerView
+     * @return the id of the row at that position
+     */
+    @Override
+    public long getItemId(int position) {
+        return mPager.getItemId(position);
     }
 
     /**
@@ -247,16 +290,49 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
     }
 
     /**
-     * Swaps the cursor used by the ForecastAdapter for its weather data. This method is called by
+     * Returns the dates of the rows between two adapter positions, inclusive. MainActivity uses
+     * this to find out which days are on screen so that their details can be prefetched.
+     *
+     * @param firstPosition The first position, inclusive
+     * @param lastPosition  The last position, inclusive
+     * @return The normalized dates of the rows in that range, in ascending order. Rows whose page
+     * is still loading are left out.
+     */
+    long[] getDates(int firstPosition, int lastPosition) {
+        if (firstPosition < 0 || lastPosition < firstPosition) {
+            return new long[0];
+        }
+
+        lastPosition = Math.min(lastPosition, mPager.getCount() - 1);
+        long[] dates = new long[Math.max(0, lastPosition - firstPosition + 1)];
+        int dateCount = 0;
+        for (int position = firstPosition; position <= lastPosition; position++) {
+            Cursor cursor = mPager.moveToPosition(position);
+            if (cursor != null) {
+                dates[dateCount++] = cursor.getLong(MainActivity.INDEX_WEATHER_DATE);
+            }
+        }
+        return dateCount == dates.length ? dates : Arrays.copyOf(dates, dateCount);
+    }
+
+    /**
+     * Swaps the first page of weather data used by the ForecastAdapter. This method is called by
      * MainActivity after a load has finished, as well as when the Loader responsible for loading
-     * the weather data is reset. When this method is called, we assume we have a completely new
-     * set of data, so we call notifyDataSetChanged to tell the RecyclerView to update.
+     * the weather data is reset. Any later pages are reloaded to follow the new first page, and
+     * the RecyclerView is told to update.
      *
-     * @param newCursor the new cursor to use as ForecastAdapter's data source
+     * @param newCursor the first page of weather, as queried by MainActivity's CursorLoader
      */
     void swapCursor(Cursor newCursor) {
-        mCursor = newCursor;
-        notifyDataSetChanged();
+        mPager.setFirstPage(newCursor);
+    }
+
+    /**
+     * Closes the pages of weather data the adapter loaded itself. Called when MainActivity is
+     * destroyed.
+     */
+    void close() {
+        mPager.close();
     }
 
     /**
@@ -284,19 +360,43 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
             view.setOnClickListener(this);
         }
 
+        /**
+         * Empties the row while its page is loading.
+         */
+        void clear() {
+            iconView.setImageDrawable(null);
+            dateView.setText(null);
+            descriptionView.setText(null);
+            descriptionView.setContentDescription(null);
+            highTempView.setText(null);
+            highTempView.setContentDescription(null);
+            lowTempView.setText(null);
+            lowTempView.setContentDescription(null);
+        }
+
         /**
          * This gets called by the child views during a click. We fetch the date that has been
          * selected, and then call the onClick handler registered with this adapter, passing that
-         * date.
+         * date along with the rest of the row.
          *
          * @param v the View that was clicked
          */
         @Override
         public void onClick(View v) {
             int adapterPosition = getAdapterPosition();
-            mCursor.moveToPosition(adapterPosition);
-            long dateInMillis = mCursor.getLong(MainActivity.INDEX_WEATHER_DATE);
-            mClickHandler.onClick(dateInMillis);
+            if (adapterPosition == RecyclerView.NO_POSITION) {
+                return;
+            }
+            Cursor cursor = mPager.moveToPosition(adapterPosition);
+            if (cursor == null) {
+                /* Nothing to show until the row's page has loaded */
+                return;
+            }
+            long dateInMillis = cursor.getLong(MainActivity.INDEX_WEATHER_DATE);
+            int weatherId = cursor.getInt(MainActivity.INDEX_WEATHER_CONDITION_ID);
+            double highInCelsius = cursor.getDouble(MainActivity.INDEX_WEATHER_MAX_TEMP);
+            double lowInCelsius = cursor.getDouble(MainActivity.INDEX_WEATHER_MIN_TEMP);
+            mClickHandler.onClick(dateInMillis, weatherId, highInCelsius, lowInCelsius);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,453 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.AsyncTask;
+
+import com.example.android.sunshine.data.WeatherContract;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds the rows of MainActivity's forecast list one page at a time, so that ForecastAdapter
+ * never needs one cursor big enough for every row there is.
+ * <p>
+ * MainActivity's CursorLoader only loads the first page. As the user scrolls towards the end of
+ * what has been loaded, the next page is queried in the background and appended. Each page is
+ * its own small cursor, and only {@link #MAX_LOADED_PAGES} of them are kept open besides the
+ * first. The pages furthest from the row being shown are closed, and loaded again if the user
+ * scrolls back to them. All we keep of a closed page is the few numbers needed to query it and
+ * check it again, so however far the user scrolls, only a handful of cursors are ever open.
+ * <p>
+ * Every page but the last is full, so a row's page is just its position divided by
+ * {@link #PAGE_SIZE}. Closing a page doesn't move any rows: its rows are still counted, and
+ * {@link #moveToPosition(int)} returns null for them until the page is back.
+ * <p>
+ * When the weather changes, the CursorLoader reloads the first page and hands it to
+ * {@link #setFirstPage(Cursor)}. If the first page still ends on the same day, the pages after it
+ * still line up with it, and the open ones are reloaded in place while the old ones are shown. If
+ * it doesn't, usually because a day has passed, the later pages are dropped and load again as the
+ * user scrolls.
+ */
+class ForecastPager {
+
+    /* Comfortably more than a screen of rows, and more than a full forecast */
+    static final int PAGE_SIZE = 30;
+
+    /* How many pages to keep open after the first, which belongs to the CursorLoader */
+    static final int MAX_LOADED_PAGES = 4;
+
+    /* Start loading the next page once the user is this close to the end of what we have */
+    static final int PREFETCH_DISTANCE = 10;
+
+    /* The day the first page starts after, since it doesn't start after any */
+    private static final long NO_EPOCH_DAY = Long.MIN_VALUE;
+
+    /**
+     * Told about the rows changing, on the main thread.
+     */
+    interface Listener {
+
+        /* Rows were appended to the end of the list */
+        void onRowsInserted(int positionStart, int rowCount);
+
+        /* Rows were loaded again, and are still the same days in the same positions */
+        void onRowsChanged(int positionStart, int rowCount);
+
+        /* Anything else may have changed */
+        void onAllRowsChanged();
+    }
+
+    /**
+     * Loads pages for a ForecastPager, which hands each request to {@link #load(PageRequest)}
+     * and expects the result back in {@link #onPageLoaded(PageRequest, Cursor)}, on the main
+     * thread. Tests answer requests themselves.
+     */
+    interface PageLoader {
+        void load(PageRequest request);
+    }
+
+    /**
+     * Asks for up to {@link #PAGE_SIZE} rows starting after a day.
+     */
+    static final class PageRequest {
+
+        private final int mPageIndex;
+        private final long mAfterEpochDay;
+
+        PageRequest(int pageIndex, long afterEpochDay) {
+            mPageIndex = pageIndex;
+            mAfterEpochDay = afterEpochDay;
+        }
+
+        long getAfterEpochDay() {
+            return mAfterEpochDay;
+        }
+    }
+
+    private final PageLoader mLoader;
+    private final Listener mListener;
+
+    /* The first page belongs to MainActivity's CursorLoader. The rest are ours to close. */
+    private final List<Page> mPages = new ArrayList<>();
+    private int mCount;
+    private boolean mEndReached = true;
+
+    /* The load of the next page, if one is in flight */
+    private PageRequest mAppendRequest;
+
+    /* Where the user is, so we know which pages are furthest away */
+    private int mShownPageIndex;
+
+    ForecastPager(Context context, Listener listener) {
+        final Context appContext = context.getApplicationContext();
+        mLoader = new PageLoader() {
+            @Override
+            public void load(PageRequest request) {
+                new PageTask(appContext, request).execute();
+            }
+        };
+        mListener = listener;
+    }
+
+    /**
+     * Only for tests, which load pages themselves.
+     */
+    ForecastPager(PageLoader loader, Listener listener) {
+        mLoader = loader;
+        mListener = listener;
+    }
+
+    /**
+     * @return The number of rows loaded so far, including those in closed pages
+     */
+    int getCount() {
+        return mCount;
+    }
+
+    /**
+     * Moves to a row. The cursor returned is only good until the next call.
+     *
+     * @param position A position between 0 and {@link #getCount()}, exclusive
+     * @return The cursor holding the row, positioned on it, or null if the row's page has been
+     * closed and hasn't been loaded again yet
+     */
+    Cursor moveToPosition(int position) {
+        if (position < 0 || position >= mCount) {
+            throw new IndexOutOfBoundsException("No row at position " + position);
+        }
+        Cursor page = mPages.get(position / PAGE_SIZE).mCursor;
+        if (page == null) {
+            return null;
+        }
+        page.moveToPosition(position % PAGE_SIZE);
+        return page;
+    }
+
+    /**
+     * @param position A position between 0 and {@link #getCount()}, exclusive
+     * @return The row's date, which no other row shares, or a negative placeholder if the row's
+     * page is closed. Placeholders start below -1, which RecyclerView reserves for no id.
+     */
+    long getItemId(int position) {
+        Cursor page = moveToPosition(position);
+        return page != null ? page.getLong(MainActivity.INDEX_WEATHER_DATE) : -2 - position;
+    }
+
+    /**
+     * Called as each row is shown. Loads the row's page again if it was closed, and the next page
+     * if the row is near the end of what we have and there may be more, both in the background.
+     *
+     * @param position The position of the row being shown
+     */
+    void onRowShown(int position) {
+        mShownPageIndex = position / PAGE_SIZE;
+        Page page = mPages.get(mShownPageIndex);
+        if (page.mCursor == null && page.mRequest == null) {
+            loadPage(mShownPageIndex);
+        }
+
+        if (mEndReached || mAppendRequest != null || position < mCount - PREFETCH_DISTANCE) {
+            return;
+        }
+        Page lastPage = mPages.get(mPages.size() - 1);
+        mAppendRequest = new PageRequest(mPages.size(), lastPage.mLastEpochDay);
+        mLoader.load(mAppendRequest);
+    }
+
+    /**
+     * Replaces the first page, when MainActivity's CursorLoader has loaded it again.
+     *
+     * @param firstPage The first page, or null if there is no weather to show
+     */
+    void setFirstPage(Cursor firstPage) {
+        /* Whatever was being appended followed the old first page */
+        mAppendRequest = null;
+
+        if (firstPage == null || firstPage.getCount() == 0) {
+            /* The old first page is the CursorLoader's to close, and it may already have */
+            closeLaterPages(0);
+            mPages.clear();
+            mEndReached = true;
+        } else {
+            Page first = new Page(NO_EPOCH_DAY);
+            first.setCursor(firstPage);
+
+            boolean laterPagesLineUp = firstPage.getCount() == PAGE_SIZE
+                    && mPages.size() > 1
+                    && mPages.get(1).mAfterEpochDay == first.mLastEpochDay;
+            if (laterPagesLineUp) {
+                /* Keep showing the old rows until the reloads replace them */
+                mPages.set(0, first);
+                for (int i = 1; i < mPages.size(); i++) {
+                    Page page = mPages.get(i);
+                    if (page.mCursor != null || page.mRequest != null) {
+                        loadPage(i);
+                    }
+                }
+            } else {
+                closeLaterPages(0);
+                mPages.clear();
+                mPages.add(first);
+                mEndReached = firstPage.getCount() < PAGE_SIZE;
+            }
+        }
+
+        countRows();
+        mListener.onAllRowsChanged();
+    }
+
+    /**
+     * Hands back a page that was asked for with {@link PageLoader#load(PageRequest)}. Pages that
+     * are no longer wanted are closed.
+     *
+     * @param request The request the page answers
+     * @param cursor  The page, or null if it couldn't be loaded
+     */
+    void onPageLoaded(PageRequest request, Cursor cursor) {
+        if (request == mAppendRequest) {
+            mAppendRequest = null;
+            onNextPageLoaded(request, cursor);
+            return;
+        }
+
+        int index = request.mPageIndex;
+        Page page = index < mPages.size() ? mPages.get(index) : null;
+        if (page == null || page.mRequest != request) {
+            if (cursor != null) cursor.close();
+            return;
+        }
+        page.mRequest = null;
+        if (cursor == null) {
+            /* Leave it as it was; it is tried again when it's next shown */
+            return;
+        }
+
+        int oldRowCount = page.mRowCount;
+        long oldLastEpochDay = page.mLastEpochDay;
+        if (page.mCursor != null) {
+            page.mCursor.close();
+            page.mCursor = null;
+        }
+
+        if (cursor.getCount() == 0) {
+            /* The weather ends before this page now */
+            cursor.close();
+            closeLaterPages(index - 1);
+            mPages.subList(index, mPages.size()).clear();
+            mEndReached = true;
+        } else {
+            page.setCursor(cursor);
+            if (page.mRowCount == oldRowCount && page.mLastEpochDay == oldLastEpochDay) {
+                /* The same days as before, so no other page has moved */
+                evictFarPages();
+                mListener.onRowsChanged(index * PAGE_SIZE, page.mRowCount);
+                return;
+            }
+            /* The pages after this one no longer line up with it, so they go */
+            closeLaterPages(index);
+            mPages.subList(index + 1, mPages.size()).clear();
+            mEndReached = page.mRowCount < PAGE_SIZE;
+        }
+
+        mAppendRequest = null;
+        countRows();
+        mListener.onAllRowsChanged();
+    }
+
+    /**
+     * Closes every page this pager loaded itself and lets go of them all. The first page is left
+     * to its CursorLoader to close.
+     */
+    void close() {
+        mAppendRequest = null;
+        closeLaterPages(0);
+        mPages.clear();
+        mCount = 0;
+        mEndReached = true;
+    }
+
+    private void onNextPageLoaded(PageRequest request, Cursor cursor) {
+        if (cursor == null) {
+            mEndReached = true;
+            return;
+        }
+        mEndReached = cursor.getCount() < PAGE_SIZE;
+        if (cursor.getCount() == 0) {
+            cursor.close();
+            return;
+        }
+
+        Page page = new Page(request.mAfterEpochDay);
+        page.setCursor(cursor);
+        int positionStart = mCount;
+        mPages.add(page);
+        countRows();
+        evictFarPages();
+        mListener.onRowsInserted(positionStart, page.mRowCount);
+    }
+
+    private void loadPage(int index) {
+        Page page = mPages.get(index);
+        page.mRequest = new PageRequest(index, page.mAfterEpochDay);
+        mLoader.load(page.mRequest);
+    }
+
+    /*
+     * Closes the open pages furthest from the one being shown until no more than
+     * MAX_LOADED_PAGES are open after the first.
+     */
+    private void evictFarPages() {
+        while (true) {
+            int loadedCount = 0;
+            int furthest = -1;
+            for (int i = 1; i < mPages.size(); i++) {
+                if (mPages.get(i).mCursor == null) {
+                    continue;
+                }
+                loadedCount++;
+                if (furthest == -1 || Math.abs(i - mShownPageIndex)
+                        > Math.abs(furthest - mShownPageIndex)) {
+                    furthest = i;
+                }
+            }
+            if (loadedCount <= MAX_LOADED_PAGES) {
+                return;
+            }
+            mPages.get(furthest).mCursor.close();
+            mPages.get(furthest).mCursor = null;
+        }
+    }
+
+    private void countRows() {
+        mCount = mPages.isEmpty() ? 0 : (mPages.size() - 1) * PAGE_SIZE + getLastPageRowCount();
+    }
+
+    private int getLastPageRowCount() {
+        return mPages.get(mPages.size() - 1).mRowCount;
+    }
+
+    /*
+     * Closes the open pages after the given one, and forgets their loads so any results are
+     * thrown away.
+     */
+    private void closeLaterPages(int index) {
+        for (int i = Math.max(index + 1, 1); i < mPages.size(); i++) {
+            Page page = mPages.get(i);
+            if (page.mCursor != null) {
+                page.mCursor.close();
+                page.mCursor = null;
+            }
+            page.mRequest = null;
+        }
+    }
+
+    /*
+     * One page of rows. Everything but the cursor is kept when the page is closed, so that it can
+     * be loaded again and checked against what it held before.
+     */
+    private static final class Page {
+
+        /* The day this page's rows come after, which is how it is queried */
+        final long mAfterEpochDay;
+
+        int mRowCount;
+        long mLastEpochDay;
+
+        /* Null while the page is closed */
+        Cursor mCursor;
+
+        /* The load in flight, if there is one. A result for any other request is discarded. */
+        PageRequest mRequest;
+
+        Page(long afterEpochDay) {
+            mAfterEpochDay = afterEpochDay;
+        }
+
+        void setCursor(Cursor cursor) {
+            mCursor = cursor;
+            mRowCount = cursor.getCount();
+            cursor.moveToLast();
+            mLastEpochDay = SunshineDateUtils.getEpochDay(
+                    cursor.getLong(MainActivity.INDEX_WEATHER_DATE));
+        }
+    }
+
+    /*
+     * Tasks aren't cancelled when they're no longer wanted, since before API 11 a cancelled task
+     * never hands its cursor back to be closed. They finish and onPageLoaded throws the page away.
+     */
+    private class PageTask extends AsyncTask<Void, Void, Cursor> {
+
+        private final Context mContext;
+        private final PageRequest mRequest;
+
+        PageTask(Context context, PageRequest request) {
+            mContext = context;
+            mRequest = request;
+        }
+
+        @Override
+        protected Cursor doInBackground(Void... voids) {
+            Uri pageUri = WeatherContract.WeatherEntry.buildPageUri(
+                    WeatherContract.WeatherEntry.UPCOMING_URI,
+                    mRequest.mAfterEpochDay,
+                    PAGE_SIZE);
+            Cursor page = mContext.getContentResolver().query(
+                    pageUri,
+                    MainActivity.MAIN_FORECAST_PROJECTION,
+                    null,
+                    null,
+                    null);
+
+            /* Like CursorLoader, fill the cursor's window here rather than on the main thread */
+            if (page != null) {
+                page.getCount();
+            }
+            return page;
+        }
+
+        @Override
+        protected void onPostExecute(Cursor page) {
+            onPageLoaded(mRequest, page);
+        }
+    }
+}
@@ -35,7 +35,7 @@ import android.widget.ProgressBar;
 import com.example.android.sunshine.data.SunshinePreferences;
 import com.example.android.sunshine.data.WeatherContract;
 import com.example.android.sunshine.sync.SunshineSyncUtils;
-import com.example.android.sunshine.wear.WearIntentService;
+import com.example.android.sunshine.wear.WearSyncUtils;
 
 public class MainActivity extends AppCompatActivity implements
         LoaderManager.LoaderCallbacks<Cursor>,
@@ -80,6 +80,28 @@ public class MainActivity extends AppCompatActivity implements
 
     private ProgressBar mLoadingIndicator;
 
+    /* Warms the details of the visible days so that tapping on one of them is a cache hit */
+    private DetailPrefetcher mDetailPrefetcher;
+
+    private final Runnable mPrefetchVisibleDetails = new Runnable() {
+        @Override
+        public void run() {
+            prefetchVisibleDetails();
+        }
+    };
+
+    /*
+     * ForecastAdapter formats temperatures as it binds each row, so when the units change,
+     * rebinding the rows we have is all it takes. There is no need to query the weather again.
+     */
+    private final SunshinePreferences.OnDisplaySettingsChangedListener mDisplaySettingsListener =
+            new SunshinePreferences.OnDisplaySettingsChangedListener() {
+                @Override
+                public void onDisplaySettingsChanged(SunshinePreferences.Snapshot snapshot) {
+                    mForecastAdapter.notifyDataSetChanged();
+                }
+            };
+
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -143,6 +165,24 @@ public class MainActivity extends AppCompatActivity implements
         /* Setting the adapter attaches it to the RecyclerView in our layout. */
         mRecyclerView.setAdapter(mForecastAdapter);
 
+        /*
+         * Whenever the list comes to rest, load the details for the days on screen in the
+         * background. We wait for the list to be idle so that prefetching never competes with
+         * scrolling for the main thread or the database.
+         */
+        DetailModelCache.initialize(this);
+        mDetailPrefetcher = new DetailPrefetcher(this);
+        mRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+                if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                    prefetchVisibleDetails();
+                } else {
+                    mDetailPrefetcher.cancel();
+                }
+            }
+        });
+
 
         showLoading();
 
@@ -153,10 +193,22 @@ public class MainActivity extends AppCompatActivity implements
          */
         getSupportLoaderManager().initLoader(ID_FORECAST_LOADER, null, this);
 
+        SunshinePreferences.registerDisplaySettingsListener(this, mDisplaySettingsListener);
+
         SunshineSyncUtils.initialize(this);
 
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        SunshinePreferences.unregisterDisplaySettingsListener(mDisplaySettingsListener);
+        /* A prefetch posted by onLoadFinished may still be waiting; it mustn't outlive us */
+        mRecyclerView.removeCallbacks(mPrefetchVisibleDetails);
+        mDetailPrefetcher.cancel();
+        mForecastAdapter.close();
+    }
+
     /**
      * Uses the URI scheme for showing a location found on a map in conjunction with
      * an implicit Intent. This super-handy Intent is detailed in the "Common Intents" page of
@@ -199,21 +251,22 @@ public class MainActivity extends AppCompatActivity implements
         switch (loaderId) {
 
             case ID_FORECAST_LOADER:
-                /* URI for all rows of weather data in our weather table */
-                Uri forecastQueryUri = WeatherContract.WeatherEntry.CONTENT_URI;
-                /* Sort order: Ascending by date */
-                String sortOrder = WeatherContract.WeatherEntry.COLUMN_DATE + " ASC";
                 /*
-                 * A SELECTION in SQL declares which rows you'd like to return. In our case, we
-                 * want all weather data from today onwards that is stored in our weather table.
-                 * We created a handy method to do that in our WeatherEntry class.
+                 * URI for the first page of the weather from today onwards. We could query every
+                 * row with a SELECTION for today onwards instead, but the provider answers this
+                 * URI with the exact same SQL every time, which SQLite only has to compile once.
+                 * ForecastAdapter loads the pages after this one as the user scrolls, so however
+                 * much weather there is, no single cursor has to hold all of it.
                  */
-                String selection = WeatherContract.WeatherEntry.getSqlSelectForTodayOnwards();
+                Uri forecastQueryUri = WeatherContract.WeatherEntry.buildPageUri(
+                        WeatherContract.WeatherEntry.UPCOMING_URI, ForecastPager.PAGE_SIZE);
+                /* Sort order: Ascending by date */
+                String sortOrder = WeatherContract.WeatherEntry.COLUMN_EPOCH_DAY + " ASC";
 
                 return new CursorLoader(this,
                         forecastQueryUri,
                         MAIN_FORECAST_PROJECTION,
-                        selection,
+                        null,
                         null,
                         sortOrder);
 
@@ -242,8 +295,11 @@ public class MainActivity extends AppCompatActivity implements
         mRecyclerView.smoothScrollToPosition(mPosition);
         if (data.getCount() != 0) showWeatherDataView();
 
-        Intent i = new Intent (MainActivity.this, WearIntentService.class);
-        startService(i);
+        /* Prefetch once the RecyclerView has laid out the new data */
+        mRecyclerView.post(mPrefetchVisibleDetails);
+
+        /* Debounced, and skipped entirely if the watch already has this weather */
+        WearSyncUtils.requestWearSync(this);
     }
 
     /**
@@ -259,22 +315,42 @@ public class MainActivity extends AppCompatActivity implements
          * displaying the data.
          */
         mForecastAdapter.swapCursor(null);
+        mDetailPrefetcher.cancel();
     }
 
     /**
      * This method is for responding to clicks from our list.
      *
-     * @param date Normalized UTC time that represents the local date of the weather in GMT time.
+     * @param date          Normalized UTC time that represents the local date of the weather in
+     *                      GMT time.
+     * @param weatherId     Weather condition ID of the clicked row
+     * @param highInCelsius High temperature of the clicked row
+     * @param lowInCelsius  Low temperature of the clicked row
      * @see WeatherContract.WeatherEntry#COLUMN_DATE
      */
     @Override
-    public void onClick(long date) {
+    public void onClick(long date, int weatherId, double highInCelsius, double lowInCelsius) {
         Intent weatherDetailIntent = new Intent(MainActivity.this, DetailActivity.class);
         Uri uriForDateClicked = WeatherContract.WeatherEntry.buildWeatherUriWithDate(date);
         weatherDetailIntent.setData(uriForDateClicked);
+        /* Seed DetailActivity with what we already have so it can render without waiting */
+        weatherDetailIntent.putExtra(DetailActivity.EXTRA_WEATHER_ID, weatherId);
+        weatherDetailIntent.putExtra(DetailActivity.EXTRA_MAX_TEMP, highInCelsius);
+        weatherDetailIntent.putExtra(DetailActivity.EXTRA_MIN_TEMP, lowInCelsius);
         startActivity(weatherDetailIntent);
     }
 
+    /**
+     * Asks the DetailPrefetcher to load the details for every day that is currently visible.
+     */
+    private void prefetchVisibleDetails() {
+        LinearLayoutManager layoutManager = (LinearLayoutManager) mRecyclerView.getLayoutManager();
+        long[] visibleDates = mForecastAdapter.getDates(
+                layoutManager.findFirstVisibleItemPosition(),
+                layoutManager.findLastVisibleItemPosition());
+        mDetailPrefetcher.prefetch(visibleDates);
+    }
+
     /**
      * This method will make the View for the weather data visible and hide the error message and
      * loading indicator.
@@ -25,8 +25,8 @@ import android.support.v7.preference.PreferenceFragmentCompat;
 import android.support.v7.preference.PreferenceScreen;
 
 import com.example.android.sunshine.data.SunshinePreferences;
-import com.example.android.sunshine.data.WeatherContract;
 import com.example.android.sunshine.sync.SunshineSyncUtils;
+import com.example.android.sunshine.wear.WearSyncUtils;
 
 /**
  * The SettingsFragment serves as the display for all of the user's settings. In Sunshine, the
@@ -100,8 +100,10 @@ public class SettingsFragment extends PreferenceFragmentCompat implements
             SunshinePreferences.resetLocationCoordinates(activity);
             SunshineSyncUtils.startImmediateSync(activity);
         } else if (key.equals(getString(R.string.pref_units_key))) {
-            // units have changed. update lists of weather entries accordingly
-            activity.getContentResolver().notifyChange(WeatherContract.WeatherEntry.CONTENT_URI, null);
+            // units have changed. The weather itself hasn't, so rather than invalidating the
+            // weather data, SunshinePreferences tells the screens showing it to reformat what
+            // they already have. The watch gets its weather in the new units too.
+            WearSyncUtils.requestWearSync(activity);
         }
         Preference preference = findPreference(key);
         if (null != preference) {
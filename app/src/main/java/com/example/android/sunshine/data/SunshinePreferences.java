@@ -17,10 +17,15 @@ package com.example.android.sunshine.data;
 
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
 import android.preference.PreferenceManager;
 
 import com.example.android.sunshine.R;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public final class SunshinePreferences {
 
     /*
@@ -31,6 +36,229 @@ public final class SunshinePreferences {
     public static final String PREF_COORD_LAT = "coord_lat";
     public static final String PREF_COORD_LONG = "coord_long";
 
+    /*
+     * The most recently loaded Snapshot of the user's preferences. Hot paths such as adapter
+     * binding and temperature formatting read this field without taking a lock. It is replaced
+     * wholesale (never mutated) whenever a preference changes, so readers always see a
+     * consistent set of values.
+     */
+    private static volatile Snapshot sSnapshot;
+
+    /*
+     * SharedPreferences only keeps a weak reference to its listeners, so we hold on to ours
+     * statically for the lifetime of the process.
+     */
+    private static SharedPreferences.OnSharedPreferenceChangeListener sSnapshotUpdater;
+
+    /*
+     * Listeners for changes that only affect how weather is displayed. Only ever touched on the
+     * main thread, which is also where they are called.
+     */
+    private static final List<OnDisplaySettingsChangedListener> sDisplaySettingsListeners =
+            new ArrayList<>();
+
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Told when a preference that changes how weather is displayed, but not which weather we
+     * have, is changed. Today that is the units. Nothing in the database changes when the units
+     * do, so instead of re-querying, listeners reformat the data they have already loaded.
+     */
+    public interface OnDisplaySettingsChangedListener {
+        /**
+         * Called on the main thread.
+         *
+         * @param snapshot The preferences Snapshot that contains the change
+         */
+        void onDisplaySettingsChanged(Snapshot snapshot);
+    }
+
+    /**
+     * An immutable view of every preference Sunshine reads. Preference keys and defaults are
+     * resolved from resources once, when the snapshot is loaded, rather than on every access.
+     */
+    public static final class Snapshot {
+
+        private final String mLocation;
+        private final boolean mMetric;
+        private final boolean mLatLonAvailable;
+        private final double mLatitude;
+        private final double mLongitude;
+        private final boolean mNotificationsEnabled;
+        private final long mLastNotificationTime;
+        private final int mLastNotificationHash;
+        private final int mLastWearPayloadHash;
+
+        private Snapshot(Context context, SharedPreferences sp) {
+            String keyForLocation = context.getString(R.string.pref_location_key);
+            String defaultLocation = context.getString(R.string.pref_location_default);
+            mLocation = sp.getString(keyForLocation, defaultLocation);
+
+            String keyForUnits = context.getString(R.string.pref_units_key);
+            String metric = context.getString(R.string.pref_units_metric);
+            mMetric = metric.equals(sp.getString(keyForUnits, metric));
+
+            mLatLonAvailable = sp.contains(PREF_COORD_LAT) && sp.contains(PREF_COORD_LONG);
+
+            /*
+             * This is a hack we have to resort to since you can't store doubles in
+             * SharedPreferences. Double.longBitsToDouble converts a long (that represents a
+             * double) back into the double itself.
+             */
+            mLatitude = Double
+                    .longBitsToDouble(sp.getLong(PREF_COORD_LAT, Double.doubleToRawLongBits(0.0)));
+            mLongitude = Double
+                    .longBitsToDouble(sp.getLong(PREF_COORD_LONG, Double.doubleToRawLongBits(0.0)));
+
+            String displayNotificationsKey =
+                    context.getString(R.string.pref_enable_notifications_key);
+            boolean shouldDisplayNotificationsByDefault = context
+                    .getResources()
+                    .getBoolean(R.bool.show_notifications_by_default);
+            mNotificationsEnabled =
+                    sp.getBoolean(displayNotificationsKey, shouldDisplayNotificationsByDefault);
+
+            String lastNotificationKey = context.getString(R.string.pref_last_notification);
+            mLastNotificationTime = sp.getLong(lastNotificationKey, 0);
+
+            String lastNotificationHashKey = context.getString(R.string.pref_last_notification_hash);
+            mLastNotificationHash = sp.getInt(lastNotificationHashKey, 0);
+
+            String lastWearPayloadHashKey = context.getString(R.string.pref_last_wear_payload_hash);
+            mLastWearPayloadHash = sp.getInt(lastWearPayloadHashKey, 0);
+        }
+
+        public String getPreferredWeatherLocation() {
+            return mLocation;
+        }
+
+        public boolean isMetric() {
+            return mMetric;
+        }
+
+        public boolean isLocationLatLonAvailable() {
+            return mLatLonAvailable;
+        }
+
+        public double getLatitude() {
+            return mLatitude;
+        }
+
+        public double getLongitude() {
+            return mLongitude;
+        }
+
+        public boolean areNotificationsEnabled() {
+            return mNotificationsEnabled;
+        }
+
+        public long getLastNotificationTimeInMillis() {
+            return mLastNotificationTime;
+        }
+
+        public int getLastNotificationHash() {
+            return mLastNotificationHash;
+        }
+
+        public int getLastWearPayloadHash() {
+            return mLastWearPayloadHash;
+        }
+    }
+
+    /**
+     * Returns the current Snapshot of the user's preferences, loading it on first use. After the
+     * first call this is a single volatile read, which makes it safe to call from onBindViewHolder
+     * and other code that runs once per visible row.
+     *
+     * @param context Context used to get the SharedPreferences on first use
+     * @return The current preferences Snapshot
+     */
+    public static Snapshot getSnapshot(Context context) {
+        Snapshot snapshot = sSnapshot;
+        if (snapshot == null) {
+            snapshot = loadSnapshot(context);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Reads every preference into a new Snapshot and publishes it. The first time this is called,
+     * it also registers a listener so that the Snapshot is rebuilt whenever a preference changes,
+     * whether that change was made by SettingsFragment or by one of the setters below.
+     *
+     * @param context Context used to get the SharedPreferences
+     * @return The freshly loaded Snapshot
+     */
+    private static synchronized Snapshot loadSnapshot(Context context) {
+        final Context appContext = context.getApplicationContext();
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(appContext);
+
+        if (sSnapshotUpdater == null) {
+            sSnapshotUpdater = new SharedPreferences.OnSharedPreferenceChangeListener() {
+                @Override
+                public void onSharedPreferenceChanged(SharedPreferences sharedPreferences,
+                                                      String key) {
+                    loadSnapshot(appContext);
+                }
+            };
+            sp.registerOnSharedPreferenceChangeListener(sSnapshotUpdater);
+        }
+
+        Snapshot previous = sSnapshot;
+        Snapshot snapshot = new Snapshot(appContext, sp);
+        sSnapshot = snapshot;
+
+        if (previous != null && previous.isMetric() != snapshot.isMetric()) {
+            notifyDisplaySettingsChanged(snapshot);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Registers a listener for changes to how weather is displayed, such as the units. Must be
+     * called on the main thread, and balanced by a call to
+     * {@link #unregisterDisplaySettingsListener}.
+     *
+     * @param context  Context used to load the preferences, if they haven't been yet
+     * @param listener The listener to register
+     */
+    public static void registerDisplaySettingsListener(Context context,
+                                                       OnDisplaySettingsChangedListener listener) {
+        /* Changes are only noticed once the Snapshot, and with it our updater, has been loaded */
+        getSnapshot(context);
+        if (!sDisplaySettingsListeners.contains(listener)) {
+            sDisplaySettingsListeners.add(listener);
+        }
+    }
+
+    /**
+     * Unregisters a listener added with {@link #registerDisplaySettingsListener}. Must be called
+     * on the main thread.
+     *
+     * @param listener The listener to unregister
+     */
+    public static void unregisterDisplaySettingsListener(OnDisplaySettingsChangedListener listener) {
+        sDisplaySettingsListeners.remove(listener);
+    }
+
+    /**
+     * Tells every display settings listener about a change, on the main thread. Setters can run
+     * on any thread, so we always post rather than calling the listeners directly.
+     */
+    private static void notifyDisplaySettingsChanged(final Snapshot snapshot) {
+        sMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                /* Copied, since a listener may unregister itself while being called */
+                List<OnDisplaySettingsChangedListener> listeners =
+                        new ArrayList<>(sDisplaySettingsListeners);
+                for (OnDisplaySettingsChangedListener listener : listeners) {
+                    listener.onDisplaySettingsChanged(snapshot);
+                }
+            }
+        });
+    }
+
     /**
      * Helper method to handle setting location details in Preferences (city name, latitude,
      * longitude)
@@ -48,6 +276,9 @@ public final class SunshinePreferences {
         editor.putLong(PREF_COORD_LAT, Double.doubleToRawLongBits(lat));
         editor.putLong(PREF_COORD_LONG, Double.doubleToRawLongBits(lon));
         editor.apply();
+
+        /* The change listener runs later on the main thread; sync readers need the value now */
+        loadSnapshot(context);
     }
 
     /**
@@ -62,6 +293,8 @@ public final class SunshinePreferences {
         editor.remove(PREF_COORD_LAT);
         editor.remove(PREF_COORD_LONG);
         editor.apply();
+
+        loadSnapshot(context);
     }
 
     /**
@@ -74,12 +307,7 @@ public final class SunshinePreferences {
      * "94043,USA" if SharedPreferences have not been implemented yet.
      */
     public static String getPreferredWeatherLocation(Context context) {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
-
-        String keyForLocation = context.getString(R.string.pref_location_key);
-        String defaultLocation = context.getString(R.string.pref_location_default);
-
-        return sp.getString(keyForLocation, defaultLocation);
+        return getSnapshot(context).getPreferredWeatherLocation();
     }
 
     /**
@@ -89,19 +317,7 @@ public final class SunshinePreferences {
      * @return true if metric display should be used, false if imperial display should be used
      */
     public static boolean isMetric(Context context) {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
-
-        String keyForUnits = context.getString(R.string.pref_units_key);
-        String defaultUnits = context.getString(R.string.pref_units_metric);
-        String preferredUnits = sp.getString(keyForUnits, defaultUnits);
-        String metric = context.getString(R.string.pref_units_metric);
-
-        boolean userPrefersMetric = false;
-        if (metric.equals(preferredUnits)) {
-            userPrefersMetric = true;
-        }
-
-        return userPrefersMetric;
+        return getSnapshot(context).isMetric();
     }
 
     /**
@@ -113,23 +329,11 @@ public final class SunshinePreferences {
      * @return an array containing the two coordinate values for the user's preferred location
      */
     public static double[] getLocationCoordinates(Context context) {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        Snapshot snapshot = getSnapshot(context);
 
         double[] preferredCoordinates = new double[2];
-
-        /*
-         * This is a hack we have to resort to since you can't store doubles in SharedPreferences.
-         *
-         * Double.doubleToLongBits returns an integer corresponding to the bits of the given
-         * IEEE 754 double precision value.
-         *
-         * Double.longBitsToDouble does the opposite, converting a long (that represents a double)
-         * into the double itself.
-         */
-        preferredCoordinates[0] = Double
-                 .longBitsToDouble(sp.getLong(PREF_COORD_LAT, Double.doubleToRawLongBits(0.0)));
-        preferredCoordinates[1] = Double
-                .longBitsToDouble(sp.getLong(PREF_COORD_LONG, Double.doubleToRawLongBits(0.0)));
+        preferredCoordinates[0] = snapshot.getLatitude();
+        preferredCoordinates[1] = snapshot.getLongitude();
 
         return preferredCoordinates;
     }
@@ -142,17 +346,7 @@ public final class SunshinePreferences {
      * @return true if lat/long are saved in SharedPreferences
      */
     public static boolean isLocationLatLonAvailable(Context context) {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
-
-        boolean spContainLatitude = sp.contains(PREF_COORD_LAT);
-        boolean spContainLongitude = sp.contains(PREF_COORD_LONG);
-
-        boolean spContainBothLatitudeAndLongitude = false;
-        if (spContainLatitude && spContainLongitude) {
-            spContainBothLatitudeAndLongitude = true;
-        }
-
-        return spContainBothLatitudeAndLongitude;
+        return getSnapshot(context).isLocationLatLonAvailable();
     }
 
     /**
@@ -163,26 +357,7 @@ public final class SunshinePreferences {
      * @return true if the user prefers to see notifications, false otherwise
      */
     public static boolean areNotificationsEnabled(Context context) {
-        /* Key for accessing the preference for showing notifications */
-        String displayNotificationsKey = context.getString(R.string.pref_enable_notifications_key);
-
-        /*
-         * In Sunshine, the user has the ability to say whether she would like notifications
-         * enabled or not. If no preference has been chosen, we want to be able to determine
-         * whether or not to show them. To do this, we reference a bool stored in bools.xml.
-         */
-        boolean shouldDisplayNotificationsByDefault = context
-                .getResources()
-                .getBoolean(R.bool.show_notifications_by_default);
-
-        /* As usual, we use the default SharedPreferences to access the user's preferences */
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
-
-        /* If a value is stored with the key, we extract it here. If not, use a default. */
-        boolean shouldDisplayNotifications = sp
-                .getBoolean(displayNotificationsKey, shouldDisplayNotificationsByDefault);
-
-        return shouldDisplayNotifications;
+        return getSnapshot(context).areNotificationsEnabled();
     }
 
     /**
@@ -192,25 +367,13 @@ public final class SunshinePreferences {
      * @return UNIX time of when the last notification was shown
      */
     public static long getLastNotificationTimeInMillis(Context context) {
-        /* Key for accessing the time at which Sunshine last displayed a notification */
-        String lastNotificationKey = context.getString(R.string.pref_last_notification);
-
-        /* As usual, we use the default SharedPreferences to access the user's preferences */
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
-
         /*
-         * Here, we retrieve the time in milliseconds when the last notification was shown. If
-         * SharedPreferences doesn't have a value for lastNotificationKey, we return 0. The reason
-         * we return 0 is because we compare the value returned from this method to the current
-         * system time. If the difference between the last notification time and the current time
-         * is greater than one day, we will show a notification again. When we compare the two
-         * values, we subtract the last notification time from the current system time. If the
-         * time of the last notification was 0, the difference will always be greater than the
-         * number of milliseconds in a day and we will show another notification.
+         * If no notification has been shown yet, this is 0. The reason we return 0 is because we
+         * compare the value returned from this method to the current system time. If the time of
+         * the last notification was 0, the difference will always be greater than the number of
+         * milliseconds in a day and we will show another notification.
          */
-        long lastNotificationTime = sp.getLong(lastNotificationKey, 0);
-
-        return lastNotificationTime;
+        return getSnapshot(context).getLastNotificationTimeInMillis();
     }
 
     /**
@@ -241,5 +404,63 @@ public final class SunshinePreferences {
         String lastNotificationKey = context.getString(R.string.pref_last_notification);
         editor.putLong(lastNotificationKey, timeOfNotification);
         editor.apply();
+
+        loadSnapshot(context);
+    }
+
+    /**
+     * Returns a hash of the content of the last notification that was shown, or 0 if no
+     * notification has been shown yet. This lets NotificationUtils skip re-posting a
+     * notification that would look exactly like the one the user has already seen.
+     *
+     * @param context Used to access SharedPreferences
+     * @return Hash of the last notification's content
+     */
+    public static int getLastNotificationHash(Context context) {
+        return getSnapshot(context).getLastNotificationHash();
+    }
+
+    /**
+     * Saves a hash of the content of the notification that was just shown.
+     *
+     * @param context          Used to access SharedPreferences
+     * @param notificationHash Hash of the notification's content
+     */
+    public static void saveLastNotificationHash(Context context, int notificationHash) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        SharedPreferences.Editor editor = sp.edit();
+        String lastNotificationHashKey = context.getString(R.string.pref_last_notification_hash);
+        editor.putInt(lastNotificationHashKey, notificationHash);
+        editor.apply();
+
+        loadSnapshot(context);
+    }
+
+    /**
+     * Returns a hash of the last weather payload that was successfully sent to the watch, or 0 if
+     * nothing has been sent yet. WearIntentService uses this to avoid sending the watch weather
+     * it already has.
+     *
+     * @param context Used to access SharedPreferences
+     * @return Hash of the last payload sent to the watch
+     */
+    public static int getLastWearPayloadHash(Context context) {
+        return getSnapshot(context).getLastWearPayloadHash();
+    }
+
+    /**
+     * Saves a hash of the weather payload that was just sent to the watch.
+     *
+     * @param context     Used to access SharedPreferences
+     * @param payloadHash Hash of the payload
+     */
+    public static void saveLastWearPayloadHash(Context context, int payloadHash) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        SharedPreferences.Editor editor = sp.edit();
+        String lastWearPayloadHashKey = context.getString(R.string.pref_last_wear_payload_hash);
+        editor.putInt(lastWearPayloadHashKey, payloadHash);
+        editor.apply();
+
+        loadSnapshot(context);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+
+import com.example.android.sunshine.data.WeatherContract.ArchiveEntry;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import java.util.Locale;
+
+/**
+ * Keeps a history of the forecasts we've downloaded in the archive table described by
+ * {@link ArchiveEntry}. Both methods do database work, so call them from a background thread.
+ */
+public final class WeatherArchive {
+
+    /* About 3,000 rows, which is well over a decade of compacted history for one location */
+    public static final long DEFAULT_RETENTION_BYTES = 512 * 1024;
+
+    private WeatherArchive() {
+    }
+
+    /**
+     * Copies freshly downloaded weather into the archive, at daily resolution. Days that are
+     * already archived for the current location are replaced with the newer forecast.
+     *
+     * @param context       Used to access the ContentResolver and the location preferences
+     * @param weatherValues Weather as it was inserted into the weather table
+     * @return The number of days archived
+     */
+    public static int archive(Context context, ContentValues[] weatherValues) {
+        return context.getContentResolver()
+                .bulkInsert(ArchiveEntry.CONTENT_URI, createArchiveValues(context, weatherValues));
+    }
+
+    /**
+     * Turns freshly downloaded weather into rows for the archive, at daily resolution, for
+     * callers that want to insert them themselves, for instance as part of a batch.
+     *
+     * @param context       Used to access the location preferences
+     * @param weatherValues Weather as it was inserted into the weather table
+     * @return Values to insert at {@link ArchiveEntry#CONTENT_URI}
+     */
+    public static ContentValues[] createArchiveValues(Context context,
+                                                      ContentValues[] weatherValues) {
+        String location = getLocationKey(context);
+
+        ContentValues[] archiveValues = new ContentValues[weatherValues.length];
+        for (int i = 0; i < weatherValues.length; i++) {
+            ContentValues weather = weatherValues[i];
+            ContentValues archived = new ContentValues();
+
+            archived.put(ArchiveEntry.COLUMN_LOCATION, location);
+            archived.put(ArchiveEntry.COLUMN_EPOCH_DAY,
+                    SunshineDateUtils.getEpochDay(weather.getAsLong(WeatherEntry.COLUMN_DATE)));
+            archived.put(ArchiveEntry.COLUMN_RESOLUTION, ArchiveEntry.RESOLUTION_DAY);
+            archived.put(ArchiveEntry.COLUMN_DAY_COUNT, 1);
+
+            /* ContentValues.putAll needs API 11, so copy the weather over column by column */
+            archived.put(ArchiveEntry.COLUMN_WEATHER_ID,
+                    weather.getAsInteger(WeatherEntry.COLUMN_WEATHER_ID));
+            archived.put(ArchiveEntry.COLUMN_MIN_TEMP,
+                    weather.getAsDouble(WeatherEntry.COLUMN_MIN_TEMP));
+            archived.put(ArchiveEntry.COLUMN_MAX_TEMP,
+                    weather.getAsDouble(WeatherEntry.COLUMN_MAX_TEMP));
+            archived.put(ArchiveEntry.COLUMN_HUMIDITY,
+                    weather.getAsDouble(WeatherEntry.COLUMN_HUMIDITY));
+            archived.put(ArchiveEntry.COLUMN_PRESSURE,
+                    weather.getAsDouble(WeatherEntry.COLUMN_PRESSURE));
+            archived.put(ArchiveEntry.COLUMN_WIND_SPEED,
+                    weather.getAsDouble(WeatherEntry.COLUMN_WIND_SPEED));
+            archived.put(ArchiveEntry.COLUMN_DEGREES,
+                    weather.getAsDouble(WeatherEntry.COLUMN_DEGREES));
+
+            archiveValues[i] = archived;
+        }
+
+        return archiveValues;
+    }
+
+    /**
+     * Downsamples old history and trims the archive to a retention budget.
+     *
+     * @param context        Used to access the ContentResolver
+     * @param retentionBytes Roughly how much space the archive may take up
+     * @return How many rows the archive shrank by
+     */
+    public static int compact(Context context, long retentionBytes) {
+        return context.getContentResolver()
+                .delete(ArchiveEntry.buildCompactUri(retentionBytes), null, null);
+    }
+
+    /*
+     * The weather server reports the coordinates of the city each forecast is for, and those are
+     * saved whenever a forecast is parsed. If they are missing, fall back to the location the
+     * user typed in.
+     */
+    private static String getLocationKey(Context context) {
+        if (SunshinePreferences.isLocationLatLonAvailable(context)) {
+            double[] coordinates = SunshinePreferences.getLocationCoordinates(context);
+            return String.format(Locale.US, "%.2f,%.2f", coordinates[0], coordinates[1]);
+        }
+        return SunshinePreferences.getPreferredWeatherLocation(context);
+    }
+}
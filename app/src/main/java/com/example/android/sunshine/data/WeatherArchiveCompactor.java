@@ -0,0 +1,323 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.android.sunshine.data.WeatherContract.ArchiveEntry;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Compacts the weather history archive, on whatever thread deletes
+ * {@link ArchiveEntry#COMPACT_URI}. Sync does that right after archiving a new forecast, so this
+ * always runs in the background.
+ * <p>
+ * The archive is partitioned by age. Days from the last {@link #DAILY_RETENTION_DAYS} are kept as
+ * they are. Older days are downsampled into weeks, and weeks older than
+ * {@link #WEEKLY_RETENTION_DAYS} into months. Only whole weeks and months are downsampled, and if
+ * a week or month already has a row, the new days are merged into it. Finally, if the archive is
+ * still larger than its retention budget, the oldest rows are dropped.
+ * <p>
+ * SQLite doesn't track space per table, so the size of the archive is estimated from its row
+ * count using {@link #ESTIMATED_ROW_BYTES}.
+ */
+final class WeatherArchiveCompactor {
+
+    /* How long days are kept at daily resolution */
+    static final int DAILY_RETENTION_DAYS = 35;
+
+    /* How long weeks are kept before being downsampled into months */
+    static final int WEEKLY_RETENTION_DAYS = 365;
+
+    /* A row's columns plus its entries in the two indices, roughly */
+    static final int ESTIMATED_ROW_BYTES = 160;
+
+    private static final String[] AGGREGATE_PROJECTION = {
+            ArchiveEntry.COLUMN_LOCATION,
+            ArchiveEntry.COLUMN_EPOCH_DAY,
+            ArchiveEntry.COLUMN_DAY_COUNT,
+            ArchiveEntry.COLUMN_WEATHER_ID,
+            ArchiveEntry.COLUMN_MIN_TEMP,
+            ArchiveEntry.COLUMN_MAX_TEMP,
+            ArchiveEntry.COLUMN_HUMIDITY,
+            ArchiveEntry.COLUMN_PRESSURE,
+            ArchiveEntry.COLUMN_WIND_SPEED,
+            ArchiveEntry.COLUMN_DEGREES,
+    };
+
+    private static final int INDEX_LOCATION = 0;
+    private static final int INDEX_EPOCH_DAY = 1;
+    private static final int INDEX_DAY_COUNT = 2;
+    private static final int INDEX_WEATHER_ID = 3;
+    private static final int INDEX_MIN_TEMP = 4;
+    private static final int INDEX_MAX_TEMP = 5;
+    private static final int INDEX_HUMIDITY = 6;
+    private static final int INDEX_PRESSURE = 7;
+    private static final int INDEX_WIND_SPEED = 8;
+    private static final int INDEX_DEGREES = 9;
+
+    private final SQLiteDatabase mDatabase;
+
+    /* Used to find the first day of a month */
+    private final Calendar mCalendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+
+    WeatherArchiveCompactor(SQLiteDatabase database) {
+        mDatabase = database;
+    }
+
+    /**
+     * Compacts the archive in a single transaction.
+     *
+     * @param todayEpochDay  Today, as a number of days since the epoch
+     * @param retentionBytes Roughly how much space the archive may take up
+     * @return How many rows the archive shrank by
+     */
+    int compact(long todayEpochDay, long retentionBytes) {
+        int rowsRemoved = 0;
+        mDatabase.beginTransaction();
+        try {
+            rowsRemoved += downsample(ArchiveEntry.RESOLUTION_DAY, ArchiveEntry.RESOLUTION_WEEK,
+                    todayEpochDay - DAILY_RETENTION_DAYS);
+            rowsRemoved += downsample(ArchiveEntry.RESOLUTION_WEEK, ArchiveEntry.RESOLUTION_MONTH,
+                    todayEpochDay - WEEKLY_RETENTION_DAYS);
+            rowsRemoved += enforceRetentionBudget(retentionBytes);
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            mDatabase.endTransaction();
+        }
+        return rowsRemoved;
+    }
+
+    /**
+     * Replaces every row at one resolution whose whole week or month ended before a cutoff with a
+     * single row for that week or month.
+     *
+     * @return How many rows the archive shrank by
+     */
+    private int downsample(int fromResolution, int toResolution, long cutoffEpochDay) {
+        String selection = ArchiveEntry.COLUMN_RESOLUTION + " = ? AND "
+                + ArchiveEntry.COLUMN_EPOCH_DAY + " < ?";
+        String[] selectionArgs = {
+                Integer.toString(fromResolution),
+                Long.toString(getPeriodStart(toResolution, cutoffEpochDay))
+        };
+
+        int periodCount = 0;
+        int newRows = 0;
+        Cursor cursor = mDatabase.query(ArchiveEntry.TABLE_NAME,
+                AGGREGATE_PROJECTION,
+                selection,
+                selectionArgs,
+                null,
+                null,
+                ArchiveEntry.COLUMN_LOCATION + ", " + ArchiveEntry.COLUMN_EPOCH_DAY);
+        try {
+            Aggregate aggregate = null;
+            while (cursor.moveToNext()) {
+                String location = cursor.getString(INDEX_LOCATION);
+                long periodStart = getPeriodStart(toResolution, cursor.getLong(INDEX_EPOCH_DAY));
+
+                if (aggregate == null || !aggregate.isFor(location, periodStart)) {
+                    if (aggregate != null) {
+                        write(aggregate, toResolution);
+                    }
+                    aggregate = new Aggregate(location, periodStart);
+                    periodCount++;
+                    if (!mergeExistingRow(aggregate, toResolution)) {
+                        newRows++;
+                    }
+                }
+                aggregate.add(cursor);
+            }
+            if (aggregate != null) {
+                write(aggregate, toResolution);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        if (periodCount == 0) {
+            return 0;
+        }
+        int rowsDeleted = mDatabase.delete(ArchiveEntry.TABLE_NAME, selection, selectionArgs);
+        return rowsDeleted - newRows;
+    }
+
+    /*
+     * If the week or month already has a row from an earlier compaction, that row is replaced
+     * when we write the aggregate, so its days need to be part of the aggregate. Returns whether
+     * there was such a row.
+     */
+    private boolean mergeExistingRow(Aggregate aggregate, int resolution) {
+        Cursor cursor = mDatabase.query(ArchiveEntry.TABLE_NAME,
+                AGGREGATE_PROJECTION,
+                ArchiveEntry.COLUMN_LOCATION + " = ? AND "
+                        + ArchiveEntry.COLUMN_EPOCH_DAY + " = ? AND "
+                        + ArchiveEntry.COLUMN_RESOLUTION + " = ?",
+                new String[]{
+                        aggregate.mLocation,
+                        Long.toString(aggregate.mPeriodStart),
+                        Integer.toString(resolution)},
+                null,
+                null,
+                null);
+        try {
+            if (cursor.moveToFirst()) {
+                aggregate.add(cursor);
+                return true;
+            }
+            return false;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void write(Aggregate aggregate, int resolution) {
+        mDatabase.insert(ArchiveEntry.TABLE_NAME, null, aggregate.toContentValues(resolution));
+    }
+
+    /**
+     * Drops the oldest rows until the estimated size of the archive fits in the budget.
+     *
+     * @return How many rows were dropped
+     */
+    private int enforceRetentionBudget(long retentionBytes) {
+        long maxRows = retentionBytes / ESTIMATED_ROW_BYTES;
+        long rowCount = DatabaseUtils.longForQuery(mDatabase,
+                "SELECT COUNT(*) FROM " + ArchiveEntry.TABLE_NAME, null);
+        if (rowCount <= maxRows) {
+            return 0;
+        }
+
+        return mDatabase.delete(ArchiveEntry.TABLE_NAME,
+                ArchiveEntry._ID + " IN (SELECT " + ArchiveEntry._ID
+                        + " FROM " + ArchiveEntry.TABLE_NAME
+                        + " ORDER BY " + ArchiveEntry.COLUMN_EPOCH_DAY + " ASC"
+                        + " LIMIT " + (rowCount - maxRows) + ")",
+                null);
+    }
+
+    /**
+     * @return The first day of the week (a Monday) or month that contains the given day
+     */
+    private long getPeriodStart(int resolution, long epochDay) {
+        switch (resolution) {
+            case ArchiveEntry.RESOLUTION_WEEK:
+                /* The epoch was a Thursday, so Mondays are the days where (epochDay + 3) % 7 is 0 */
+                return epochDay - (((epochDay + 3) % 7) + 7) % 7;
+
+            case ArchiveEntry.RESOLUTION_MONTH:
+                mCalendar.setTimeInMillis(epochDay * SunshineDateUtils.DAY_IN_MILLIS);
+                mCalendar.set(Calendar.DAY_OF_MONTH, 1);
+                return mCalendar.getTimeInMillis() / SunshineDateUtils.DAY_IN_MILLIS;
+
+            default:
+                return epochDay;
+        }
+    }
+
+    /**
+     * Summarizes any number of rows, each weighted by the number of days it covers.
+     */
+    private static final class Aggregate {
+
+        final String mLocation;
+        final long mPeriodStart;
+
+        private int mDayCount;
+        private double mMinTemp = Double.MAX_VALUE;
+        private double mMaxTemp = -Double.MAX_VALUE;
+        private double mHumiditySum;
+        private double mPressureSum;
+        private double mWindSpeedSum;
+
+        /* Wind directions are averaged as vectors, so that 350° and 10° average to 0°, not 180° */
+        private double mWindNorthSum;
+        private double mWindEastSum;
+
+        /* Number of days of each weather condition */
+        private final Map<Integer, Integer> mWeatherDays = new HashMap<>();
+
+        Aggregate(String location, long periodStart) {
+            mLocation = location;
+            mPeriodStart = periodStart;
+        }
+
+        boolean isFor(String location, long periodStart) {
+            return mPeriodStart == periodStart && mLocation.equals(location);
+        }
+
+        void add(Cursor cursor) {
+            int days = cursor.getInt(INDEX_DAY_COUNT);
+            mDayCount += days;
+
+            mMinTemp = Math.min(mMinTemp, cursor.getDouble(INDEX_MIN_TEMP));
+            mMaxTemp = Math.max(mMaxTemp, cursor.getDouble(INDEX_MAX_TEMP));
+            mHumiditySum += cursor.getDouble(INDEX_HUMIDITY) * days;
+            mPressureSum += cursor.getDouble(INDEX_PRESSURE) * days;
+            mWindSpeedSum += cursor.getDouble(INDEX_WIND_SPEED) * days;
+
+            double direction = Math.toRadians(cursor.getDouble(INDEX_DEGREES));
+            mWindNorthSum += Math.cos(direction) * days;
+            mWindEastSum += Math.sin(direction) * days;
+
+            int weatherId = cursor.getInt(INDEX_WEATHER_ID);
+            Integer weatherDays = mWeatherDays.get(weatherId);
+            mWeatherDays.put(weatherId, (weatherDays == null ? 0 : weatherDays) + days);
+        }
+
+        ContentValues toContentValues(int resolution) {
+            ContentValues values = new ContentValues();
+            values.put(ArchiveEntry.COLUMN_LOCATION, mLocation);
+            values.put(ArchiveEntry.COLUMN_EPOCH_DAY, mPeriodStart);
+            values.put(ArchiveEntry.COLUMN_RESOLUTION, resolution);
+            values.put(ArchiveEntry.COLUMN_DAY_COUNT, mDayCount);
+            values.put(ArchiveEntry.COLUMN_WEATHER_ID, getMostCommonWeatherId());
+            values.put(ArchiveEntry.COLUMN_MIN_TEMP, mMinTemp);
+            values.put(ArchiveEntry.COLUMN_MAX_TEMP, mMaxTemp);
+            values.put(ArchiveEntry.COLUMN_HUMIDITY, mHumiditySum / mDayCount);
+            values.put(ArchiveEntry.COLUMN_PRESSURE, mPressureSum / mDayCount);
+            values.put(ArchiveEntry.COLUMN_WIND_SPEED, mWindSpeedSum / mDayCount);
+
+            double degrees = Math.toDegrees(Math.atan2(mWindEastSum, mWindNorthSum));
+            values.put(ArchiveEntry.COLUMN_DEGREES, degrees < 0 ? degrees + 360 : degrees);
+            return values;
+        }
+
+        /* Ties go to the lower ID, which for Open Weather Map is the more severe condition */
+        private int getMostCommonWeatherId() {
+            int mostCommonId = 0;
+            int mostDays = 0;
+            for (Map.Entry<Integer, Integer> entry : mWeatherDays.entrySet()) {
+                int weatherId = entry.getKey();
+                int days = entry.getValue();
+                if (days > mostDays || (days == mostDays && weatherId < mostCommonId)) {
+                    mostCommonId = weatherId;
+                    mostDays = days;
+                }
+            }
+            return mostCommonId;
+        }
+    }
+}
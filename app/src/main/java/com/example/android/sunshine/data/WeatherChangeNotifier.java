@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tells WeatherProvider's observers about changes, as narrowly as it can.
+ * <p>
+ * Each day of weather that changed is notified at its own URI, as built by
+ * {@link WeatherContract.WeatherEntry#buildWeatherUriWithEpochDay(long)}, so a DetailActivity
+ * only reloads when its own day changed. Cursors over many days, like the forecast list, watch
+ * {@link WeatherContract.WeatherEntry#CHANGES_URI} instead, which is notified once for any
+ * number of changes within {@link #LIST_CHANGE_DELAY_MILLIS}.
+ * <p>
+ * When too many days change at once to be worth listing, the whole weather URI is notified
+ * instead, which reaches every observer.
+ */
+final class WeatherChangeNotifier {
+
+    /* How long changes are gathered up before the list is told about them */
+    static final long LIST_CHANGE_DELAY_MILLIS = 100;
+
+    /* More days than this and we notify everybody rather than one day at a time */
+    static final int MAX_DAY_NOTIFICATIONS = 32;
+
+    private final ContentResolver mResolver;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    private final AtomicBoolean mListChangePending = new AtomicBoolean();
+
+    private final Runnable mNotifyListChanged = new Runnable() {
+        @Override
+        public void run() {
+            mListChangePending.set(false);
+            mResolver.notifyChange(WeatherContract.WeatherEntry.CHANGES_URI, null);
+        }
+    };
+
+    WeatherChangeNotifier(Context context) {
+        mResolver = context.getContentResolver();
+    }
+
+    /**
+     * Notifies observers of everything in {@code changes}. Call this once the changes have been
+     * committed.
+     */
+    void publish(Changes changes) {
+        for (Uri uri : changes.mOtherUris) {
+            mResolver.notifyChange(uri, null);
+        }
+
+        if (changes.mAllWeather) {
+            mResolver.notifyChange(WeatherContract.WeatherEntry.CONTENT_URI, null);
+            return;
+        }
+
+        if (changes.mEpochDays.isEmpty()) {
+            return;
+        }
+        for (long epochDay : changes.mEpochDays) {
+            mResolver.notifyChange(
+                    WeatherContract.WeatherEntry.buildWeatherUriWithEpochDay(epochDay), null);
+        }
+
+        /* If the list is already due to be told, it will hear about these days too */
+        if (mListChangePending.compareAndSet(false, true)) {
+            mHandler.postDelayed(mNotifyListChanged, LIST_CHANGE_DELAY_MILLIS);
+        }
+    }
+
+    /**
+     * What one provider call, or one batch of them, changed.
+     */
+    static final class Changes {
+
+        private final Set<Long> mEpochDays = new HashSet<>();
+        private final Set<Uri> mOtherUris = new LinkedHashSet<>();
+        private boolean mAllWeather;
+
+        /**
+         * @param epochDay A day of weather that was inserted, updated or deleted
+         */
+        void addDay(long epochDay) {
+            if (mAllWeather) {
+                return;
+            }
+            mEpochDays.add(epochDay);
+            if (mEpochDays.size() > MAX_DAY_NOTIFICATIONS) {
+                addAllWeather();
+            }
+        }
+
+        /**
+         * Records that the weather changed in ways we can't, or won't, list day by day.
+         */
+        void addAllWeather() {
+            mAllWeather = true;
+            mEpochDays.clear();
+        }
+
+        /**
+         * @param uri Any other URI whose data changed, such as the archive's
+         */
+        void addUri(Uri uri) {
+            mOtherUris.add(uri);
+        }
+    }
+}
@@ -56,6 +56,16 @@ public class WeatherContract {
      */
     public static final String PATH_WEATHER = "weather";
 
+    /* Appended to the weather path for the forecast from today onwards */
+    public static final String PATH_UPCOMING = "upcoming";
+
+    /* Appended to the weather path for change notifications about the weather as a whole */
+    public static final String PATH_CHANGES = "changes";
+
+    /* The weather history archive, and the path used to ask for it to be compacted */
+    public static final String PATH_ARCHIVE = "archive";
+    public static final String PATH_COMPACT = "compact";
+
     /* Inner class that defines the table contents of the weather table */
     public static final class WeatherEntry implements BaseColumns {
 
@@ -64,6 +74,32 @@ public class WeatherContract {
                 .appendPath(PATH_WEATHER)
                 .build();
 
+        /*
+         * The forecast from today onwards, sorted by date unless asked otherwise. Querying this
+         * rather than CONTENT_URI with a selection lets the provider use the exact same SQL for
+         * every such query, whatever day it is.
+         */
+        public static final Uri UPCOMING_URI = CONTENT_URI.buildUpon()
+                .appendPath(PATH_UPCOMING)
+                .build();
+
+        /*
+         * Never queried, only observed. WeatherProvider notifies each day that changes at that
+         * day's own URI, which is all a single day's observer needs. Observers of many days, like
+         * cursors from CONTENT_URI and UPCOMING_URI, are notified here instead, once for any
+         * number of days that change in quick succession.
+         */
+        public static final Uri CHANGES_URI = CONTENT_URI.buildUpon()
+                .appendPath(PATH_CHANGES)
+                .build();
+
+        /*
+         * Query parameters that narrow a query of CONTENT_URI or UPCOMING_URI down to one page of
+         * its rows. See buildPageUri.
+         */
+        public static final String PARAM_PAGE_SIZE = "page_size";
+        public static final String PARAM_AFTER_EPOCH_DAY = "after_epoch_day";
+
         /* Used internally as the name of our weather table. */
         public static final String TABLE_NAME = "weather";
 
@@ -85,6 +121,17 @@ public class WeatherContract {
          */
         public static final String COLUMN_DATE = "date";
 
+        /*
+         * The date above is no longer stored as is. The weather table stores the same date as a
+         * number of days since January 1, 1970 instead, which makes for a smaller key and a
+         * smaller index (17075 rather than 1475280000000 for October 1st, 2016).
+         *
+         * WeatherProvider still hands out COLUMN_DATE, worked out from this column, to anybody
+         * who asks for it, and still accepts COLUMN_DATE in place of this column on insert. When
+         * selecting or sorting rows by date, use this column, as COLUMN_DATE can't use the index.
+         */
+        public static final String COLUMN_EPOCH_DAY = "epoch_day";
+
         /* Weather ID as returned by API, used to identify the icon to be used */
         public static final String COLUMN_WEATHER_ID = "weather_id";
 
@@ -118,21 +165,179 @@ public class WeatherContract {
          * @return Uri to query details about a single weather entry
          */
         public static Uri buildWeatherUriWithDate(long date) {
+            return buildWeatherUriWithEpochDay(SunshineDateUtils.getEpochDay(date));
+        }
+
+        /**
+         * Builds a URI that adds the weather date, as a number of days since the epoch, to the
+         * end of the forecast content URI path.
+         *
+         * @param epochDay Number of days since January 1, 1970
+         * @return Uri to query details about a single weather entry
+         */
+        public static Uri buildWeatherUriWithEpochDay(long epochDay) {
             return CONTENT_URI.buildUpon()
-                    .appendPath(Long.toString(date))
+                    .appendPath(Long.toString(epochDay))
                     .build();
         }
 
         /**
-         * Returns just the selection part of the weather query from a normalized today value.
-         * This is used to get a weather forecast from today's date. To make this easy to use
-         * in compound selection, we embed today's date as an argument in the query.
+         * Reads the date back out of a URI built by {@link #buildWeatherUriWithEpochDay(long)}
+         * or {@link #buildWeatherUriWithDate(long)}. URIs from before the date was stored as an
+         * epoch day, which might still be sitting in a notification, hold a normalized date in
+         * milliseconds instead, and are understood too.
+         *
+         * @param uri Uri for a single weather entry
+         * @return Number of days since January 1, 1970
+         */
+        public static long getEpochDayFromUri(Uri uri) {
+            long date = Long.parseLong(uri.getLastPathSegment());
+            if (date >= SunshineDateUtils.DAY_IN_MILLIS && SunshineDateUtils.isDateNormalized(date)) {
+                return SunshineDateUtils.getEpochDay(date);
+            }
+            return date;
+        }
+
+        /**
+         * @param uri Uri for a single weather entry
+         * @return Normalized date in milliseconds
+         * @see #getEpochDayFromUri(Uri)
+         */
+        public static long getDateFromUri(Uri uri) {
+            return SunshineDateUtils.getNormalizedUtcDateForEpochDay(getEpochDayFromUri(uri));
+        }
+
+        /**
+         * Returns just the selection part of the weather query for today onwards. Today's date
+         * is left as a "?" to be filled in from {@link #getSelectionArgsForTodayOnwards()}, so
+         * the SQL is the same every day and SQLite can reuse the statement it compiled for it.
+         * Embedding the date would make every day's query a different statement.
          *
          * @return The selection part of the weather query for today onwards
          */
         public static String getSqlSelectForTodayOnwards() {
-            long normalizedUtcNow = SunshineDateUtils.normalizeDate(System.currentTimeMillis());
-            return WeatherContract.WeatherEntry.COLUMN_DATE + " >= " + normalizedUtcNow;
+            return WeatherContract.WeatherEntry.COLUMN_EPOCH_DAY + " >= ?";
+        }
+
+        /**
+         * @return The selection arguments that go with {@link #getSqlSelectForTodayOnwards()}
+         */
+        public static String[] getSelectionArgsForTodayOnwards() {
+            long todayEpochDay = SunshineDateUtils.getEpochDay(
+                    SunshineDateUtils.normalizeDate(System.currentTimeMillis()));
+            return new String[]{Long.toString(todayEpochDay)};
+        }
+
+        /**
+         * Builds the URI for the first page of a list of weather.
+         *
+         * @param listUri  {@link #CONTENT_URI} or {@link #UPCOMING_URI}
+         * @param pageSize The most rows the page may hold
+         * @return Uri to query for the first page
+         * @see #buildPageUri(Uri, long, int)
+         */
+        public static Uri buildPageUri(Uri listUri, int pageSize) {
+            return listUri.buildUpon()
+                    .appendQueryParameter(PARAM_PAGE_SIZE, Integer.toString(pageSize))
+                    .build();
+        }
+
+        /**
+         * Builds the URI for the page of a list of weather that follows a given day. Pages are
+         * always sorted by date, earliest first, and any sort order passed to the query is
+         * ignored.
+         * <p>
+         * Each page starts after the last day of the one before it rather than at an offset, so
+         * SQLite can seek straight to it in the index instead of stepping over every earlier row,
+         * and days inserted or deleted while the user scrolls don't shift the pages around.
+         *
+         * @param listUri       {@link #CONTENT_URI} or {@link #UPCOMING_URI}
+         * @param afterEpochDay The epoch day of the last row of the previous page
+         * @param pageSize      The most rows the page may hold
+         * @return Uri to query for the next page. A page with fewer than pageSize rows is the last.
+         */
+        public static Uri buildPageUri(Uri listUri, long afterEpochDay, int pageSize) {
+            return listUri.buildUpon()
+                    .appendQueryParameter(PARAM_PAGE_SIZE, Integer.toString(pageSize))
+                    .appendQueryParameter(PARAM_AFTER_EPOCH_DAY, Long.toString(afterEpochDay))
+                    .build();
+        }
+    }
+
+    /**
+     * Defines the weather history archive. Every sync deletes the weather table and fills it with
+     * the new forecast, so the weather table only ever holds the active window. The archive is a
+     * separate table that keeps the last forecast we saw for every day, for every location.
+     * <p>
+     * Recent days are kept as they are. Older days are compacted into one row per week, and older
+     * weeks into one row per month, and the oldest rows are dropped once the archive grows past
+     * its retention budget. {@link #COLUMN_RESOLUTION} tells these apart.
+     */
+    public static final class ArchiveEntry implements BaseColumns {
+
+        /* The base CONTENT_URI used to query and insert into the archive */
+        public static final Uri CONTENT_URI = BASE_CONTENT_URI.buildUpon()
+                .appendPath(PATH_ARCHIVE)
+                .build();
+
+        /* Deleting this URI compacts the archive. See buildCompactUri. */
+        public static final Uri COMPACT_URI = CONTENT_URI.buildUpon()
+                .appendPath(PATH_COMPACT)
+                .build();
+
+        /* Query parameter of COMPACT_URI holding the retention budget, in bytes */
+        public static final String PARAM_RETENTION_BYTES = "retention_bytes";
+
+        /* Used internally as the name of our archive table. */
+        public static final String TABLE_NAME = "weather_archive";
+
+        /*
+         * Identifies the location the weather is for. This is the latitude and longitude, to two
+         * decimal places, the weather server reported for the forecast.
+         */
+        public static final String COLUMN_LOCATION = "location";
+
+        /*
+         * The first day this row covers, as a number of days since January 1, 1970 UTC. For
+         * weeks this is a Monday, and for months the first of the month.
+         */
+        public static final String COLUMN_EPOCH_DAY = "epoch_day";
+
+        /* One of the RESOLUTION_ constants below */
+        public static final String COLUMN_RESOLUTION = "resolution";
+
+        /* How many days of weather this row summarizes */
+        public static final String COLUMN_DAY_COUNT = "day_count";
+
+        /*
+         * The weather itself, in the same units as WeatherEntry. For a week or a month, the
+         * temperatures are the lowest low and highest high, the weather ID is the most common
+         * condition, and the rest are averages.
+         */
+        public static final String COLUMN_WEATHER_ID = WeatherEntry.COLUMN_WEATHER_ID;
+        public static final String COLUMN_MIN_TEMP = WeatherEntry.COLUMN_MIN_TEMP;
+        public static final String COLUMN_MAX_TEMP = WeatherEntry.COLUMN_MAX_TEMP;
+        public static final String COLUMN_HUMIDITY = WeatherEntry.COLUMN_HUMIDITY;
+        public static final String COLUMN_PRESSURE = WeatherEntry.COLUMN_PRESSURE;
+        public static final String COLUMN_WIND_SPEED = WeatherEntry.COLUMN_WIND_SPEED;
+        public static final String COLUMN_DEGREES = WeatherEntry.COLUMN_DEGREES;
+
+        public static final int RESOLUTION_DAY = 1;
+        public static final int RESOLUTION_WEEK = 7;
+        public static final int RESOLUTION_MONTH = 30;
+
+        /**
+         * Builds the URI that compacts the archive when deleted. Compacting downsamples old days
+         * into weeks and old weeks into months, then drops the oldest rows until the archive fits
+         * in the retention budget. The delete returns the number of rows removed.
+         *
+         * @param retentionBytes Roughly how much space the archive may take up
+         * @return Uri to delete to compact the archive
+         */
+        public static Uri buildCompactUri(long retentionBytes) {
+            return COMPACT_URI.buildUpon()
+                    .appendQueryParameter(PARAM_RETENTION_BYTES, Long.toString(retentionBytes))
+                    .build();
         }
     }
-}
\ No newline at end of file
+}
@@ -19,7 +19,9 @@ import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 
+import com.example.android.sunshine.data.WeatherContract.ArchiveEntry;
 import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
 
 /**
  * Manages a local database for weather data.
@@ -42,8 +44,11 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
      * versions of Sunshine could cause everything to break. Although that is certainly a rare
      * use-case, we wanted to watch out for it and warn you what could happen if you mistakenly
      * version your databases.
+     *
+     * Version 4 added the weather history archive, and version 5 changed the weather table's key
+     * from a date in milliseconds to an epoch day. See onUpgrade.
      */
-    private static final int DATABASE_VERSION = 3;
+    private static final int DATABASE_VERSION = 5;
 
     public WeatherDbHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
@@ -57,6 +62,17 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
      */
     @Override
     public void onCreate(SQLiteDatabase sqLiteDatabase) {
+        createWeatherTable(sqLiteDatabase, WeatherEntry.TABLE_NAME);
+        createArchiveTable(sqLiteDatabase);
+    }
+
+    /**
+     * Creates the weather table.
+     *
+     * @param sqLiteDatabase The database.
+     * @param tableName      What to call the table. onUpgrade creates it under a temporary name.
+     */
+    private void createWeatherTable(SQLiteDatabase sqLiteDatabase, String tableName) {
 
         /*
          * This String will contain a simple SQL statement that will create a table that will
@@ -64,7 +80,7 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
          */
         final String SQL_CREATE_WEATHER_TABLE =
 
-                "CREATE TABLE " + WeatherEntry.TABLE_NAME + " (" +
+                "CREATE TABLE " + tableName + " (" +
 
                 /*
                  * WeatherEntry did not explicitly declare a column called "_ID". However,
@@ -73,7 +89,7 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
                  */
                 WeatherEntry._ID               + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
 
-                WeatherEntry.COLUMN_DATE       + " INTEGER NOT NULL, "                 +
+                WeatherEntry.COLUMN_EPOCH_DAY  + " INTEGER NOT NULL, "                 +
 
                 WeatherEntry.COLUMN_WEATHER_ID + " INTEGER NOT NULL,"                  +
 
@@ -91,8 +107,9 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
                  * the date column to be unique. We also specify "ON CONFLICT REPLACE". This tells
                  * SQLite that if we have a weather entry for a certain date and we attempt to
                  * insert another weather entry with that date, we replace the old weather entry.
+                 * The unique constraint is backed by an index, which our date queries use.
                  */
-                " UNIQUE (" + WeatherEntry.COLUMN_DATE + ") ON CONFLICT REPLACE);";
+                " UNIQUE (" + WeatherEntry.COLUMN_EPOCH_DAY + ") ON CONFLICT REPLACE);";
 
         /*
          * After we've spelled out our SQLite table creation statement above, we actually execute
@@ -102,12 +119,59 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
     }
 
     /**
-     * This database is only a cache for online data, so its upgrade policy is simply to discard
-     * the data and call through to onCreate to recreate the table. Note that this only fires if
-     * you change the version number for your database (in our case, DATABASE_VERSION). It does NOT
-     * depend on the version number for your application found in your app/build.gradle file. If
-     * you want to update the schema without wiping data, commenting out the current body of this
-     * method should be your top priority before modifying this method.
+     * Creates the weather history archive, unless it already exists. Unlike the weather table,
+     * the archive isn't a cache of anything online, so it is kept across upgrades.
+     *
+     * @param sqLiteDatabase The database.
+     */
+    private void createArchiveTable(SQLiteDatabase sqLiteDatabase) {
+        final String SQL_CREATE_ARCHIVE_TABLE =
+
+                "CREATE TABLE IF NOT EXISTS " + ArchiveEntry.TABLE_NAME + " (" +
+
+                ArchiveEntry._ID               + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+
+                ArchiveEntry.COLUMN_LOCATION   + " TEXT NOT NULL, "                    +
+                ArchiveEntry.COLUMN_EPOCH_DAY  + " INTEGER NOT NULL, "                 +
+                ArchiveEntry.COLUMN_RESOLUTION + " INTEGER NOT NULL, "                 +
+                ArchiveEntry.COLUMN_DAY_COUNT  + " INTEGER NOT NULL, "                 +
+
+                ArchiveEntry.COLUMN_WEATHER_ID + " INTEGER NOT NULL, "                 +
+
+                ArchiveEntry.COLUMN_MIN_TEMP   + " REAL NOT NULL, "                    +
+                ArchiveEntry.COLUMN_MAX_TEMP   + " REAL NOT NULL, "                    +
+
+                ArchiveEntry.COLUMN_HUMIDITY   + " REAL NOT NULL, "                    +
+                ArchiveEntry.COLUMN_PRESSURE   + " REAL NOT NULL, "                    +
+
+                ArchiveEntry.COLUMN_WIND_SPEED + " REAL NOT NULL, "                    +
+                ArchiveEntry.COLUMN_DEGREES    + " REAL NOT NULL, "                    +
+
+                /*
+                 * One row per location, day (or first day of the week or month) and resolution.
+                 * A newer forecast for a day that is already archived replaces the older one.
+                 */
+                " UNIQUE (" + ArchiveEntry.COLUMN_LOCATION + ", "
+                        + ArchiveEntry.COLUMN_EPOCH_DAY + ", "
+                        + ArchiveEntry.COLUMN_RESOLUTION + ") ON CONFLICT REPLACE);";
+
+        sqLiteDatabase.execSQL(SQL_CREATE_ARCHIVE_TABLE);
+
+        /* Compaction looks rows up by resolution and age, oldest first */
+        sqLiteDatabase.execSQL("CREATE INDEX IF NOT EXISTS " + ArchiveEntry.TABLE_NAME + "_age ON "
+                + ArchiveEntry.TABLE_NAME + " ("
+                + ArchiveEntry.COLUMN_RESOLUTION + ", "
+                + ArchiveEntry.COLUMN_EPOCH_DAY + ")");
+    }
+
+    /**
+     * Upgrades from version 3 onwards are migrated step by step, keeping the weather we already
+     * have. For anything older, or newer than we know about, we fall back on the original policy:
+     * the weather table is only a cache for online data, so we simply discard the data and call
+     * through to onCreate to recreate the table. The archive is history we can't download again,
+     * so onCreate leaves it alone if it already exists. Note that this only fires if you change
+     * the version number for your database (in our case, DATABASE_VERSION). It does NOT depend on
+     * the version number for your application found in your app/build.gradle file.
      *
      * @param sqLiteDatabase Database that is being upgraded
      * @param oldVersion     The old database version
@@ -115,7 +179,59 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
      */
     @Override
     public void onUpgrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
+
+        /*
+         * From version 3 on, we know every schema, so we can bring the data along. SQLiteOpenHelper
+         * runs onUpgrade in a transaction, so if any step fails, nothing changes.
+         */
+        if (oldVersion >= 3 && newVersion <= DATABASE_VERSION) {
+            if (oldVersion < 4) {
+                createArchiveTable(sqLiteDatabase);
+            }
+            if (oldVersion < 5) {
+                migrateToEpochDays(sqLiteDatabase);
+            }
+            return;
+        }
+
         sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + WeatherEntry.TABLE_NAME);
         onCreate(sqLiteDatabase);
     }
+
+    /**
+     * Converts the weather table from version 4, keyed by a normalized date in milliseconds, to
+     * version 5, keyed by epoch day. SQLite can't change a column's name or constraints in place,
+     * so we build the new table alongside the old one and copy the weather over.
+     *
+     * @param sqLiteDatabase Database that is being upgraded
+     */
+    private void migrateToEpochDays(SQLiteDatabase sqLiteDatabase) {
+        final String newTableName = WeatherEntry.TABLE_NAME + "_v5";
+        createWeatherTable(sqLiteDatabase, newTableName);
+
+        /* Both columns are integers, so this is integer division */
+        sqLiteDatabase.execSQL("INSERT INTO " + newTableName + " ("
+                + WeatherEntry.COLUMN_EPOCH_DAY + ", "
+                + WeatherEntry.COLUMN_WEATHER_ID + ", "
+                + WeatherEntry.COLUMN_MIN_TEMP + ", "
+                + WeatherEntry.COLUMN_MAX_TEMP + ", "
+                + WeatherEntry.COLUMN_HUMIDITY + ", "
+                + WeatherEntry.COLUMN_PRESSURE + ", "
+                + WeatherEntry.COLUMN_WIND_SPEED + ", "
+                + WeatherEntry.COLUMN_DEGREES + ")"
+                + " SELECT "
+                + WeatherEntry.COLUMN_DATE + " / " + SunshineDateUtils.DAY_IN_MILLIS + ", "
+                + WeatherEntry.COLUMN_WEATHER_ID + ", "
+                + WeatherEntry.COLUMN_MIN_TEMP + ", "
+                + WeatherEntry.COLUMN_MAX_TEMP + ", "
+                + WeatherEntry.COLUMN_HUMIDITY + ", "
+                + WeatherEntry.COLUMN_PRESSURE + ", "
+                + WeatherEntry.COLUMN_WIND_SPEED + ", "
+                + WeatherEntry.COLUMN_DEGREES
+                + " FROM " + WeatherEntry.TABLE_NAME);
+
+        sqLiteDatabase.execSQL("DROP TABLE " + WeatherEntry.TABLE_NAME);
+        sqLiteDatabase.execSQL(
+                "ALTER TABLE " + newTableName + " RENAME TO " + WeatherEntry.TABLE_NAME);
+    }
 }
\ No newline at end of file
@@ -17,7 +17,11 @@ package com.example.android.sunshine.data;
 
 import android.annotation.TargetApi;
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
@@ -26,6 +30,8 @@ import android.support.annotation.NonNull;
 
 import com.example.android.sunshine.utilities.SunshineDateUtils;
 
+import java.util.ArrayList;
+
 /**
  * This class serves as the ContentProvider for all of Sunshine's data. This class allows us to
  * bulkInsert data, query data, and delete data.
@@ -45,6 +51,14 @@ public class WeatherProvider extends ContentProvider {
      */
     public static final int CODE_WEATHER = 100;
     public static final int CODE_WEATHER_WITH_DATE = 101;
+    public static final int CODE_WEATHER_UPCOMING = 102;
+    public static final int CODE_ARCHIVE = 200;
+    public static final int CODE_ARCHIVE_COMPACT = 201;
+
+    /* Works out COLUMN_DATE, in milliseconds, from the epoch day the weather table stores */
+    private static final String DATE_FROM_EPOCH_DAY =
+            WeatherContract.WeatherEntry.COLUMN_EPOCH_DAY + " * " + SunshineDateUtils.DAY_IN_MILLIS
+                    + " AS " + WeatherContract.WeatherEntry.COLUMN_DATE;
 
     /*
      * The URI Matcher used by this content provider. The leading "s" in this variable name
@@ -54,6 +68,14 @@ public class WeatherProvider extends ContentProvider {
     private static final UriMatcher sUriMatcher = buildUriMatcher();
     private WeatherDbHelper mOpenHelper;
 
+    private WeatherChangeNotifier mChangeNotifier;
+
+    /*
+     * While applyBatch is running on a thread, what its operations change is collected here
+     * rather than being notified straight away. See startChanges.
+     */
+    private final ThreadLocal<WeatherChangeNotifier.Changes> mBatchChanges = new ThreadLocal<>();
+
     /**
      * Creates the UriMatcher that will match each URI to the CODE_WEATHER and
      * CODE_WEATHER_WITH_DATE constants defined above.
@@ -96,6 +118,17 @@ public class WeatherProvider extends ContentProvider {
          */
         matcher.addURI(authority, WeatherContract.PATH_WEATHER + "/#", CODE_WEATHER_WITH_DATE);
 
+        /* This URI is content://com.example.android.sunshine/weather/upcoming */
+        matcher.addURI(authority,
+                WeatherContract.PATH_WEATHER + "/" + WeatherContract.PATH_UPCOMING,
+                CODE_WEATHER_UPCOMING);
+
+        /* These URIs are content://com.example.android.sunshine/archive/ and .../archive/compact */
+        matcher.addURI(authority, WeatherContract.PATH_ARCHIVE, CODE_ARCHIVE);
+        matcher.addURI(authority,
+                WeatherContract.PATH_ARCHIVE + "/" + WeatherContract.PATH_COMPACT,
+                CODE_ARCHIVE_COMPACT);
+
         return matcher;
     }
 
@@ -122,6 +155,7 @@ public class WeatherProvider extends ContentProvider {
          * very lightweight, we are safe to perform that initialization here.
          */
         mOpenHelper = new WeatherDbHelper(getContext());
+        mChangeNotifier = new WeatherChangeNotifier(getContext());
         return true;
     }
 
@@ -144,20 +178,20 @@ public class WeatherProvider extends ContentProvider {
 
         switch (sUriMatcher.match(uri)) {
 
-            case CODE_WEATHER:
+            case CODE_WEATHER: {
+                WeatherChangeNotifier.Changes changes = startChanges();
                 db.beginTransaction();
                 int rowsInserted = 0;
                 try {
                     for (ContentValues value : values) {
-                        long weatherDate =
-                                value.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE);
-                        if (!SunshineDateUtils.isDateNormalized(weatherDate)) {
-                            throw new IllegalArgumentException("Date must be normalized to insert");
-                        }
-
-                        long _id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, value);
+                        ContentValues storedValues = toStoredWeatherValues(value);
+                        long _id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME,
+                                null,
+                                storedValues);
                         if (_id != -1) {
                             rowsInserted++;
+                            changes.addDay(storedValues.getAsLong(
+                                    WeatherContract.WeatherEntry.COLUMN_EPOCH_DAY));
                         }
                     }
                     db.setTransactionSuccessful();
@@ -165,11 +199,34 @@ public class WeatherProvider extends ContentProvider {
                     db.endTransaction();
                 }
 
-                if (rowsInserted > 0) {
-                    getContext().getContentResolver().notifyChange(uri, null);
+                finishChanges(changes);
+                return rowsInserted;
+            }
+
+            /*
+             * Archived rows are keyed by epoch day rather than by normalized date, so there is
+             * nothing to check. A day that is already archived is replaced.
+             */
+            case CODE_ARCHIVE: {
+                db.beginTransaction();
+                int rowsArchived = 0;
+                try {
+                    for (ContentValues value : values) {
+                        if (db.insert(WeatherContract.ArchiveEntry.TABLE_NAME, null, value) != -1) {
+                            rowsArchived++;
+                        }
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
                 }
 
-                return rowsInserted;
+                if (rowsArchived > 0) {
+                    notifyArchiveChanged();
+                }
+
+                return rowsArchived;
+            }
 
             default:
                 return super.bulkInsert(uri, values);
@@ -197,6 +254,34 @@ public class WeatherProvider extends ContentProvider {
 
         Cursor cursor;
 
+        /* The URI whose notifications should make the cursor reload. See WeatherChangeNotifier. */
+        Uri notificationUri = uri;
+
+        /*
+         * Lists of weather may be asked for one page at a time. See WeatherEntry.buildPageUri.
+         * Only the rows after the previous page's last day are selected, and at most a page of
+         * them, so the cursor's window only ever has to hold one page.
+         */
+        String limit = null;
+        String pageSize = uri.getQueryParameter(WeatherContract.WeatherEntry.PARAM_PAGE_SIZE);
+        if (pageSize != null) {
+            limit = Integer.toString(Integer.parseInt(pageSize));
+            sortOrder = WeatherContract.WeatherEntry.COLUMN_EPOCH_DAY + " ASC";
+
+            String afterEpochDay =
+                    uri.getQueryParameter(WeatherContract.WeatherEntry.PARAM_AFTER_EPOCH_DAY);
+            if (afterEpochDay != null) {
+                String afterSelection = WeatherContract.WeatherEntry.COLUMN_EPOCH_DAY + " > ?";
+                String[] afterSelectionArgs =
+                        new String[]{Long.toString(Long.parseLong(afterEpochDay))};
+
+                selection = selection == null
+                        ? afterSelection
+                        : afterSelection + " AND (" + selection + ")";
+                selectionArgs = concat(afterSelectionArgs, selectionArgs);
+            }
+        }
+
         /*
          * Here's the switch statement that, given a URI, will determine what kind of request is
          * being made and query the database accordingly.
@@ -206,12 +291,12 @@ public class WeatherProvider extends ContentProvider {
             /*
              * When sUriMatcher's match method is called with a URI that looks something like this
              *
-             *      content://com.example.android.sunshine/weather/1472214172
+             *      content://com.example.android.sunshine/weather/17075
              *
              * sUriMatcher's match method will return the code that indicates to us that we need
-             * to return the weather for a particular date. The date in this code is encoded in
-             * milliseconds and is at the very end of the URI (1472214172) and can be accessed
-             * programmatically using Uri's getLastPathSegment method.
+             * to return the weather for a particular date. The date in this code is encoded as a
+             * number of days since the epoch and is at the very end of the URI (17075) and can
+             * be read back with WeatherEntry's getEpochDayFromUri method.
              *
              * In this case, we want to return a cursor that contains one row of weather data for
              * a particular date.
@@ -220,10 +305,15 @@ public class WeatherProvider extends ContentProvider {
 
                 /*
                  * In order to determine the date associated with this URI, we look at the last
-                 * path segment. In the comment above, the last path segment is 1472214172 and
-                 * represents the number of seconds since the epoch, or UTC time.
+                 * path segment. In the comment above, the last path segment is 17075 and
+                 * represents October 1st, 2016. getEpochDayFromUri also understands the older
+                 * URIs that held a date in milliseconds.
                  */
-                String normalizedUtcDateString = uri.getLastPathSegment();
+                long epochDay = WeatherContract.WeatherEntry.getEpochDayFromUri(uri);
+                String epochDayString = Long.toString(epochDay);
+
+                /* The provider notifies a day at its epoch day URI, whatever URI it was read at */
+                notificationUri = WeatherContract.WeatherEntry.buildWeatherUriWithEpochDay(epochDay);
 
                 /*
                  * The query method accepts a string array of arguments, as there may be more
@@ -231,7 +321,7 @@ public class WeatherProvider extends ContentProvider {
                  * one "?", we have to create a string array that only contains one element
                  * because this method signature accepts a string array.
                  */
-                String[] selectionArguments = new String[]{normalizedUtcDateString};
+                String[] selectionArguments = new String[]{epochDayString};
 
                 cursor = mOpenHelper.getReadableDatabase().query(
                         /* Table we are going to query */
@@ -242,7 +332,7 @@ public class WeatherProvider extends ContentProvider {
                          * However, if you don't need all the data from the table, it's best
                          * practice to limit the columns returned in the Cursor with a projection.
                          */
-                        projection,
+                        toStoredWeatherProjection(projection),
                         /*
                          * The URI that matches CODE_WEATHER_WITH_DATE contains a date at the end
                          * of it. We extract that date and use it with these next two lines to
@@ -252,7 +342,7 @@ public class WeatherProvider extends ContentProvider {
                          * within the selectionArguments array will be inserted into the
                          * selection statement by SQLite under the hood.
                          */
-                        WeatherContract.WeatherEntry.COLUMN_DATE + " = ? ",
+                        WeatherContract.WeatherEntry.COLUMN_EPOCH_DAY + " = ? ",
                         selectionArguments,
                         null,
                         null,
@@ -275,6 +365,57 @@ public class WeatherProvider extends ContentProvider {
             case CODE_WEATHER: {
                 cursor = mOpenHelper.getReadableDatabase().query(
                         WeatherContract.WeatherEntry.TABLE_NAME,
+                        toStoredWeatherProjection(projection),
+                        selection,
+                        selectionArgs,
+                        null,
+                        null,
+                        sortOrder,
+                        limit);
+                notificationUri = WeatherContract.WeatherEntry.CHANGES_URI;
+
+                break;
+            }
+
+            /*
+             * The forecast from today onwards. The date is always bound as an argument rather than
+             * written into the SQL, so for a given projection and sort order, the SQL is the same
+             * on every call. SQLite compiles each distinct statement once per connection and keeps
+             * it in a cache keyed by its SQL, so this query is only compiled the first time.
+             */
+            case CODE_WEATHER_UPCOMING: {
+                String upcomingSelection = WeatherContract.WeatherEntry.getSqlSelectForTodayOnwards();
+                String[] upcomingSelectionArgs =
+                        WeatherContract.WeatherEntry.getSelectionArgsForTodayOnwards();
+
+                /* Callers may still narrow the forecast down further */
+                if (selection != null) {
+                    upcomingSelection = upcomingSelection + " AND (" + selection + ")";
+                    upcomingSelectionArgs = concat(upcomingSelectionArgs, selectionArgs);
+                }
+
+                if (sortOrder == null) {
+                    sortOrder = WeatherContract.WeatherEntry.COLUMN_EPOCH_DAY + " ASC";
+                }
+
+                cursor = mOpenHelper.getReadableDatabase().query(
+                        WeatherContract.WeatherEntry.TABLE_NAME,
+                        toStoredWeatherProjection(projection),
+                        upcomingSelection,
+                        upcomingSelectionArgs,
+                        null,
+                        null,
+                        sortOrder,
+                        limit);
+                notificationUri = WeatherContract.WeatherEntry.CHANGES_URI;
+
+                break;
+            }
+
+            /* Every row of the history archive, at every resolution */
+            case CODE_ARCHIVE: {
+                cursor = mOpenHelper.getReadableDatabase().query(
+                        WeatherContract.ArchiveEntry.TABLE_NAME,
                         projection,
                         selection,
                         selectionArgs,
@@ -289,10 +430,74 @@ public class WeatherProvider extends ContentProvider {
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
 
-        cursor.setNotificationUri(getContext().getContentResolver(), uri);
+        cursor.setNotificationUri(getContext().getContentResolver(), notificationUri);
         return cursor;
     }
 
+    /*
+     * Joins two sets of selection arguments, in order, for selections that were joined with AND.
+     * Either may be null.
+     */
+    private static String[] concat(String[] first, String[] second) {
+        if (first == null) return second;
+        if (second == null) return first;
+
+        String[] joined = new String[first.length + second.length];
+        System.arraycopy(first, 0, joined, 0, first.length);
+        System.arraycopy(second, 0, joined, first.length, second.length);
+        return joined;
+    }
+
+    /**
+     * The weather table stores dates as epoch days, but callers written against COLUMN_DATE
+     * still insert a normalized date in milliseconds. This converts such values into what the
+     * table stores. The caller's ContentValues are left alone, as they may well still be in use.
+     *
+     * @param values Weather to insert, with either COLUMN_DATE or COLUMN_EPOCH_DAY set
+     * @return Values that can be inserted into the weather table as they are
+     */
+    private static ContentValues toStoredWeatherValues(ContentValues values) {
+        if (!values.containsKey(WeatherContract.WeatherEntry.COLUMN_DATE)) {
+            return values;
+        }
+
+        long weatherDate = values.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE);
+        if (!SunshineDateUtils.isDateNormalized(weatherDate)) {
+            throw new IllegalArgumentException("Date must be normalized to insert");
+        }
+
+        ContentValues storedValues = new ContentValues(values);
+        storedValues.remove(WeatherContract.WeatherEntry.COLUMN_DATE);
+        storedValues.put(WeatherContract.WeatherEntry.COLUMN_EPOCH_DAY,
+                SunshineDateUtils.getEpochDay(weatherDate));
+        return storedValues;
+    }
+
+    /**
+     * Swaps COLUMN_DATE in a projection for the date worked out from the stored epoch day, so
+     * callers that read dates in milliseconds get exactly what they used to. A null projection
+     * returns every stored column plus COLUMN_DATE.
+     *
+     * @param projection The projection the caller asked for
+     * @return A projection the weather table can answer
+     */
+    private static String[] toStoredWeatherProjection(String[] projection) {
+        if (projection == null) {
+            return new String[]{"*", DATE_FROM_EPOCH_DAY};
+        }
+
+        String[] storedProjection = projection;
+        for (int i = 0; i < projection.length; i++) {
+            if (WeatherContract.WeatherEntry.COLUMN_DATE.equals(projection[i])) {
+                if (storedProjection == projection) {
+                    storedProjection = projection.clone();
+                }
+                storedProjection[i] = DATE_FROM_EPOCH_DAY;
+            }
+        }
+        return storedProjection;
+    }
+
     /**
      * Deletes data at a given URI with optional arguments for more fine tuned deletions.
      *
@@ -318,21 +523,56 @@ public class WeatherProvider extends ContentProvider {
 
         switch (sUriMatcher.match(uri)) {
 
-            case CODE_WEATHER:
+            case CODE_WEATHER: {
+                final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+                WeatherChangeNotifier.Changes changes = startChanges();
+                db.beginTransaction();
+                try {
+                    addChangedDays(db, selection, selectionArgs, changes);
+                    numRowsDeleted = db.delete(
+                            WeatherContract.WeatherEntry.TABLE_NAME,
+                            selection,
+                            selectionArgs);
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+
+                finishChanges(changes);
+                return numRowsDeleted;
+            }
+
+            case CODE_ARCHIVE:
                 numRowsDeleted = mOpenHelper.getWritableDatabase().delete(
-                        WeatherContract.WeatherEntry.TABLE_NAME,
+                        WeatherContract.ArchiveEntry.TABLE_NAME,
                         selection,
                         selectionArgs);
 
                 break;
 
+            /*
+             * Deleting the compact URI downsamples and trims the archive. See
+             * WeatherArchiveCompactor for how.
+             */
+            case CODE_ARCHIVE_COMPACT: {
+                String retentionBytes =
+                        uri.getQueryParameter(WeatherContract.ArchiveEntry.PARAM_RETENTION_BYTES);
+                if (retentionBytes == null) {
+                    throw new IllegalArgumentException("Missing retention budget: " + uri);
+                }
+                numRowsDeleted = new WeatherArchiveCompactor(mOpenHelper.getWritableDatabase())
+                        .compact(SunshineDateUtils.getEpochDayForToday(),
+                                Long.parseLong(retentionBytes));
+                break;
+            }
+
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
 
-        /* If we actually deleted any rows, notify that a change has occurred to this URI */
+        /* If we actually deleted any rows, notify observers of the archive */
         if (numRowsDeleted != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyArchiveChanged();
         }
 
         return numRowsDeleted;
@@ -354,25 +594,185 @@ public class WeatherProvider extends ContentProvider {
     }
 
     /**
-     * In Sunshine, we aren't going to do anything with this method. However, we are required to
-     * override it as WeatherProvider extends ContentProvider and insert is an abstract method in
-     * ContentProvider. Rather than the single insert method, we are only going to implement
-     * {@link WeatherProvider#bulkInsert}.
+     * Inserts a single row. The sync inserts its forecast a row at a time through applyBatch, so
+     * that the whole sync is one transaction; bulkInsert is still the quickest way to insert
+     * many rows on their own.
      *
      * @param uri    The URI of the insertion request. This must not be null.
      * @param values A set of column_name/value pairs to add to the database.
      *               This must not be null
-     * @return nothing in Sunshine, but normally the URI for the newly inserted item.
+     * @return The URI of the new row, or null if it couldn't be inserted
      */
     @Override
     public Uri insert(@NonNull Uri uri, ContentValues values) {
-        throw new RuntimeException(
-                "We are not implementing insert in Sunshine. Use bulkInsert instead");
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+
+        switch (sUriMatcher.match(uri)) {
+
+            case CODE_WEATHER: {
+                ContentValues storedValues = toStoredWeatherValues(values);
+                if (db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, storedValues) == -1) {
+                    return null;
+                }
+                long epochDay =
+                        storedValues.getAsLong(WeatherContract.WeatherEntry.COLUMN_EPOCH_DAY);
+
+                WeatherChangeNotifier.Changes changes = startChanges();
+                changes.addDay(epochDay);
+                finishChanges(changes);
+                return WeatherContract.WeatherEntry.buildWeatherUriWithEpochDay(epochDay);
+            }
+
+            case CODE_ARCHIVE: {
+                long _id = db.insert(WeatherContract.ArchiveEntry.TABLE_NAME, null, values);
+                if (_id == -1) {
+                    return null;
+                }
+                notifyArchiveChanged();
+                return ContentUris.withAppendedId(uri, _id);
+            }
+
+            default:
+                throw new UnsupportedOperationException("Unknown uri: " + uri);
+        }
     }
 
+    /**
+     * Updates weather that is already in the weather table, either every row matching the
+     * selection, or the single day at the end of the URI.
+     *
+     * @param uri           The URI to update
+     * @param values        The columns to change, and their new values
+     * @param selection     An optional restriction to apply to rows when updating
+     * @param selectionArgs Used in conjunction with the selection statement
+     * @return The number of rows updated
+     */
     @Override
     public int update(@NonNull Uri uri, ContentValues values, String selection, String[] selectionArgs) {
-        throw new RuntimeException("We are not implementing update in Sunshine");
+        switch (sUriMatcher.match(uri)) {
+
+            case CODE_WEATHER:
+                break;
+
+            case CODE_WEATHER_WITH_DATE:
+                selection = WeatherContract.WeatherEntry.COLUMN_EPOCH_DAY + " = ? ";
+                selectionArgs = new String[]{
+                        Long.toString(WeatherContract.WeatherEntry.getEpochDayFromUri(uri))};
+                break;
+
+            default:
+                throw new UnsupportedOperationException("Unknown uri: " + uri);
+        }
+
+        ContentValues storedValues = toStoredWeatherValues(values);
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        WeatherChangeNotifier.Changes changes = startChanges();
+        int numRowsUpdated;
+
+        db.beginTransaction();
+        try {
+            addChangedDays(db, selection, selectionArgs, changes);
+            numRowsUpdated = db.update(
+                    WeatherContract.WeatherEntry.TABLE_NAME,
+                    storedValues,
+                    selection,
+                    selectionArgs);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        /* Moving weather to another day changes that day too */
+        if (numRowsUpdated != 0
+                && storedValues.containsKey(WeatherContract.WeatherEntry.COLUMN_EPOCH_DAY)) {
+            changes.addDay(storedValues.getAsLong(WeatherContract.WeatherEntry.COLUMN_EPOCH_DAY));
+        }
+
+        finishChanges(changes);
+        return numRowsUpdated;
+    }
+
+    /**
+     * Applies a list of operations in a single transaction. Either every operation takes effect
+     * or, if any of them throws, none do.
+     * <p>
+     * Observers are only told about the changes once the transaction has been committed, and
+     * only once per day or table, however many operations touched it. A sync that deletes the old
+     * forecast and inserts fourteen days tells each day's observers once, and the forecast list
+     * once.
+     *
+     * @param operations The operations to apply
+     * @return The result of each operation, in order
+     * @throws OperationApplicationException If any operation fails
+     */
+    @NonNull
+    @Override
+    public ContentProviderResult[] applyBatch(@NonNull ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        WeatherChangeNotifier.Changes changes = new WeatherChangeNotifier.Changes();
+
+        ContentProviderResult[] results;
+        mBatchChanges.set(changes);
+        db.beginTransaction();
+        try {
+            results = super.applyBatch(operations);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            mBatchChanges.set(null);
+        }
+
+        mChangeNotifier.publish(changes);
+        return results;
+    }
+
+    /**
+     * @return Where to record what the current call changes. Inside applyBatch, this is the
+     * batch's record, which is published once the batch is committed.
+     */
+    private WeatherChangeNotifier.Changes startChanges() {
+        WeatherChangeNotifier.Changes batchChanges = mBatchChanges.get();
+        return batchChanges != null ? batchChanges : new WeatherChangeNotifier.Changes();
+    }
+
+    /**
+     * Publishes what a call changed, unless it is part of a batch.
+     */
+    private void finishChanges(WeatherChangeNotifier.Changes changes) {
+        if (changes != mBatchChanges.get()) {
+            mChangeNotifier.publish(changes);
+        }
+    }
+
+    private void notifyArchiveChanged() {
+        WeatherChangeNotifier.Changes changes = startChanges();
+        changes.addUri(WeatherContract.ArchiveEntry.CONTENT_URI);
+        finishChanges(changes);
+    }
+
+    /**
+     * Records which days a delete or update is about to change. Once there are too many days to
+     * notify one by one, there is no need to know exactly which they are, so this reads no more
+     * rows than that.
+     */
+    private static void addChangedDays(SQLiteDatabase db, String selection, String[] selectionArgs,
+                                       WeatherChangeNotifier.Changes changes) {
+        Cursor cursor = db.query(WeatherContract.WeatherEntry.TABLE_NAME,
+                new String[]{WeatherContract.WeatherEntry.COLUMN_EPOCH_DAY},
+                selection,
+                selectionArgs,
+                null,
+                null,
+                null,
+                Integer.toString(WeatherChangeNotifier.MAX_DAY_NOTIFICATIONS + 1));
+        try {
+            while (cursor.moveToNext()) {
+                changes.addDay(cursor.getLong(0));
+            }
+        } finally {
+            cursor.close();
+        }
     }
 
     /**
@@ -15,26 +15,29 @@
  */
 package com.example.android.sunshine.sync;
 
+import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
-import android.text.format.DateUtils;
 
 import com.example.android.sunshine.data.SunshinePreferences;
+import com.example.android.sunshine.data.WeatherArchive;
 import com.example.android.sunshine.data.WeatherContract;
 import com.example.android.sunshine.utilities.NetworkUtils;
 import com.example.android.sunshine.utilities.NotificationUtils;
 import com.example.android.sunshine.utilities.OpenWeatherJsonUtils;
 
 import java.net.URL;
+import java.util.ArrayList;
 
 public class SunshineSyncTask {
 
     /**
      * Performs the network request for updated weather, parses the JSON from that request, and
      * inserts the new weather information into our ContentProvider. Will notify the user that new
-     * weather has been loaded if the user hasn't been notified of the weather within the last day
-     * AND they haven't disabled notifications in the preferences screen.
+     * weather has been loaded if today's forecast looks different from the one they were last
+     * notified of (NotificationUtils compares a hash of the icons and text it would show) AND they
+     * haven't disabled notifications in the preferences screen.
      *
      * @param context Used to access utility methods and the ContentResolver
      */
@@ -51,61 +54,13 @@ public class SunshineSyncTask {
             /* Use the URL to retrieve the JSON */
             String jsonWeatherResponse = NetworkUtils.getResponseFromHttpUrl(weatherRequestUrl);
 
-            /* Parse the JSON into a list of weather values */
-            ContentValues[] weatherValues = OpenWeatherJsonUtils
-                    .getWeatherContentValuesFromJson(context, jsonWeatherResponse);
-
             /*
-             * In cases where our JSON contained an error code, getWeatherContentValuesFromJson
-             * would have returned null. We need to check for those cases here to prevent any
-             * NullPointerExceptions being thrown. We also have no reason to insert fresh data if
-             * there isn't any to insert.
+             * Only keep the response once it has been stored, so that the cache only ever holds
+             * responses we know how to parse.
              */
-            if (weatherValues != null && weatherValues.length != 0) {
-                /* Get a handle on the ContentResolver to delete and insert data */
-                ContentResolver sunshineContentResolver = context.getContentResolver();
-
-                /* Delete old weather data because we don't need to keep multiple days' data */
-                sunshineContentResolver.delete(
-                        WeatherContract.WeatherEntry.CONTENT_URI,
-                        null,
-                        null);
-
-                /* Insert our new weather data into Sunshine's ContentProvider */
-                sunshineContentResolver.bulkInsert(
-                        WeatherContract.WeatherEntry.CONTENT_URI,
-                        weatherValues);
-
-                /*
-                 * Finally, after we insert data into the ContentProvider, determine whether or not
-                 * we should notify the user that the weather has been refreshed.
-                 */
-                boolean notificationsEnabled = SunshinePreferences.areNotificationsEnabled(context);
-
-                /*
-                 * If the last notification was shown was more than 1 day ago, we want to send
-                 * another notification to the user that the weather has been updated. Remember,
-                 * it's important that you shouldn't spam your users with notifications.
-                 */
-                long timeSinceLastNotification = SunshinePreferences
-                        .getEllapsedTimeSinceLastNotification(context);
-
-                boolean oneDayPassedSinceLastNotification = false;
-
-                if (timeSinceLastNotification >= DateUtils.DAY_IN_MILLIS) {
-                    oneDayPassedSinceLastNotification = true;
-                }
-
-                /*
-                 * We only want to show the notification if the user wants them shown and we
-                 * haven't shown a notification in the past day.
-                 */
-                if (notificationsEnabled && oneDayPassedSinceLastNotification) {
-                    NotificationUtils.notifyUserOfNewWeather(context);
-                }
-
-            /* If the code reaches this point, we have successfully performed our sync */
-
+            if (storeWeather(context, jsonWeatherResponse, true)) {
+                WeatherResponseCache.getInstance(context)
+                        .put(weatherRequestUrl, jsonWeatherResponse);
             }
 
         } catch (Exception e) {
@@ -113,4 +68,116 @@ public class SunshineSyncTask {
             e.printStackTrace();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Stores the weather again from the last good response for the current location, without
+     * going to the network. Use this after the database or the parser has changed, or to replay
+     * a real response when debugging.
+     *
+     * @param context Used to access utility methods and the ContentResolver
+     * @return True if there was a cached response and its weather was stored
+     */
+    synchronized public static boolean syncWeatherFromCache(Context context) {
+        try {
+            String jsonWeatherResponse =
+                    WeatherResponseCache.getInstance(context).get(NetworkUtils.getUrl(context));
+            return jsonWeatherResponse != null
+                    && storeWeather(context, jsonWeatherResponse, false);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Parses a response from the weather server and inserts its weather into our
+     * ContentProvider, notifying the user if appropriate.
+     *
+     * @param context             Used to access utility methods and the ContentResolver
+     * @param jsonWeatherResponse The raw body of the response
+     * @param mayNotifyUser       False for a response the user has already been told about
+     * @return True if there was weather to store, false if the response held an error
+     * @throws Exception If the response couldn't be parsed or stored
+     */
+    private static boolean storeWeather(Context context, String jsonWeatherResponse,
+                                        boolean mayNotifyUser) throws Exception {
+
+        /* Parse the JSON into a list of weather values */
+        ContentValues[] weatherValues = OpenWeatherJsonUtils
+                .getWeatherContentValuesFromJson(context, jsonWeatherResponse);
+
+        /*
+         * In cases where our JSON contained an error code, getWeatherContentValuesFromJson
+         * would have returned null. We need to check for those cases here to prevent any
+         * NullPointerExceptions being thrown. We also have no reason to insert fresh data if
+         * there isn't any to insert.
+         */
+        if (weatherValues != null && weatherValues.length != 0) {
+            /* Get a handle on the ContentResolver to delete and insert data */
+            ContentResolver sunshineContentResolver = context.getContentResolver();
+
+            /*
+             * Everything the sync writes goes into one batch, which WeatherProvider applies
+             * in a single transaction and follows with a single change notification. That
+             * also means nobody ever sees the weather table empty between the delete and the
+             * inserts.
+             */
+            ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+
+            /* Delete old weather data because we don't need to keep multiple days' data */
+            operations.add(ContentProviderOperation
+                    .newDelete(WeatherContract.WeatherEntry.CONTENT_URI)
+                    .build());
+
+            /* Insert our new weather data into Sunshine's ContentProvider */
+            for (ContentValues weather : weatherValues) {
+                operations.add(ContentProviderOperation
+                        .newInsert(WeatherContract.WeatherEntry.CONTENT_URI)
+                        .withValues(weather)
+                        .build());
+            }
+
+            /*
+             * The weather table only ever holds the latest forecast, so copy it into the
+             * history archive as well. Compacting the archive waits until after the batch.
+             */
+            for (ContentValues archived :
+                    WeatherArchive.createArchiveValues(context, weatherValues)) {
+                operations.add(ContentProviderOperation
+                        .newInsert(WeatherContract.ArchiveEntry.CONTENT_URI)
+                        .withValues(archived)
+                        .build());
+            }
+
+            sunshineContentResolver.applyBatch(WeatherContract.CONTENT_AUTHORITY, operations);
+
+            /*
+             * Finally, after we insert data into the ContentProvider, determine whether or not
+             * we should notify the user that the weather has been refreshed.
+             */
+            boolean notificationsEnabled = SunshinePreferences.areNotificationsEnabled(context);
+
+            /*
+             * We only want to show the notification if the user wants them shown. The first day
+             * in the response is always today. Rather than on a timer, notifyUserOfNewWeather
+             * only notifies when today's forecast looks different from what we last showed, so
+             * the user isn't spammed with the same weather sync after sync.
+             */
+            if (mayNotifyUser && notificationsEnabled) {
+                NotificationUtils.notifyUserOfNewWeather(context, weatherValues[0]);
+            }
+
+            /*
+             * Downsample and trim the archive as a step of its own. Inside the batch, it would
+             * hold the database's write lock for the whole pass and hold back the batch's change
+             * notification until it was done, and nobody is waiting on the archive.
+             */
+            WeatherArchive.compact(context, WeatherArchive.DEFAULT_RETENTION_BYTES);
+
+            /* If the code reaches this point, we have successfully performed our sync */
+            return true;
+        }
+
+        return false;
+    }
+}
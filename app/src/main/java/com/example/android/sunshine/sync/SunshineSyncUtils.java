@@ -144,13 +144,15 @@ public class SunshineSyncUtils {
                 String[] projectionColumns = {WeatherContract.WeatherEntry._ID};
                 String selectionStatement = WeatherContract.WeatherEntry
                         .getSqlSelectForTodayOnwards();
+                String[] selectionArguments = WeatherContract.WeatherEntry
+                        .getSelectionArgsForTodayOnwards();
 
                 /* Here, we perform the query to check to see if we have any weather data */
                 Cursor cursor = context.getContentResolver().query(
                         forecastQueryUri,
                         projectionColumns,
                         selectionStatement,
-                        null,
+                        selectionArguments,
                         null);
                 /*
                  * A Cursor object can be null for various different reasons. A few are
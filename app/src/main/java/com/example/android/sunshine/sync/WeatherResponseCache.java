@@ -0,0 +1,269 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.sync;
+
+import android.content.Context;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the raw body of the last good response from the weather server for each request URL, so
+ * the forecast can be parsed again without going back to the network. That's useful after a
+ * database migration or a change to the parser, and for replaying a real response when debugging
+ * or benchmarking.
+ * <p>
+ * Each body is a file of its own, named after a hash of its URL. Bodies are read back by mapping
+ * the file into memory rather than streaming it through a buffer. The cache is kept under a size
+ * budget by deleting the bodies that were used least recently.
+ * <p>
+ * The order the bodies were used in is kept in memory, since file times can be rounded to the
+ * second or not kept at all. When the process starts, the order is rebuilt from the file times,
+ * which is the best guess there is; from then on it is exact. That only works if every user of
+ * the directory goes through the same object, so there is a single, process-wide cache, which
+ * {@link #getInstance(Context)} returns.
+ * <p>
+ * Everything here does file I/O, so only use it from a background thread.
+ */
+public final class WeatherResponseCache {
+
+    /* A forecast response is around 10KB, so this is room for plenty of locations */
+    private static final long DEFAULT_MAX_BYTES = 256 * 1024;
+
+    /*
+     * Kept in the app's files directory rather than its cache directory, since the point is to
+     * still have the last good response when the system has been short of space.
+     */
+    private static final String DIRECTORY_NAME = "weather_responses";
+
+    private static final String BODY_SUFFIX = ".json";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static WeatherResponseCache sInstance;
+
+    private final File mDirectory;
+    private final long mMaxBytes;
+
+    /*
+     * The size of every cached body, keyed by file name, from least to most recently used.
+     * Null until the directory is first looked at.
+     */
+    private LinkedHashMap<String, Long> mBodies;
+    private long mTotalBytes;
+
+    /**
+     * @param context Any Context; only used to find the app's files directory
+     * @return The process-wide cache
+     */
+    public static synchronized WeatherResponseCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new WeatherResponseCache(
+                    new File(context.getFilesDir(), DIRECTORY_NAME), DEFAULT_MAX_BYTES);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Only for tests, which want a small budget and a directory of their own.
+     *
+     * @param directory Where to keep the bodies
+     * @param maxBytes  How much space the cached bodies may take up, in total
+     */
+    WeatherResponseCache(File directory, long maxBytes) {
+        mDirectory = directory;
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Saves the body of a response, replacing any body already cached for the URL. Call this
+     * once the body has been parsed successfully, so the cache only ever holds good responses.
+     *
+     * @param url  The URL the response came from
+     * @param body The raw body of the response
+     * @throws IOException If the body couldn't be written
+     */
+    public synchronized void put(URL url, String body) throws IOException {
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            throw new IOException("Couldn't create " + mDirectory);
+        }
+
+        /*
+         * Write to a temporary file and rename it over the old body, so that a crash part way
+         * through never leaves half a response behind.
+         */
+        File bodyFile = getBodyFile(url);
+        File tempFile = new File(mDirectory, bodyFile.getName() + TEMP_SUFFIX);
+        FileOutputStream out = new FileOutputStream(tempFile);
+        try {
+            out.write(body.getBytes(UTF_8));
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!tempFile.renameTo(bodyFile)) {
+            tempFile.delete();
+            throw new IOException("Couldn't replace " + bodyFile);
+        }
+
+        Map<String, Long> bodies = getBodies();
+        Long oldLength = bodies.remove(bodyFile.getName());
+        if (oldLength != null) {
+            mTotalBytes -= oldLength;
+        }
+        /* Added last, so it is the most recently used */
+        bodies.put(bodyFile.getName(), bodyFile.length());
+        mTotalBytes += bodyFile.length();
+
+        trimToSize();
+    }
+
+    /**
+     * Reads back the body cached for a URL.
+     *
+     * @param url The URL the response came from
+     * @return The raw body of the response, or null if none is cached
+     * @throws IOException If the body couldn't be read
+     */
+    public synchronized String get(URL url) throws IOException {
+        File bodyFile = getBodyFile(url);
+        /* Looking the body up also marks it as the most recently used, for trimToSize */
+        if (getBodies().get(bodyFile.getName()) == null) {
+            return null;
+        }
+        if (!bodyFile.isFile()) {
+            /* Deleted behind our back, for example by clearing the app's data */
+            mTotalBytes -= mBodies.remove(bodyFile.getName());
+            return null;
+        }
+
+        RandomAccessFile file = new RandomAccessFile(bodyFile, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            /* The JSON parser needs a String, so decode it straight out of the mapped pages */
+            return UTF_8.decode(mapped).toString();
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Deletes every cached body.
+     */
+    public synchronized void clear() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            file.delete();
+        }
+        mBodies = null;
+        mTotalBytes = 0;
+    }
+
+    /*
+     * Deletes the least recently used bodies until the rest fit in the budget. The body that was
+     * just written is always the most recent, so it survives unless it's over budget on its own.
+     */
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Long>> eldest = mBodies.entrySet().iterator();
+        while (mTotalBytes > mMaxBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> body = eldest.next();
+            if (new File(mDirectory, body.getKey()).delete()) {
+                mTotalBytes -= body.getValue();
+                eldest.remove();
+            }
+        }
+    }
+
+    /*
+     * Returns the cached bodies from least to most recently used, listing the directory the first
+     * time. Before then, all we know about the order is the file times, so start from those.
+     */
+    private Map<String, Long> getBodies() {
+        if (mBodies != null) {
+            return mBodies;
+        }
+
+        /* An access-ordered LinkedHashMap moves each entry to the end as it is read */
+        mBodies = new LinkedHashMap<>(16, 0.75f, true);
+        mTotalBytes = 0;
+
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return mBodies;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File first, File second) {
+                long firstModified = first.lastModified();
+                long secondModified = second.lastModified();
+                return firstModified < secondModified ? -1
+                        : firstModified == secondModified ? 0 : 1;
+            }
+        });
+        for (File file : files) {
+            if (file.getName().endsWith(BODY_SUFFIX)) {
+                mBodies.put(file.getName(), file.length());
+                mTotalBytes += file.length();
+            } else {
+                /* A temporary file left behind by a crash part way through put() */
+                file.delete();
+            }
+        }
+        return mBodies;
+    }
+
+    private File getBodyFile(URL url) {
+        return new File(mDirectory, hash(url.toString()) + BODY_SUFFIX);
+    }
+
+    /*
+     * URLs hold characters that can't go in a file name, and can be longer than a file name may
+     * be, so files are named after a hash of the URL instead.
+     */
+    private static String hash(String url) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(url.getBytes(UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16));
+                hex.append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            /* Every Android device has SHA-1 */
+            throw new IllegalStateException(e);
+        }
+    }
+}
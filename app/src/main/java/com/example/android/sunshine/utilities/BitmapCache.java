@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.utilities;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.drawable.Drawable;
+import android.support.v4.content.ContextCompat;
+import android.support.v4.util.LruCache;
+
+import com.example.android.sunshine.shared.BitmapCachePolicy;
+
+/**
+ * A size-aware, process-wide cache of decoded weather art. Bitmaps are keyed by resource ID,
+ * target size and config, and are always decoded to exactly the size they will be displayed at,
+ * so the same art is never decoded twice and never held at a larger size than needed.
+ * <p>
+ * Some of Sunshine's art is bitmap (the ic_ icons) and some is vector (the art_ drawables).
+ * Bitmaps are downsampled while decoding and then scaled to the exact size; vectors are
+ * rasterized straight into a Bitmap of the requested size.
+ * <p>
+ * The keys, sizes and downsampling come from {@link BitmapCachePolicy}, which the watch face's
+ * BitmapCache uses as well.
+ */
+public final class BitmapCache {
+
+    /* Use 1/16th of the available heap for cached art. A single notification icon is ~16KB. */
+    private static final int MAX_CACHE_BYTES = (int) (Runtime.getRuntime().maxMemory() / 16);
+
+    private static final LruCache<String, Bitmap> sCache =
+            new LruCache<String, Bitmap>(MAX_CACHE_BYTES) {
+                @Override
+                protected int sizeOf(String key, Bitmap bitmap) {
+                    return BitmapCachePolicy.getByteCount(
+                            bitmap.getRowBytes(), bitmap.getHeight());
+                }
+            };
+
+    private BitmapCache() {
+    }
+
+    /**
+     * Returns the art for a resource at exactly the requested size, decoding it only if it isn't
+     * already cached.
+     *
+     * @param context    Used to access resources
+     * @param resourceId The drawable to decode
+     * @param width      Target width in pixels
+     * @param height     Target height in pixels
+     * @param config     Bitmap config to decode to
+     * @return The decoded Bitmap, or null if the resource could not be decoded
+     */
+    public static Bitmap getBitmap(Context context, int resourceId, int width, int height,
+                                   Bitmap.Config config) {
+        String key = BitmapCachePolicy.getKey(resourceId, width, height, config.name());
+
+        Bitmap bitmap = sCache.get(key);
+        if (bitmap == null) {
+            bitmap = decode(context, resourceId, width, height, config);
+            if (bitmap != null) {
+                sCache.put(key, bitmap);
+            }
+        }
+        return bitmap;
+    }
+
+    private static Bitmap decode(Context context, int resourceId, int width, int height,
+                                 Bitmap.Config config) {
+        Resources resources = context.getResources();
+
+        /* First, only read the dimensions so that we can work out how much to downsample */
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeResource(resources, resourceId, options);
+
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            /* Not a bitmap, most likely one of our vector drawables */
+            return rasterize(context, resourceId, width, height, config);
+        }
+
+        options.inJustDecodeBounds = false;
+        options.inPreferredConfig = config;
+        options.inSampleSize = BitmapCachePolicy.calculateInSampleSize(
+                options.outWidth, options.outHeight, width, height);
+
+        Bitmap sampled = BitmapFactory.decodeResource(resources, resourceId, options);
+        if (sampled == null || (sampled.getWidth() == width && sampled.getHeight() == height)) {
+            return sampled;
+        }
+
+        Bitmap scaled = Bitmap.createScaledBitmap(sampled, width, height, true);
+        if (scaled != sampled) {
+            sampled.recycle();
+        }
+        return scaled;
+    }
+
+    private static Bitmap rasterize(Context context, int resourceId, int width, int height,
+                                    Bitmap.Config config) {
+        Drawable drawable = ContextCompat.getDrawable(context, resourceId);
+        if (drawable == null) {
+            return null;
+        }
+
+        Bitmap bitmap = Bitmap.createBitmap(width, height, config);
+        Canvas canvas = new Canvas(bitmap);
+        drawable.setBounds(0, 0, width, height);
+        drawable.draw(canvas);
+        return bitmap;
+    }
+}
@@ -30,7 +30,7 @@ public class FakeDataUtils {
         testWeatherValues.put(WeatherEntry.COLUMN_MAX_TEMP, maxTemp);
         testWeatherValues.put(WeatherEntry.COLUMN_MIN_TEMP, maxTemp - (int) (Math.random()*10));
         testWeatherValues.put(WeatherEntry.COLUMN_WIND_SPEED, Math.random()*10);
-        testWeatherValues.put(WeatherEntry.COLUMN_WEATHER_ID, weatherIDs[(int)(Math.random()*10)%5]);
+        testWeatherValues.put(WeatherEntry.COLUMN_WEATHER_ID, weatherIDs[(int)(Math.random()*weatherIDs.length)]);
         return testWeatherValues;
     }
 
@@ -51,4 +51,18 @@ public class FakeDataUtils {
                 WeatherContract.WeatherEntry.CONTENT_URI,
                 fakeValues.toArray(new ContentValues[7]));
     }
+
+    /**
+     * Inserts seeded, reproducible weather for any number of days starting today. Unlike
+     * {@link #insertFakeData(Context)}, the same seed always gives the same weather, and the data
+     * is streamed into the provider in batches, so this can be used to load millions of rows.
+     * @param context used to reach the weather ContentProvider
+     * @param seed the seed for {@link SyntheticWeatherGenerator}
+     * @param dayCount how many days to insert
+     * @return the number of rows inserted
+     */
+    public static int insertSyntheticData(Context context, long seed, int dayCount) {
+        long today = SunshineDateUtils.normalizeDate(System.currentTimeMillis());
+        return new SyntheticWeatherGenerator(seed, 0).insert(context, today, dayCount);
+    }
 }
@@ -2,13 +2,13 @@ package com.example.android.sunshine.utilities;
 
 import android.app.NotificationManager;
 import android.app.PendingIntent;
+import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
 import android.content.res.Resources;
-import android.database.Cursor;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.net.Uri;
+import android.os.Build;
 import android.support.v4.app.NotificationCompat;
 import android.support.v4.app.TaskStackBuilder;
 import android.support.v4.content.ContextCompat;
@@ -20,25 +20,6 @@ import com.example.android.sunshine.data.WeatherContract;
 
 public class NotificationUtils {
 
-    /*
-     * The columns of data that we are interested in displaying within our notification to let
-     * the user know there is new weather data available.
-     */
-    public static final String[] WEATHER_NOTIFICATION_PROJECTION = {
-            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
-            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
-            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
-    };
-
-    /*
-     * We store the indices of the values in the array of Strings above to more quickly be able
-     * to access the data from our query. If the order of the Strings above changes, these
-     * indices must be adjusted to match the order of the Strings.
-     */
-    public static final int INDEX_WEATHER_ID = 0;
-    public static final int INDEX_MAX_TEMP = 1;
-    public static final int INDEX_MIN_TEMP = 2;
-
     /*
      * This notification ID can be used to access our notification after we've displayed it. This
      * can be handy when we need to cancel the notification, or perhaps update it. This number is
@@ -47,98 +28,140 @@ public class NotificationUtils {
     private static final int WEATHER_NOTIFICATION_ID = 3004;
 
     /**
-     * Constructs and displays a notification for the newly updated weather for today.
+     * Constructs and displays a notification for the newly updated weather for today, unless it
+     * would look exactly like the last notification we showed. This is the only thing that holds
+     * notifications back, so the user hears about the weather when it changes, not on a timer.
+     * <p>
+     * The caller passes in today's weather straight from the sync, so there is no need to query
+     * our ContentProvider. We format the notification text first and compare a hash of
+     * everything the user would see with the hash of the last notification. Only if something
+     * changed do we decode the large icon and post a new notification.
      *
-     * @param context Context used to query our ContentProvider and use various Utility methods
+     * @param context       Context used to access resources and various Utility methods
+     * @param todaysWeather Today's weather, as inserted into the ContentProvider by the sync
+     * @return true if a notification was posted, false if nothing visible has changed
      */
-    public static void notifyUserOfNewWeather(Context context) {
+    public static boolean notifyUserOfNewWeather(Context context, ContentValues todaysWeather) {
+
+        long date = todaysWeather.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE);
+
+        /* Weather ID as returned by API, used to identify the icon to be used */
+        int weatherId = todaysWeather.getAsInteger(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID);
+        double high = todaysWeather.getAsDouble(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP);
+        double low = todaysWeather.getAsDouble(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP);
+
+        String notificationText = getNotificationText(context, weatherId, high, low);
+
+        /* getSmallArtResourceIdForWeatherCondition returns the proper art to show given an ID */
+        int smallArtResourceId = SunshineWeatherUtils
+                .getSmallArtResourceIdForWeatherCondition(weatherId);
+        int largeArtResourceId = SunshineWeatherUtils
+                .getLargeArtResourceIdForWeatherCondition(weatherId);
+
+        /*
+         * The text already reflects the condition and temperatures in the user's units, and the
+         * art is determined by the condition. That is everything the user can see in the
+         * notification. The date is left out on purpose: the same weather on a new day is not
+         * news, and with the date in the hash, no two days' notifications could ever match.
+         */
+        int notificationHash = (smallArtResourceId + "|" + largeArtResourceId
+                + "|" + notificationText).hashCode();
+
+        if (notificationHash == SunshinePreferences.getLastNotificationHash(context)) {
+            return false;
+        }
+
+        Resources resources = context.getResources();
+
+        /*
+         * The large icon is decoded to exactly the size the notification shade draws it at
+         * and cached, so repeated notifications for the same weather don't decode again.
+         */
+        Bitmap largeIcon = BitmapCache.getBitmap(
+                context,
+                largeArtResourceId,
+                getLargeIconWidth(resources),
+                getLargeIconHeight(resources),
+                Bitmap.Config.ARGB_8888);
 
-        /* Build the URI for today's weather in order to show up to date data in notification */
-        Uri todaysWeatherUri = WeatherContract.WeatherEntry
-                .buildWeatherUriWithDate(SunshineDateUtils.normalizeDate(System.currentTimeMillis()));
+        /*
+         * This Intent will be triggered when the user clicks the notification. In our case,
+         * we want to open Sunshine to the DetailActivity to display the newly updated weather.
+         */
+        Uri todaysWeatherUri = WeatherContract.WeatherEntry.buildWeatherUriWithDate(date);
+        Intent detailIntentForToday = new Intent(context, DetailActivity.class);
+        detailIntentForToday.setData(todaysWeatherUri);
+
+        TaskStackBuilder taskStackBuilder = TaskStackBuilder.create(context);
+        taskStackBuilder.addNextIntentWithParentStack(detailIntentForToday);
+        PendingIntent resultPendingIntent = taskStackBuilder
+                .getPendingIntent(0, PendingIntent.FLAG_UPDATE_CURRENT);
+
+        NotificationCompat.Builder notificationBuilder = createNotificationBuilder(context)
+                .setSmallIcon(smallArtResourceId)
+                .setLargeIcon(largeIcon)
+                .setContentText(notificationText)
+                .setContentIntent(resultPendingIntent);
+
+        NotificationManager notificationManager = (NotificationManager)
+                context.getSystemService(Context.NOTIFICATION_SERVICE);
+
+        /* WEATHER_NOTIFICATION_ID allows you to update or cancel the notification later on */
+        notificationManager.notify(WEATHER_NOTIFICATION_ID, notificationBuilder.build());
 
         /*
-         * The MAIN_FORECAST_PROJECTION array passed in as the second parameter is defined in our WeatherContract
-         * class and is used to limit the columns returned in our cursor.
+         * Since we just showed a notification, save the current time and what it looked like.
+         * That way, we can check next time the weather is refreshed if we should show another
+         * notification.
          */
-        Cursor todayWeatherCursor = context.getContentResolver().query(
-                todaysWeatherUri,
-                WEATHER_NOTIFICATION_PROJECTION,
-                null,
-                null,
-                null);
+        SunshinePreferences.saveLastNotificationTime(context, System.currentTimeMillis());
+        SunshinePreferences.saveLastNotificationHash(context, notificationHash);
+
+        return true;
+    }
+
+    /**
+     * Creates a notification builder with everything that doesn't depend on the weather already
+     * set. Syncs can run on more than one thread at once, so each notification gets a builder of
+     * its own rather than sharing one.
+     *
+     * @param context Used to access resources
+     * @return A new notification builder
+     */
+    private static NotificationCompat.Builder createNotificationBuilder(Context context) {
+        Context appContext = context.getApplicationContext();
 
         /*
-         * If todayWeatherCursor is empty, moveToFirst will return false. If our cursor is not
-         * empty, we want to show the notification.
+         * NotificationCompat Builder is a very convenient way to build backward-compatible
+         * notifications. In order to use it, we provide a context and specify a color for the
+         * notification, a couple of different icons, the title for the notification, and
+         * finally the text of the notification, which in our case in a summary of today's
+         * forecast.
          */
-        if (todayWeatherCursor.moveToFirst()) {
-
-            /* Weather ID as returned by API, used to identify the icon to be used */
-            int weatherId = todayWeatherCursor.getInt(INDEX_WEATHER_ID);
-            double high = todayWeatherCursor.getDouble(INDEX_MAX_TEMP);
-            double low = todayWeatherCursor.getDouble(INDEX_MIN_TEMP);
-
-            Resources resources = context.getResources();
-            int largeArtResourceId = SunshineWeatherUtils
-                    .getLargeArtResourceIdForWeatherCondition(weatherId);
-
-            Bitmap largeIcon = BitmapFactory.decodeResource(
-                    resources,
-                    largeArtResourceId);
-
-            String notificationTitle = context.getString(R.string.app_name);
-
-            String notificationText = getNotificationText(context, weatherId, high, low);
-
-            /* getSmallArtResourceIdForWeatherCondition returns the proper art to show given an ID */
-            int smallArtResourceId = SunshineWeatherUtils
-                    .getSmallArtResourceIdForWeatherCondition(weatherId);
-
-            /*
-             * NotificationCompat Builder is a very convenient way to build backward-compatible
-             * notifications. In order to use it, we provide a context and specify a color for the
-             * notification, a couple of different icons, the title for the notification, and
-             * finally the text of the notification, which in our case in a summary of today's
-             * forecast.
-             */
-            NotificationCompat.Builder notificationBuilder = new NotificationCompat.Builder(context)
-                    .setColor(ContextCompat.getColor(context,R.color.colorPrimary))
-                    .setSmallIcon(smallArtResourceId)
-                    .setLargeIcon(largeIcon)
-                    .setContentTitle(notificationTitle)
-                    .setContentText(notificationText)
-                    .setAutoCancel(true);
-
-            /*
-             * This Intent will be triggered when the user clicks the notification. In our case,
-             * we want to open Sunshine to the DetailActivity to display the newly updated weather.
-             */
-            Intent detailIntentForToday = new Intent(context, DetailActivity.class);
-            detailIntentForToday.setData(todaysWeatherUri);
-
-            TaskStackBuilder taskStackBuilder = TaskStackBuilder.create(context);
-            taskStackBuilder.addNextIntentWithParentStack(detailIntentForToday);
-            PendingIntent resultPendingIntent = taskStackBuilder
-                    .getPendingIntent(0, PendingIntent.FLAG_UPDATE_CURRENT);
-
-            notificationBuilder.setContentIntent(resultPendingIntent);
-
-            NotificationManager notificationManager = (NotificationManager)
-                    context.getSystemService(Context.NOTIFICATION_SERVICE);
-
-            /* WEATHER_NOTIFICATION_ID allows you to update or cancel the notification later on */
-            notificationManager.notify(WEATHER_NOTIFICATION_ID, notificationBuilder.build());
-
-            /*
-             * Since we just showed a notification, save the current time. That way, we can check
-             * next time the weather is refreshed if we should show another notification.
-             */
-            SunshinePreferences.saveLastNotificationTime(context, System.currentTimeMillis());
+        return new NotificationCompat.Builder(appContext)
+                .setColor(ContextCompat.getColor(appContext, R.color.colorPrimary))
+                .setContentTitle(appContext.getString(R.string.app_name))
+                .setAutoCancel(true);
+    }
+
+    /**
+     * @return The width in pixels at which the system displays a notification's large icon
+     */
+    private static int getLargeIconWidth(Resources resources) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+            return resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_width);
         }
+        return resources.getDimensionPixelSize(R.dimen.notification_large_icon_fallback_size);
+    }
 
-        /* Always close your cursor when you're done with it to avoid wasting resources. */
-        todayWeatherCursor.close();
+    /**
+     * @return The height in pixels at which the system displays a notification's large icon
+     */
+    private static int getLargeIconHeight(Resources resources) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+            return resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_height);
+        }
+        return resources.getDimensionPixelSize(R.dimen.notification_large_icon_fallback_size);
     }
 
     /**
@@ -159,6 +159,37 @@ public final class SunshineDateUtils {
         return isDateNormalized;
     }
 
+    /**
+     * The weather table stores each day as a number of days since the epoch rather than as a
+     * normalized date in milliseconds. This converts the one to the other.
+     *
+     * @param normalizedUtcDate Normalized UTC date in milliseconds
+     *
+     * @return The number of days from the epoch to the date argument
+     */
+    public static long getEpochDay(long normalizedUtcDate) {
+        return elapsedDaysSinceEpoch(normalizedUtcDate);
+    }
+
+    /**
+     * The opposite of {@link #getEpochDay(long)}.
+     *
+     * @param epochDay Number of days since January 1, 1970
+     *
+     * @return The normalized UTC date of that day, in milliseconds
+     */
+    public static long getNormalizedUtcDateForEpochDay(long epochDay) {
+        return epochDay * DAY_IN_MILLIS;
+    }
+
+    /**
+     * @return Today's date in the local time zone, as a number of days since the epoch
+     * @see #getNormalizedUtcDateForToday()
+     */
+    public static long getEpochDayForToday() {
+        return getEpochDay(getNormalizedUtcDateForToday());
+    }
+
     /**
      * This method will return the local time midnight for the provided normalized UTC date.
      *
@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.utilities;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+
+/**
+ * Generates believable weather for load testing the provider, its queries and the forecast list,
+ * anywhere from a two week forecast up to millions of rows.
+ * <p>
+ * Everything is derived from a seed, a location and the date, and nothing else. The same seed,
+ * location and date always give exactly the same row, whatever order days are generated in, so a
+ * dataset can be regenerated piece by piece, or compared against what a test read back.
+ * <p>
+ * Each location gets a climate from the seed: a latitude, which sets how warm it is and how
+ * strong its seasons are, and how humid it is. Each day then follows the season, plus a few
+ * days' worth of warmer or cooler spells and some day to day noise. Humid days are more likely to
+ * be wet, cold wet days are snowy, and once in a long while there is a tornado or a hurricane.
+ * <p>
+ * The weather table holds one row per date and has no location column, so different locations
+ * have to be inserted over different date ranges.
+ */
+public final class SyntheticWeatherGenerator {
+
+    /* Rows per bulkInsert. Each bulkInsert is one transaction, so this bounds its size. */
+    private static final int BATCH_SIZE = 500;
+
+    private static final double DAYS_PER_YEAR = 365.2425;
+
+    /* Thunderstorms, drizzle, rain and snow, as Open Weather Map reports them */
+    private static final int[] THUNDERSTORM_IDS = {200, 201, 211, 221};
+    private static final int[] DRIZZLE_IDS = {300, 301, 310};
+    private static final int[] RAIN_IDS = {500, 500, 501, 501, 502, 503, 511, 520, 521};
+    private static final int[] SNOW_IDS = {600, 600, 601, 602, 611, 615, 620};
+
+    /* Mist and fog on humid, dry days */
+    private static final int[] FOG_IDS = {701, 721, 741};
+
+    /* Clear skies and clouds; clear skies are the most common */
+    private static final int[] DRY_IDS = {800, 800, 800, 801, 802, 803, 804};
+
+    /* Rare, severe weather: tornado, tropical storm, hurricane, squalls and another hurricane */
+    private static final int[] EXTREME_IDS = {900, 901, 902, 771, 962};
+
+    /* How likely a day is to be extreme */
+    private static final double EXTREME_PROBABILITY = 0.0005;
+
+    private final long mSeed;
+
+    /* The location's climate */
+    private final double mLatitude;
+    private final double mMeanTemperature;
+    private final double mSeasonalSwing;
+    private final double mMeanHumidity;
+    private final double mSpellPhase;
+    private final double mLongSpellPhase;
+
+    /* State of the per-row random sequence, see nextDouble() */
+    private long mState;
+
+    /**
+     * @param seed     Seeds every value this generator produces
+     * @param location Which of the seed's locations to generate weather for. Any int will do.
+     */
+    public SyntheticWeatherGenerator(long seed, int location) {
+        mSeed = mix(seed ^ mix(location + 0x5EED));
+
+        mState = mSeed;
+        mLatitude = -60 + nextDouble() * 120;
+        double distanceFromEquator = Math.abs(mLatitude);
+        mMeanTemperature = 28 - 0.45 * distanceFromEquator + nextGaussian() * 2;
+        mSeasonalSwing = 0.25 * distanceFromEquator;
+        mMeanHumidity = 40 + nextDouble() * 45;
+        mSpellPhase = nextDouble() * 2 * Math.PI;
+        mLongSpellPhase = nextDouble() * 2 * Math.PI;
+    }
+
+    /**
+     * @return The latitude of this generator's location, which decides its climate
+     */
+    public double getLatitude() {
+        return mLatitude;
+    }
+
+    /**
+     * Generates the weather for one day at this generator's location.
+     *
+     * @param date Normalized UTC date of the day
+     * @return ContentValues for every column of the weather table
+     */
+    public ContentValues createWeatherValues(long date) {
+        long epochDay = date / SunshineDateUtils.DAY_IN_MILLIS;
+        mState = mix(mSeed ^ epochDay);
+
+        /* The season peaks in late July up north, and in late January down south */
+        double season = Math.cos(2 * Math.PI * (epochDay % DAYS_PER_YEAR - 200) / DAYS_PER_YEAR);
+        double seasonal = Math.signum(mLatitude) * mSeasonalSwing * season;
+
+        /* Warm and cool spells of about a week and about two and a half weeks */
+        double spell = 3 * Math.sin(2 * Math.PI * epochDay / 7.3 + mSpellPhase)
+                + 2 * Math.sin(2 * Math.PI * epochDay / 17.9 + mLongSpellPhase);
+
+        double meanTemperature = mMeanTemperature + seasonal + spell + nextGaussian() * 1.5;
+        double dailyRange = 6 + nextDouble() * 6;
+        double high = round(meanTemperature + dailyRange / 2);
+        double low = round(meanTemperature - dailyRange / 2);
+
+        double humidity = clamp(mMeanHumidity + 10 * Math.sin(2 * Math.PI * epochDay / 9.1)
+                + nextGaussian() * 12, 5, 100);
+
+        /* Cool spells bring low pressure, and with it more wind */
+        double pressure = round(1013 - spell * 1.5 + nextGaussian() * 4);
+
+        int weatherId;
+        double windSpeed = Math.abs(nextGaussian()) * 3 + 0.5;
+        if (nextDouble() < EXTREME_PROBABILITY) {
+            weatherId = pick(EXTREME_IDS);
+            windSpeed = windSpeed * 6 + 20;
+        } else if (nextDouble() < (humidity - 45) / 55) {
+            if (meanTemperature < 0) {
+                weatherId = pick(SNOW_IDS);
+            } else if (nextDouble() < 0.15) {
+                weatherId = pick(THUNDERSTORM_IDS);
+                windSpeed += 4;
+            } else if (nextDouble() < 0.25) {
+                weatherId = pick(DRIZZLE_IDS);
+            } else {
+                weatherId = pick(RAIN_IDS);
+            }
+        } else if (humidity > 85 && nextDouble() < 0.3) {
+            weatherId = pick(FOG_IDS);
+        } else {
+            weatherId = pick(DRY_IDS);
+        }
+
+        ContentValues weatherValues = new ContentValues();
+        weatherValues.put(WeatherEntry.COLUMN_DATE, date);
+        weatherValues.put(WeatherEntry.COLUMN_WEATHER_ID, weatherId);
+        weatherValues.put(WeatherEntry.COLUMN_MAX_TEMP, high);
+        weatherValues.put(WeatherEntry.COLUMN_MIN_TEMP, low);
+        weatherValues.put(WeatherEntry.COLUMN_HUMIDITY, round(humidity));
+        weatherValues.put(WeatherEntry.COLUMN_PRESSURE, pressure);
+        weatherValues.put(WeatherEntry.COLUMN_WIND_SPEED, round(windSpeed));
+        weatherValues.put(WeatherEntry.COLUMN_DEGREES, round(nextDouble() * 360));
+        return weatherValues;
+    }
+
+    /**
+     * Streams consecutive days of weather into WeatherProvider, a batch at a time, so that only
+     * one batch is ever held in memory however many rows are inserted.
+     *
+     * @param context   Used to access the ContentResolver
+     * @param firstDate Normalized UTC date of the first day
+     * @param dayCount  How many days to insert
+     * @return The number of rows inserted
+     */
+    public int insert(Context context, long firstDate, int dayCount) {
+        ContentResolver resolver = context.getContentResolver();
+        int rowsInserted = 0;
+        for (int start = 0; start < dayCount; start += BATCH_SIZE) {
+            ContentValues[] batch = new ContentValues[Math.min(BATCH_SIZE, dayCount - start)];
+            for (int i = 0; i < batch.length; i++) {
+                batch[i] = createWeatherValues(
+                        firstDate + (start + i) * SunshineDateUtils.DAY_IN_MILLIS);
+            }
+            rowsInserted += resolver.bulkInsert(WeatherEntry.CONTENT_URI, batch);
+        }
+        return rowsInserted;
+    }
+
+    private int pick(int[] weatherIds) {
+        return weatherIds[(int) (nextDouble() * weatherIds.length)];
+    }
+
+    /**
+     * The next value of a SplitMix64 sequence, as a double in [0, 1). This is much cheaper than
+     * creating a java.util.Random for every row, which we'd need to do to make each row depend on
+     * its date alone.
+     */
+    private double nextDouble() {
+        mState += 0x9E3779B97F4A7C15L;
+        return (mix(mState) >>> 11) * 0x1.0p-53;
+    }
+
+    /* A normally distributed value with a mean of 0 and a standard deviation of 1 */
+    private double nextGaussian() {
+        double u = 1 - nextDouble();
+        double v = nextDouble();
+        return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * v);
+    }
+
+    /* The SplitMix64 finalizer, which scrambles the bits of a long */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 10) / 10.0;
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -0,0 +1,331 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.wear;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.common.api.Result;
+import com.google.android.gms.common.api.ResultCallback;
+import com.google.android.gms.wearable.PutDataRequest;
+import com.google.android.gms.wearable.Wearable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single, process-wide connection to the Wearable Data Layer.
+ * <p>
+ * Callers {@link #acquire()} the connection before sending and {@link #release()} it when they
+ * are done. The underlying GoogleApiClient is connected on the first acquire and is kept around
+ * for {@link #IDLE_DISCONNECT_MILLIS} after the last release, so back to back pushes don't pay
+ * for a new connection each time.
+ * <p>
+ * Sends made while the client is still connecting are queued. The queue is keyed by DataItem
+ * path, so if the same path is sent twice before we connect, only the newer request goes out.
+ * If the client doesn't connect within {@link #CONNECT_TIMEOUT_MILLIS}, everything queued is
+ * failed rather than being left to go out at some arbitrary later time.
+ * <p>
+ * All connection and result callbacks run on a dedicated background thread, never on the main
+ * thread, and never on the thread of whoever sent the request.
+ */
+final class WearConnectionManager implements GoogleApiClient.ConnectionCallbacks,
+        GoogleApiClient.OnConnectionFailedListener {
+
+    private static final String TAG = WearConnectionManager.class.getSimpleName();
+
+    /* How long we give Google Play services to connect before failing queued sends */
+    private static final long CONNECT_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    /* How long the connection is kept open after the last caller releases it */
+    private static final long IDLE_DISCONNECT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    /**
+     * Told whether a single send made it into the Data Layer. Called on the connection thread.
+     */
+    interface SendCallback {
+        void onSendComplete(boolean success);
+    }
+
+    private static WearConnectionManager sInstance;
+
+    private final GoogleApiClient mGoogleApiClient;
+    private final Handler mHandler;
+
+    /* Requests waiting for the client to connect, keyed by DataItem path */
+    private final Map<String, Request> mPendingRequests = new LinkedHashMap<>();
+
+    /* Who is holding the connection, and how many sends haven't completed yet */
+    private final WearConnectionUsage mUsage = new WearConnectionUsage();
+
+    private boolean mConnecting;
+
+    private final Runnable mConnectTimeout = new Runnable() {
+        @Override
+        public void run() {
+            Log.d(TAG, "Timed out connecting");
+            synchronized (WearConnectionManager.this) {
+                mConnecting = false;
+            }
+            mGoogleApiClient.disconnect();
+            failPendingRequests();
+        }
+    };
+
+    private final Runnable mIdleDisconnect = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (WearConnectionManager.this) {
+                if (!mUsage.isUnused()) {
+                    return;
+                }
+                mConnecting = false;
+            }
+            mHandler.removeCallbacks(mConnectTimeout);
+            mGoogleApiClient.disconnect();
+        }
+    };
+
+    /**
+     * @param context Any Context; only the application Context is held on to
+     * @return The process-wide connection manager
+     */
+    static synchronized WearConnectionManager getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new WearConnectionManager(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private WearConnectionManager(Context appContext) {
+        HandlerThread thread = new HandlerThread(TAG);
+        thread.start();
+        mHandler = new Handler(thread.getLooper());
+
+        mGoogleApiClient = new GoogleApiClient.Builder(appContext)
+                .addApi(Wearable.API)
+                .addConnectionCallbacks(this)
+                .addOnConnectionFailedListener(this)
+                .setHandler(mHandler)
+                .build();
+    }
+
+    /**
+     * Marks the connection as in use, connecting it if it isn't already. Every call must be
+     * balanced by a call to {@link #release()}.
+     */
+    synchronized void acquire() {
+        mUsage.acquire();
+        mHandler.removeCallbacks(mIdleDisconnect);
+        connectIfNeeded();
+    }
+
+    /**
+     * Marks the connection as no longer in use by the caller. Once nobody is using it and all
+     * sends have completed, it is disconnected after {@link #IDLE_DISCONNECT_MILLIS}.
+     */
+    synchronized void release() {
+        if (mUsage.release()) {
+            scheduleIdleDisconnect();
+        }
+    }
+
+    /**
+     * Puts a DataItem, replacing any request for the same path that hasn't been sent yet.
+     * The caller must hold the connection (see {@link #acquire()}).
+     *
+     * @param request  The DataItem to put
+     * @param callback Told whether the put succeeded
+     */
+    void putDataItem(final PutDataRequest request, SendCallback callback) {
+        enqueue(new Request(request.getUri().getPath(), callback) {
+            @Override
+            PendingResult<? extends Result> execute(GoogleApiClient client) {
+                return Wearable.DataApi.putDataItem(client, request);
+            }
+        });
+    }
+
+    /**
+     * Deletes the DataItems at a URI, replacing any request for the same path that hasn't been
+     * sent yet. The caller must hold the connection (see {@link #acquire()}).
+     *
+     * @param uri      The DataItem URI to delete
+     * @param callback Told whether the delete succeeded
+     */
+    void deleteDataItems(final Uri uri, SendCallback callback) {
+        enqueue(new Request(uri.getPath(), callback) {
+            @Override
+            PendingResult<? extends Result> execute(GoogleApiClient client) {
+                return Wearable.DataApi.deleteDataItems(client, uri);
+            }
+        });
+    }
+
+    /**
+     * Blocks until every request made so far has completed or failed. This must not be called on
+     * the main thread. WearIntentService uses it so that it isn't destroyed while its sends are
+     * still outstanding.
+     *
+     * @param timeoutMillis The longest to wait
+     * @return true if everything completed, false if we gave up waiting
+     */
+    synchronized boolean awaitIdle(long timeoutMillis) {
+        long deadline = SystemClock.elapsedRealtime() + timeoutMillis;
+        while (!mUsage.isIdle()) {
+            long remaining = deadline - SystemClock.elapsedRealtime();
+            if (remaining <= 0) {
+                return false;
+            }
+            try {
+                wait(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void onConnected(@Nullable Bundle bundle) {
+        mHandler.removeCallbacks(mConnectTimeout);
+        synchronized (this) {
+            mConnecting = false;
+            flushPendingRequests();
+        }
+    }
+
+    @Override
+    public void onConnectionSuspended(int cause) {
+        /* GoogleApiClient reconnects on its own; anything queued goes out once it does */
+        Log.d(TAG, "Connection Suspended");
+    }
+
+    @Override
+    public void onConnectionFailed(@NonNull ConnectionResult connectionResult) {
+        Log.d(TAG, "Connection Failed reason:" + connectionResult.getErrorCode());
+        mHandler.removeCallbacks(mConnectTimeout);
+        synchronized (this) {
+            mConnecting = false;
+        }
+        failPendingRequests();
+    }
+
+    private void enqueue(Request request) {
+        Request replaced;
+        synchronized (this) {
+            replaced = mPendingRequests.remove(request.mPath);
+            mPendingRequests.put(request.mPath, request);
+            mUsage.sendStarted();
+            if (replaced != null) {
+                /* Can't leave the connection unused, since the new request is now counted */
+                mUsage.sendFinished();
+            }
+
+            if (mGoogleApiClient.isConnected()) {
+                flushPendingRequests();
+            } else {
+                connectIfNeeded();
+            }
+        }
+
+        /* The newer request supersedes the older one, so the older one was never sent */
+        if (replaced != null) {
+            replaced.mCallback.onSendComplete(false);
+        }
+    }
+
+    /* Must be called holding the lock */
+    private void connectIfNeeded() {
+        if (mConnecting || mGoogleApiClient.isConnected()) {
+            return;
+        }
+        mConnecting = true;
+        mGoogleApiClient.connect();
+        mHandler.postDelayed(mConnectTimeout, CONNECT_TIMEOUT_MILLIS);
+    }
+
+    /* Must be called holding the lock */
+    private void flushPendingRequests() {
+        for (final Request request : mPendingRequests.values()) {
+            request.execute(mGoogleApiClient).setResultCallback(new ResultCallback<Result>() {
+                @Override
+                public void onResult(@NonNull Result result) {
+                    request.mCallback.onSendComplete(result.getStatus().isSuccess());
+                    onSendFinished();
+                }
+            });
+        }
+        mPendingRequests.clear();
+    }
+
+    private void failPendingRequests() {
+        List<Request> failed;
+        synchronized (this) {
+            failed = new ArrayList<>(mPendingRequests.values());
+            mPendingRequests.clear();
+        }
+
+        for (Request request : failed) {
+            request.mCallback.onSendComplete(false);
+            onSendFinished();
+        }
+    }
+
+    /*
+     * Wakes up awaitIdle, and if this was the last thing using the connection, schedules the
+     * disconnect. release() can't do that on its own when sends are still in flight at the time,
+     * and without this the connection would then stay open for good.
+     */
+    private synchronized void onSendFinished() {
+        if (mUsage.sendFinished()) {
+            scheduleIdleDisconnect();
+        }
+        notifyAll();
+    }
+
+    /* Must be called holding the lock */
+    private void scheduleIdleDisconnect() {
+        mHandler.removeCallbacks(mIdleDisconnect);
+        mHandler.postDelayed(mIdleDisconnect, IDLE_DISCONNECT_MILLIS);
+    }
+
+    private abstract static class Request {
+        final String mPath;
+        final SendCallback mCallback;
+
+        Request(String path, SendCallback callback) {
+            mPath = path;
+            mCallback = callback;
+        }
+
+        abstract PendingResult<? extends Result> execute(GoogleApiClient client);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.wear;
+
+/**
+ * Keeps count of what is using {@link WearConnectionManager}'s connection: the callers holding
+ * it, and the sends that are queued or in flight. The connection may only be disconnected once
+ * both have dropped to zero, and whichever drops to zero last is the one that says so.
+ * <p>
+ * This isn't thread safe. WearConnectionManager only touches it while holding its own lock.
+ */
+final class WearConnectionUsage {
+
+    private int mRefCount;
+
+    /* Sends waiting for the client to connect, plus sends whose results haven't come back */
+    private int mSendCount;
+
+    void acquire() {
+        mRefCount++;
+    }
+
+    /**
+     * @return true if the connection is now unused and should be scheduled to disconnect
+     */
+    boolean release() {
+        if (mRefCount == 0) {
+            throw new IllegalStateException("release() called without a matching acquire()");
+        }
+        mRefCount--;
+        return isUnused();
+    }
+
+    void sendStarted() {
+        mSendCount++;
+    }
+
+    /**
+     * Called when a send succeeds, fails or is superseded.
+     *
+     * @return true if the connection is now unused and should be scheduled to disconnect
+     */
+    boolean sendFinished() {
+        if (mSendCount == 0) {
+            throw new IllegalStateException("sendFinished() called without a matching send");
+        }
+        mSendCount--;
+        return isUnused();
+    }
+
+    /**
+     * @return true if no sends are queued or in flight
+     */
+    boolean isIdle() {
+        return mSendCount == 0;
+    }
+
+    /**
+     * @return true if nobody holds the connection and no sends are queued or in flight
+     */
+    boolean isUnused() {
+        return mRefCount == 0 && mSendCount == 0;
+    }
+}
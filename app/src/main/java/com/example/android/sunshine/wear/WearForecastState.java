@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.wear;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Remembers which forecast days have been published to the watch, and the hash of the payload
+ * that was published for each of them. WearIntentService diffs the current forecast against this
+ * to work out which days need to be sent and which need to be deleted.
+ * <p>
+ * This is kept in its own SharedPreferences file rather than in SunshinePreferences because the
+ * keys are dates, and the set of them changes every day.
+ */
+final class WearForecastState {
+
+    private static final String PREFS_NAME = "wear_forecast_state";
+
+    private WearForecastState() {
+    }
+
+    private static SharedPreferences getPreferences(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * @param context Used to access SharedPreferences
+     * @return The payload hash of every day currently published to the watch, keyed by date
+     */
+    static Map<Long, Integer> getPublishedDays(Context context) {
+        Map<String, ?> stored = getPreferences(context).getAll();
+        Map<Long, Integer> publishedDays = new HashMap<>(stored.size());
+
+        for (Map.Entry<String, ?> entry : stored.entrySet()) {
+            if (entry.getValue() instanceof Integer) {
+                publishedDays.put(Long.valueOf(entry.getKey()), (Integer) entry.getValue());
+            }
+        }
+        return publishedDays;
+    }
+
+    /**
+     * Records that a day's payload made it into the Data Layer.
+     */
+    static void markDayPublished(Context context, long date, int payloadHash) {
+        getPreferences(context).edit().putInt(String.valueOf(date), payloadHash).apply();
+    }
+
+    /**
+     * Records that a day was deleted from the Data Layer.
+     */
+    static void markDayDeleted(Context context, long date) {
+        getPreferences(context).edit().remove(String.valueOf(date)).apply();
+    }
+}
@@ -3,45 +3,55 @@ package com.example.android.sunshine.wear;
 import android.app.IntentService;
 import android.content.Intent;
 import android.database.Cursor;
-import android.os.Bundle;
-import android.support.annotation.NonNull;
+import android.net.Uri;
 import android.support.annotation.Nullable;
 import android.util.Log;
 
+import com.example.android.sunshine.BuildConfig;
+import com.example.android.sunshine.data.SunshinePreferences;
 import com.example.android.sunshine.data.WeatherContract;
-import com.example.android.sunshine.utilities.SunshineWeatherUtils;
-import com.google.android.gms.common.ConnectionResult;
-import com.google.android.gms.common.api.GoogleApiClient;
-import com.google.android.gms.common.api.ResultCallback;
-import com.google.android.gms.wearable.DataApi;
+import com.example.android.sunshine.shared.ForecastDataset;
+import com.example.android.sunshine.shared.WeatherPayload;
+import com.google.android.gms.wearable.DataMap;
 import com.google.android.gms.wearable.PutDataMapRequest;
 import com.google.android.gms.wearable.PutDataRequest;
-import com.google.android.gms.wearable.Wearable;
 
-public class WearIntentService extends IntentService implements GoogleApiClient.ConnectionCallbacks, GoogleApiClient.OnConnectionFailedListener {
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
-    private GoogleApiClient mGoogleApiClient;
+public class WearIntentService extends IntentService {
 
-    private static final String TAG = WearIntentService.class.getSimpleName();
+    /*
+     * Set to true to send the weather even if it looks identical to what we sent last time. Used
+     * when the watch asks for the weather itself.
+     */
+    public static final String EXTRA_FORCE = "force";
+
+    /*
+     * How long onHandleIntent waits for its sends to complete. This is longer than the connection
+     * manager's connect timeout, so normally we only give up here if the Data Layer itself stalls.
+     */
+    private static final long SEND_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(20);
 
-    private static final String WEATHER_PATH = "/sunshine-weather";
+    private WearConnectionManager mConnection;
 
-    private static final String KEY_WEATHER_ID = "weather-id";
-    private static final String KEY_MAX_TEMP = "max-temp";
-    private static final String KEY_MIN_TEMP = "min-temp";
+    private static final String TAG = WearIntentService.class.getSimpleName();
 
     private final String[] PROJECTION = {
+            WeatherContract.WeatherEntry.COLUMN_DATE,
             WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
             WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
             WeatherContract.WeatherEntry.COLUMN_MIN_TEMP
     };
 
-    private static final int INDEX_WEATHER_ID = 0;
-    private static final int INDEX_MAX_TEMP = 1;
-    private static final int INDEX_MIN_TEMP = 2;
-    private int mWeatherId;
-    private String mHighTemp;
-    private String mLowTemp;
+    private static final int INDEX_DATE = 0;
+    private static final int INDEX_WEATHER_ID = 1;
+    private static final int INDEX_MAX_TEMP = 2;
+    private static final int INDEX_MIN_TEMP = 3;
 
     public WearIntentService(final String name) {
         super(name);
@@ -54,65 +64,224 @@ public class WearIntentService extends IntentService implements GoogleApiClient.
 
     @Override
     protected void onHandleIntent(@Nullable final Intent intent) {
-        String sortOrder = WeatherContract.WeatherEntry.COLUMN_DATE + " ASC";
-        String selection = WeatherContract.WeatherEntry.getSqlSelectForTodayOnwards();
-        Cursor cursor = getContentResolver().query(WeatherContract.WeatherEntry.CONTENT_URI,
-                PROJECTION, selection, null, sortOrder);
+        String sortOrder = WeatherContract.WeatherEntry.COLUMN_EPOCH_DAY + " ASC";
+        Cursor cursor = getContentResolver().query(WeatherContract.WeatherEntry.UPCOMING_URI,
+                PROJECTION, null, null, sortOrder);
 
-        if (cursor == null || cursor.getCount() == 0) {
+        if (cursor == null) {
             return;
         }
-        cursor.moveToFirst();
-        mWeatherId = cursor.getInt(INDEX_WEATHER_ID);
-        double maxTemp = cursor.getDouble(INDEX_MAX_TEMP);
-        double mintTemp = cursor.getDouble(INDEX_MIN_TEMP);
-        mHighTemp = SunshineWeatherUtils.formatTemperature(getApplicationContext(), maxTemp);
-        mLowTemp = SunshineWeatherUtils.formatTemperature(getApplicationContext(), mintTemp);
-        cursor.close();
-
-        if (mGoogleApiClient == null) {
-            mGoogleApiClient = new GoogleApiClient.Builder(this)
-                    .addApi(Wearable.API)
-                    .addConnectionCallbacks(this)
-                    .addOnConnectionFailedListener(this)
-                    .build();
-            mGoogleApiClient.connect();
+
+        boolean force = intent != null && intent.getBooleanExtra(EXTRA_FORCE, false);
+        ForecastDiff diff;
+        try {
+            diff = diffForecast(cursor, force);
+        } finally {
+            cursor.close();
         }
 
+        /*
+         * If the watch already has exactly this weather, there's no need to connect to Google
+         * Play services or to touch the Data Layer at all.
+         */
+        if (diff == null || diff.isEmpty()) {
+            if (BuildConfig.DEBUG) {
+                Log.d(TAG, "Watch is up to date, not sending");
+            }
+            return;
+        }
 
+        /*
+         * The connection is shared with every other push in this process and stays open for a
+         * little while after we release it. We wait here for our sends to finish so that the
+         * service isn't destroyed with results still outstanding.
+         */
+        mConnection = WearConnectionManager.getInstance(this);
+        mConnection.acquire();
+        try {
+            sendWeatherData(diff);
+            if (!mConnection.awaitIdle(SEND_TIMEOUT_MILLIS)) {
+                Log.d(TAG, "Timed out waiting for the watch to be updated");
+            }
+        } finally {
+            mConnection.release();
+        }
     }
 
-    @Override
-    public void onConnected(@Nullable final Bundle bundle) {
-        sendWeatherData();
-    }
+    /*
+     * Encodes every day in the cursor for the watch and works out which of them the watch
+     * doesn't have yet. Returns null if there is no weather at all.
+     */
+    private ForecastDiff diffForecast(Cursor cursor, boolean force) {
+        if (!cursor.moveToFirst()) {
+            return null;
+        }
 
-    @Override
-    public void onConnectionSuspended(final int i) {
-        Log.d(TAG, "Connection Suspended");
+        boolean isMetric = SunshinePreferences.isMetric(getApplicationContext());
+        Map<Long, Integer> publishedDays = WearForecastState.getPublishedDays(this);
+
+        byte[] todayPayload = null;
+        long[] dates = new long[cursor.getCount()];
+        Map<Long, byte[]> changedDays = new LinkedHashMap<>();
+        do {
+            long date = cursor.getLong(INDEX_DATE);
+            WeatherPayload payload = new WeatherPayload(
+                    cursor.getInt(INDEX_WEATHER_ID),
+                    cursor.getDouble(INDEX_MAX_TEMP),
+                    cursor.getDouble(INDEX_MIN_TEMP),
+                    isMetric,
+                    date);
+            byte[] encoded = payload.encode();
+
+            if (cursor.isFirst()) {
+                todayPayload = encoded;
+            }
+            dates[cursor.getPosition()] = date;
+
+            /* Remove the day as we go, so that whatever is left over is no longer in the window */
+            Integer publishedHash = publishedDays.remove(date);
+            if (force || publishedHash == null || publishedHash != Arrays.hashCode(encoded)) {
+                changedDays.put(date, encoded);
+            }
+        } while (cursor.moveToNext());
+
+        int todayPayloadHash = Arrays.hashCode(todayPayload);
+        boolean todayChanged = force
+                || todayPayloadHash != SunshinePreferences.getLastWearPayloadHash(this);
+        return new ForecastDiff(todayPayload, todayPayloadHash, todayChanged, dates, changedDays,
+                new ArrayList<>(publishedDays.keySet()));
     }
 
-    @Override
-    public void onConnectionFailed(@NonNull final ConnectionResult connectionResult) {
-        Log.d(TAG, "Connection Failed reason:" + connectionResult.getErrorCode());
+    private void sendWeatherData(ForecastDiff diff) {
+        if (diff.mTodayChanged) {
+            sendToday(diff.mTodayPayload, diff.mTodayPayloadHash);
+        }
+
+        for (Map.Entry<Long, byte[]> day : diff.mChangedDays.entrySet()) {
+            sendDay(day.getKey(), day.getValue());
+        }
+
+        for (long staleDate : diff.mStaleDates) {
+            deleteDay(staleDate);
+        }
+
+        /*
+         * The index only changes when the window moves. When it hasn't, this put carries
+         * identical data and the Data Layer doesn't sync it.
+         */
+        PutDataMapRequest indexRequest = PutDataMapRequest.create(ForecastDataset.INDEX_PATH);
+        DataMap index = indexRequest.getDataMap();
+        index.putInt(ForecastDataset.KEY_VERSION, ForecastDataset.VERSION);
+        index.putLongArray(ForecastDataset.KEY_DATES, diff.mDates);
+        mConnection.putDataItem(indexRequest.asPutDataRequest(),
+                new WearConnectionManager.SendCallback() {
+                    @Override
+                    public void onSendComplete(boolean success) {
+                        if (!success) {
+                            Log.d(TAG, "Sending forecast index failed");
+                        }
+                    }
+                });
     }
 
-    private void sendWeatherData() {
-        PutDataMapRequest putDataMapRequest = PutDataMapRequest.create(WEATHER_PATH);
-        putDataMapRequest.getDataMap().putLong("dummyData", System.currentTimeMillis()); //
-        putDataMapRequest.getDataMap().putInt(KEY_WEATHER_ID, mWeatherId);
-        putDataMapRequest.getDataMap().putString(KEY_MAX_TEMP, mHighTemp);
-        putDataMapRequest.getDataMap().putString(KEY_MIN_TEMP, mLowTemp);
+    private void sendToday(byte[] payload, final int payloadHash) {
+        /*
+         * The payload is the only thing in the DataItem. If the weather hasn't changed, the bytes
+         * are identical and the Data Layer doesn't sync anything or wake the watch up.
+         */
+        PutDataMapRequest putDataMapRequest = PutDataMapRequest.create(WeatherPayload.DATA_PATH);
+        putDataMapRequest.getDataMap().putByteArray(WeatherPayload.KEY_PAYLOAD, payload);
         PutDataRequest putDataRequest = putDataMapRequest.asPutDataRequest();
-        Wearable.DataApi.putDataItem(mGoogleApiClient, putDataRequest).setResultCallback(new ResultCallback<DataApi.DataItemResult>() {
+        mConnection.putDataItem(putDataRequest, new WearConnectionManager.SendCallback() {
             @Override
-            public void onResult(@NonNull final DataApi.DataItemResult dataItemResult) {
-                if (dataItemResult.getStatus().isSuccess()) {
-                    Log.d(TAG, "Sent");
+            public void onSendComplete(boolean success) {
+                if (success) {
+                    if (BuildConfig.DEBUG) {
+                        Log.d(TAG, "Sent");
+                    }
+                    /* Only remember the payload once it has actually made it into the Data Layer */
+                    SunshinePreferences.saveLastWearPayloadHash(getApplicationContext(), payloadHash);
                 } else {
                     Log.d(TAG, "Sending failed");
                 }
             }
         });
     }
+
+    private void sendDay(final long date, byte[] payload) {
+        PutDataMapRequest putDataMapRequest =
+                PutDataMapRequest.create(ForecastDataset.getDayPath(date));
+        putDataMapRequest.getDataMap().putByteArray(WeatherPayload.KEY_PAYLOAD, payload);
+        final int payloadHash = Arrays.hashCode(payload);
+        mConnection.putDataItem(putDataMapRequest.asPutDataRequest(),
+                new WearConnectionManager.SendCallback() {
+                    @Override
+                    public void onSendComplete(boolean success) {
+                        if (success) {
+                            WearForecastState.markDayPublished(
+                                    getApplicationContext(), date, payloadHash);
+                        } else {
+                            Log.d(TAG, "Sending day " + date + " failed");
+                        }
+                    }
+                });
+    }
+
+    private void deleteDay(final long date) {
+        Uri uri = new Uri.Builder()
+                .scheme(PutDataRequest.WEAR_URI_SCHEME)
+                .path(ForecastDataset.getDayPath(date))
+                .build();
+        mConnection.deleteDataItems(uri,
+                new WearConnectionManager.SendCallback() {
+                    @Override
+                    public void onSendComplete(boolean success) {
+                        if (success) {
+                            WearForecastState.markDayDeleted(getApplicationContext(), date);
+                        } else {
+                            Log.d(TAG, "Deleting day " + date + " failed");
+                        }
+                    }
+                });
+    }
+
+    /**
+     * What one intent has to send to the watch. It is built from the weather table in
+     * {@link #diffForecast(Cursor, boolean)} and only lives as long as onHandleIntent.
+     */
+    private static final class ForecastDiff {
+
+        /*
+         * Today's weather, encoded for the watch. Temperatures are sent in Celsius along with the
+         * user's preferred units, and the watch formats them itself.
+         */
+        final byte[] mTodayPayload;
+        final int mTodayPayloadHash;
+        final boolean mTodayChanged;
+
+        /*
+         * The forecast window, diffed against what the watch already has. Only the days in
+         * mChangedDays are put, and only the days in mStaleDates are deleted.
+         */
+        final long[] mDates;
+        final Map<Long, byte[]> mChangedDays;
+        final List<Long> mStaleDates;
+
+        ForecastDiff(byte[] todayPayload, int todayPayloadHash, boolean todayChanged,
+                     long[] dates, Map<Long, byte[]> changedDays, List<Long> staleDates) {
+            mTodayPayload = todayPayload;
+            mTodayPayloadHash = todayPayloadHash;
+            mTodayChanged = todayChanged;
+            mDates = dates;
+            mChangedDays = changedDays;
+            mStaleDates = staleDates;
+        }
+
+        /**
+         * @return true if the watch already has all of this weather
+         */
+        boolean isEmpty() {
+            return !mTodayChanged && mChangedDays.isEmpty() && mStaleDates.isEmpty();
+        }
+    }
 }
@@ -1,6 +1,5 @@
 package com.example.android.sunshine.wear;
 
-import android.content.Intent;
 import android.util.Log;
 
 import com.example.android.sunshine.MainActivity;
@@ -18,8 +17,8 @@ public class WearListenerService extends WearableListenerService {
         super.onMessageReceived(messageEvent);
         Log.d(TAG, "onMessageReceived: ");
         if (messageEvent.getPath().equals(SUNSHINE_WEATHER_PATH)) {
-            Intent i = new Intent (WearListenerService.this, WearIntentService.class);
-            startService(i);
+            /* The watch is asking because it doesn't have the weather, so bypass the push gate */
+            WearSyncUtils.startImmediateWearSync(WearListenerService.this);
 
         }
     }
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.wear;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+
+/**
+ * Entry points for pushing today's weather to a connected watch.
+ * <p>
+ * The forecast loader can deliver several results in quick succession (a sync inserting new data,
+ * the Activity being recreated), and a units change asks for a push of its own. Each of those used
+ * to start WearIntentService. {@link #requestWearSync(Context)} coalesces such bursts into a
+ * single push.
+ * WearIntentService then compares what it is about to send against what it sent last and skips
+ * the Data Layer entirely when nothing changed.
+ */
+public final class WearSyncUtils {
+
+    /* How long to wait for more requests before actually pushing to the watch */
+    private static final long WEAR_SYNC_DEBOUNCE_MILLIS = 500;
+
+    private static final Handler sHandler = new Handler(Looper.getMainLooper());
+
+    private static Context sAppContext;
+
+    private static final Runnable sStartWearSync = new Runnable() {
+        @Override
+        public void run() {
+            sAppContext.startService(new Intent(sAppContext, WearIntentService.class));
+        }
+    };
+
+    private WearSyncUtils() {
+    }
+
+    /**
+     * Asks for today's weather to be pushed to the watch. Requests made within
+     * {@link #WEAR_SYNC_DEBOUNCE_MILLIS} of each other result in one push, and the push is skipped
+     * altogether if the watch already has the same weather. Must be called on the main thread.
+     *
+     * @param context Context used to start WearIntentService
+     */
+    public static void requestWearSync(@NonNull final Context context) {
+        sAppContext = context.getApplicationContext();
+        sHandler.removeCallbacks(sStartWearSync);
+        sHandler.postDelayed(sStartWearSync, WEAR_SYNC_DEBOUNCE_MILLIS);
+    }
+
+    /**
+     * Pushes today's weather to the watch right away, even if we think the watch already has it.
+     * This is used when the watch explicitly asks for the weather, since in that case it may have
+     * lost the data we sent it earlier.
+     *
+     * @param context Context used to start WearIntentService
+     */
+    public static void startImmediateWearSync(@NonNull final Context context) {
+        Intent intent = new Intent(context, WearIntentService.class);
+        intent.putExtra(WearIntentService.EXTRA_FORCE, true);
+        context.startService(intent);
+    }
+}
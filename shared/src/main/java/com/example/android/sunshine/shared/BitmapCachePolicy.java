@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+/**
+ * The parts of a decoded-art cache that don't need Android: how entries are keyed, how much of
+ * the budget each one uses, and how much to downsample while decoding. The phone and the watch
+ * each keep a BitmapCache of their own, and both go through here so that they can't drift apart.
+ */
+public final class BitmapCachePolicy {
+
+    private BitmapCachePolicy() {
+    }
+
+    /**
+     * @param resourceId The drawable that was decoded
+     * @param width      Width it was decoded to, in pixels
+     * @param height     Height it was decoded to, in pixels
+     * @param configName Name of the Bitmap.Config it was decoded to
+     * @return The key the decoded Bitmap is cached under
+     */
+    public static String getKey(int resourceId, int width, int height, String configName) {
+        return resourceId + ":" + width + "x" + height + ":" + configName;
+    }
+
+    /**
+     * Works out how much of the cache's budget a Bitmap uses. Callers pass getRowBytes and
+     * getHeight rather than getByteCount, which isn't available on the phone until API 12.
+     *
+     * @param rowBytes Bytes between the start of one row of pixels and the next
+     * @param height   Height in pixels
+     * @return The size of the Bitmap's pixels in bytes
+     */
+    public static int getByteCount(int rowBytes, int height) {
+        return rowBytes * height;
+    }
+
+    /**
+     * Returns the largest power of two that keeps the decoded image at least as big as the
+     * target size in both dimensions.
+     */
+    public static int calculateInSampleSize(int sourceWidth, int sourceHeight,
+                                            int targetWidth, int targetHeight) {
+        int inSampleSize = 1;
+        while (sourceWidth / (inSampleSize * 2) >= targetWidth
+                && sourceHeight / (inSampleSize * 2) >= targetHeight) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+}
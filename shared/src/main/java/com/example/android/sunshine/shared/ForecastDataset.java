@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Describes how the phone publishes the whole forecast window to the watch.
+ * <p>
+ * Each day lives in its own DataItem at {@link #getDayPath(long)}, holding an encoded
+ * {@link WeatherPayload}. Because every day is a separate DataItem, a sync only transfers the days
+ * whose weather actually changed, and days that fall out of the window are deleted individually.
+ * <p>
+ * A single index DataItem at {@link #INDEX_PATH} lists the dates currently in the window along
+ * with the {@link #VERSION} of this layout. The watch ignores datasets with a version it doesn't
+ * understand rather than guessing at their contents.
+ */
+public final class ForecastDataset {
+
+    /* Version of the dataset layout. Bump this if the paths or index keys change. */
+    public static final int VERSION = 1;
+
+    /* DataItem path of the index */
+    public static final String INDEX_PATH = "/sunshine-forecast";
+
+    /* Prefix of the DataItem path of each day. The normalized date is appended to it. */
+    public static final String DAY_PATH_PREFIX = INDEX_PATH + "/day/";
+
+    /* DataMap key of the dataset version, stored in the index */
+    public static final String KEY_VERSION = "version";
+
+    /* DataMap key of the dates in the window, stored in the index as an ascending long[] */
+    public static final String KEY_DATES = "dates";
+
+    private static final long DAY_IN_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private ForecastDataset() {
+    }
+
+    /**
+     * @param date Normalized UTC date of the day
+     * @return The DataItem path the day is published at
+     */
+    public static String getDayPath(long date) {
+        return DAY_PATH_PREFIX + date;
+    }
+
+    /**
+     * Parses the date out of a path returned by {@link #getDayPath(long)}.
+     *
+     * @param path A DataItem path
+     * @return The normalized date of the day, or -1 if the path isn't a forecast day
+     */
+    public static long getDateFromDayPath(String path) {
+        if (path == null || !path.startsWith(DAY_PATH_PREFIX)) {
+            return -1;
+        }
+
+        try {
+            return Long.parseLong(path.substring(DAY_PATH_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns today's date normalized the same way the phone stores it: the local date, expressed
+     * as midnight UTC of that date. This lets the watch pick today's entry out of the forecast
+     * without asking the phone, even after midnight has passed.
+     *
+     * @param nowMillis Current time in milliseconds since the epoch
+     * @param timeZone  The device's current time zone
+     * @return Today's normalized date
+     */
+    public static long getNormalizedDateForToday(long nowMillis, TimeZone timeZone) {
+        long localMillis = nowMillis + timeZone.getOffset(nowMillis);
+        return (localMillis / DAY_IN_MILLIS) * DAY_IN_MILLIS;
+    }
+}
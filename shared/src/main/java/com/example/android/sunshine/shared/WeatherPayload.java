@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * The weather the phone sends to the watch, along with its compact binary encoding. The phone
+ * encodes a WeatherPayload into the DataItem at {@link #DATA_PATH} and the watch decodes it and
+ * formats the temperatures itself, so no preformatted Strings travel over Bluetooth.
+ * <p>
+ * Version 1 of the encoding is 16 bytes, big-endian:
+ * <pre>
+ *   byte   version          (1)
+ *   byte   flags            (bit 0 set if the user prefers metric units)
+ *   short  weather ID       (as returned by Open Weather Map)
+ *   short  high             (tenths of a degree Celsius)
+ *   short  low              (tenths of a degree Celsius)
+ *   long   date             (normalized UTC date in milliseconds)
+ * </pre>
+ * The version byte comes first so that a newer phone can change the layout without an older
+ * watch misreading it; {@link #decode} rejects versions it doesn't know.
+ */
+public final class WeatherPayload {
+
+    /* DataItem path the phone publishes the payload at */
+    public static final String DATA_PATH = "/sunshine-weather";
+
+    /* DataMap key the encoded payload is stored under */
+    public static final String KEY_PAYLOAD = "payload";
+
+    static final byte VERSION_1 = 1;
+
+    static final int ENCODED_SIZE_V1 = 16;
+
+    private static final int FLAG_METRIC = 1;
+
+    /* Temperatures are stored as fixed-point shorts with one decimal place */
+    private static final float FIXED_POINT_SCALE = 10f;
+
+    private final int mWeatherId;
+    private final short mHighTenths;
+    private final short mLowTenths;
+    private final boolean mMetric;
+    private final long mDate;
+
+    /**
+     * @param weatherId     Weather condition ID as returned by Open Weather Map
+     * @param highInCelsius High temperature in degrees Celsius
+     * @param lowInCelsius  Low temperature in degrees Celsius
+     * @param metric        Whether the user prefers metric units
+     * @param date          Normalized UTC date of the forecast in milliseconds
+     */
+    public WeatherPayload(int weatherId, double highInCelsius, double lowInCelsius,
+                          boolean metric, long date) {
+        this(weatherId, toFixedPoint(highInCelsius), toFixedPoint(lowInCelsius), metric, date);
+    }
+
+    private WeatherPayload(int weatherId, short highTenths, short lowTenths, boolean metric,
+                           long date) {
+        mWeatherId = weatherId;
+        mHighTenths = highTenths;
+        mLowTenths = lowTenths;
+        mMetric = metric;
+        mDate = date;
+    }
+
+    public int getWeatherId() {
+        return mWeatherId;
+    }
+
+    public float getHighInCelsius() {
+        return mHighTenths / FIXED_POINT_SCALE;
+    }
+
+    public float getLowInCelsius() {
+        return mLowTenths / FIXED_POINT_SCALE;
+    }
+
+    public boolean isMetric() {
+        return mMetric;
+    }
+
+    public long getDate() {
+        return mDate;
+    }
+
+    /**
+     * @return The high temperature in the units the user prefers
+     */
+    public float getHigh() {
+        return inPreferredUnits(getHighInCelsius());
+    }
+
+    /**
+     * @return The low temperature in the units the user prefers
+     */
+    public float getLow() {
+        return inPreferredUnits(getLowInCelsius());
+    }
+
+    private float inPreferredUnits(float temperatureInCelsius) {
+        if (mMetric) {
+            return temperatureInCelsius;
+        }
+        return (temperatureInCelsius * 1.8f) + 32;
+    }
+
+    /**
+     * @return This payload encoded with the current version of the format
+     */
+    public byte[] encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(ENCODED_SIZE_V1);
+        buffer.put(VERSION_1);
+        buffer.put((byte) (mMetric ? FLAG_METRIC : 0));
+        buffer.putShort((short) mWeatherId);
+        buffer.putShort(mHighTenths);
+        buffer.putShort(mLowTenths);
+        buffer.putLong(mDate);
+        return buffer.array();
+    }
+
+    /**
+     * Decodes a payload produced by {@link #encode()}.
+     *
+     * @param bytes The encoded payload
+     * @return The decoded payload
+     * @throws IllegalArgumentException if the bytes are truncated or use an unknown version
+     */
+    public static WeatherPayload decode(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            throw new IllegalArgumentException("Empty weather payload");
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        byte version = buffer.get();
+        if (version != VERSION_1) {
+            throw new IllegalArgumentException("Unknown weather payload version: " + version);
+        }
+
+        try {
+            byte flags = buffer.get();
+            int weatherId = buffer.getShort() & 0xFFFF;
+            short highTenths = buffer.getShort();
+            short lowTenths = buffer.getShort();
+            long date = buffer.getLong();
+            return new WeatherPayload(weatherId, highTenths, lowTenths,
+                    (flags & FLAG_METRIC) != 0, date);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated weather payload", e);
+        }
+    }
+
+    private static short toFixedPoint(double temperatureInCelsius) {
+        long tenths = Math.round(temperatureInCelsius * FIXED_POINT_SCALE);
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, tenths));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof WeatherPayload)) return false;
+
+        WeatherPayload that = (WeatherPayload) o;
+        return mWeatherId == that.mWeatherId
+                && mHighTenths == that.mHighTenths
+                && mLowTenths == that.mLowTenths
+                && mMetric == that.mMetric
+                && mDate == that.mDate;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = mWeatherId;
+        result = 31 * result + mHighTenths;
+        result = 31 * result + mLowTenths;
+        result = 31 * result + (mMetric ? 1 : 0);
+        result = 31 * result + (int) (mDate ^ (mDate >>> 32));
+        return result;
+    }
+}
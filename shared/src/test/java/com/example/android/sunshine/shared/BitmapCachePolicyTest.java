@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+
+public class BitmapCachePolicyTest {
+
+    /**
+     * The same art decoded at another size or config is a different entry.
+     */
+    @Test
+    public void testKeyIncludesSizeAndConfig() {
+        String key = BitmapCachePolicy.getKey(42, 64, 48, "ARGB_8888");
+        assertEquals("42:64x48:ARGB_8888", key);
+        assertFalse(key.equals(BitmapCachePolicy.getKey(42, 48, 64, "ARGB_8888")));
+        assertFalse(key.equals(BitmapCachePolicy.getKey(42, 64, 48, "RGB_565")));
+    }
+
+    @Test
+    public void testByteCount() {
+        /* A 64x48 ARGB_8888 bitmap has four bytes per pixel */
+        assertEquals(64 * 4 * 48, BitmapCachePolicy.getByteCount(64 * 4, 48));
+    }
+
+    /**
+     * Downsampling stops before either dimension would drop below the target size.
+     */
+    @Test
+    public void testInSampleSize() {
+        assertEquals(1, BitmapCachePolicy.calculateInSampleSize(100, 100, 100, 100));
+        assertEquals(1, BitmapCachePolicy.calculateInSampleSize(50, 50, 100, 100));
+        assertEquals(2, BitmapCachePolicy.calculateInSampleSize(200, 200, 100, 100));
+        assertEquals(4, BitmapCachePolicy.calculateInSampleSize(512, 512, 100, 100));
+        assertEquals(2, BitmapCachePolicy.calculateInSampleSize(512, 256, 100, 100));
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import org.junit.Test;
+
+import java.util.TimeZone;
+
+import static junit.framework.Assert.assertEquals;
+
+public class ForecastDatasetTest {
+
+    /* 1475366400000 is October 2, 2016 at midnight UTC */
+    private static final long DATE = 1475366400000L;
+
+    @Test
+    public void testDayPathRoundTrip() {
+        String path = ForecastDataset.getDayPath(DATE);
+        assertEquals("Date parsed from day path does not match",
+                DATE, ForecastDataset.getDateFromDayPath(path));
+    }
+
+    /**
+     * The index and the single-day weather item share a prefix with day paths, so make sure that
+     * neither of them is mistaken for a day.
+     */
+    @Test
+    public void testNonDayPathsAreRejected() {
+        assertEquals(-1, ForecastDataset.getDateFromDayPath(ForecastDataset.INDEX_PATH));
+        assertEquals(-1, ForecastDataset.getDateFromDayPath(WeatherPayload.DATA_PATH));
+        assertEquals(-1, ForecastDataset.getDateFromDayPath(
+                ForecastDataset.DAY_PATH_PREFIX + "tomorrow"));
+        assertEquals(-1, ForecastDataset.getDateFromDayPath(null));
+    }
+
+    /**
+     * 11pm on October 1st in Los Angeles is already October 2nd in UTC, but the phone stores the
+     * weather under the local date, so today should still be October 1st.
+     */
+    @Test
+    public void testNormalizedDateUsesLocalDate() {
+        TimeZone losAngeles = TimeZone.getTimeZone("America/Los_Angeles");
+        long elevenPmOctoberFirstLocal = DATE + (6 * 60 * 60 * 1000);
+        long octoberFirst = DATE - (24 * 60 * 60 * 1000);
+
+        assertEquals(octoberFirst,
+                ForecastDataset.getNormalizedDateForToday(elevenPmOctoberFirstLocal, losAngeles));
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+public class WeatherPayloadTest {
+
+    /* 1475366400000 is October 2, 2016 at midnight UTC */
+    private static final long DATE = 1475366400000L;
+
+    private static final float DELTA = 0.001f;
+
+    /**
+     * Encodes a payload and decodes it again, making sure that every field survives the trip.
+     */
+    @Test
+    public void testRoundTrip() {
+        WeatherPayload original = new WeatherPayload(511, 21.34, -3.56, true, DATE);
+
+        byte[] encoded = original.encode();
+        assertEquals("Encoded payload is not the expected size",
+                WeatherPayload.ENCODED_SIZE_V1, encoded.length);
+
+        WeatherPayload decoded = WeatherPayload.decode(encoded);
+        assertEquals("Decoded payload does not equal the original", original, decoded);
+        assertEquals(511, decoded.getWeatherId());
+        assertEquals(21.3f, decoded.getHighInCelsius(), DELTA);
+        assertEquals(-3.6f, decoded.getLowInCelsius(), DELTA);
+        assertTrue(decoded.isMetric());
+        assertEquals(DATE, decoded.getDate());
+    }
+
+    /**
+     * Weather IDs go up to 962 today, but the ID is written as an unsigned short so that any
+     * value up to 65535 comes back the same.
+     */
+    @Test
+    public void testLargeWeatherIdRoundTrip() {
+        WeatherPayload original = new WeatherPayload(60000, 0, 0, true, DATE);
+        assertEquals(60000, WeatherPayload.decode(original.encode()).getWeatherId());
+    }
+
+    /**
+     * The watch formats temperatures itself, so the payload needs to convert to the user's
+     * preferred units correctly.
+     */
+    @Test
+    public void testImperialConversion() {
+        WeatherPayload payload = WeatherPayload.decode(
+                new WeatherPayload(800, 100, 0, false, DATE).encode());
+
+        assertFalse(payload.isMetric());
+        assertEquals(212f, payload.getHigh(), DELTA);
+        assertEquals(32f, payload.getLow(), DELTA);
+    }
+
+    /**
+     * Encoding the same weather twice must produce the same bytes, otherwise the Data Layer
+     * would see every sync as a change.
+     */
+    @Test
+    public void testEncodingIsDeterministic() {
+        byte[] first = new WeatherPayload(800, 12.5, 4, true, DATE).encode();
+        byte[] second = new WeatherPayload(800, 12.5, 4, true, DATE).encode();
+        assertTrue("Identical payloads encoded differently", Arrays.equals(first, second));
+    }
+
+    @Test
+    public void testUnknownVersionIsRejected() {
+        byte[] encoded = new WeatherPayload(800, 12.5, 4, true, DATE).encode();
+        encoded[0] = 99;
+
+        try {
+            WeatherPayload.decode(encoded);
+            fail("Decoding a payload with an unknown version should throw");
+        } catch (IllegalArgumentException expected) {
+            /* Expected */
+        }
+    }
+
+    @Test
+    public void testTruncatedPayloadIsRejected() {
+        byte[] encoded = new WeatherPayload(800, 12.5, 4, true, DATE).encode();
+
+        try {
+            WeatherPayload.decode(Arrays.copyOf(encoded, encoded.length - 1));
+            fail("Decoding a truncated payload should throw");
+        } catch (IllegalArgumentException expected) {
+            /* Expected */
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Runs a few typical stretches of a watch face's day through {@link WatchFaceBenchmark} and logs
+ * the results, so that render regressions show up in the test output. Filter logcat on this
+ * class's name to see the reports. This runs on any emulator or device, no watch required.
+ * <p>
+ * Frame times depend on the device, so they are only logged. What we do check is the number of
+ * frames drawn, and that frames where only the time changed allocate nothing, as
+ * {@link TestWatchFaceRendererAllocations} checks for the renderer alone. Those are both things
+ * the watch face controls.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestWatchFaceRenderBenchmark {
+
+    private static final String TAG = TestWatchFaceRenderBenchmark.class.getSimpleName();
+
+    /* 1475366400000 is October 2, 2016 at midnight UTC. We start at 10:00 that day. */
+    private static final long START_MILLIS = 1475366400000L + 10 * 60 * 60 * 1000L;
+
+    private static final int SECONDS_PER_MINUTE = 60;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    private WatchFaceBenchmark mBenchmark;
+    private Bitmap mIcon;
+
+    @Before
+    public void setUp() {
+        int size = mContext.getResources().getDisplayMetrics().widthPixels;
+        mBenchmark = new WatchFaceBenchmark(mContext.getResources(), size, true);
+        mIcon = Bitmap.createBitmap(40, 40, Bitmap.Config.ARGB_8888);
+    }
+
+    @After
+    public void tearDown() {
+        mBenchmark.release();
+        mIcon.recycle();
+    }
+
+    /**
+     * Ten interactive minutes, with the weather changing every couple of minutes and the user
+     * tapping now and then. Every second needs a frame, and so does every weather update.
+     * Taps never do.
+     */
+    @Test
+    public void testInteractiveWithWeatherUpdatesAndTaps() {
+        int minutes = 10;
+        int weatherUpdates = 0;
+        int taps = 0;
+
+        mBenchmark.weather(mIcon, "21°", "12°");
+        weatherUpdates++;
+        for (int minute = 0; minute < minutes; minute++) {
+            mBenchmark.tick(SECONDS_PER_MINUTE / 2).tap().tick(SECONDS_PER_MINUTE / 2);
+            taps++;
+            if (minute % 2 == 1) {
+                mBenchmark.weather(mIcon, (20 + minute) + "°", "12°");
+                weatherUpdates++;
+            }
+        }
+
+        WatchFaceBenchmark.Report report = mBenchmark.run(START_MILLIS);
+        Log.i(TAG, "Interactive: " + report);
+
+        assertEquals(minutes * SECONDS_PER_MINUTE + weatherUpdates, report.getFrameCount());
+        assertEquals(taps, report.getSkippedCount());
+        assertNoSteadyStateAllocations(report);
+    }
+
+    /**
+     * A watch that spends most of its time in ambient mode, waking up for a few seconds every
+     * five minutes. In ambient mode only a change of minute needs a frame.
+     */
+    @Test
+    public void testMostlyAmbient() {
+        int cycles = 6;
+        int interactiveSeconds = 5;
+
+        mBenchmark.getRenderer().setAmbientProperties(false, false);
+        mBenchmark.weather(mIcon, "21°", "12°");
+        for (int cycle = 0; cycle < cycles; cycle++) {
+            mBenchmark.ambient(true).tick(5 * SECONDS_PER_MINUTE);
+            mBenchmark.ambient(false).tick(interactiveSeconds);
+        }
+
+        WatchFaceBenchmark.Report report = mBenchmark.run(START_MILLIS);
+        Log.i(TAG, "Mostly ambient: " + report);
+
+        assertFramesPerAmbientMinute(report, cycles, interactiveSeconds);
+        assertNoSteadyStateAllocations(report);
+    }
+
+    /**
+     * The same day on a low-bit display with burn-in protection, which moves the ambient content
+     * every minute and uses its own weather glyph.
+     */
+    @Test
+    public void testMostlyAmbientLowBitBurnIn() {
+        int cycles = 6;
+        int interactiveSeconds = 5;
+
+        mBenchmark.getRenderer().setAmbientProperties(true, true);
+        mBenchmark.weather(mIcon, "21°", "12°");
+        for (int cycle = 0; cycle < cycles; cycle++) {
+            mBenchmark.ambient(true).tick(5 * SECONDS_PER_MINUTE);
+            mBenchmark.ambient(false).tick(interactiveSeconds);
+        }
+
+        WatchFaceBenchmark.Report report = mBenchmark.run(START_MILLIS);
+        Log.i(TAG, "Mostly ambient, low-bit with burn-in protection: " + report);
+
+        assertFramesPerAmbientMinute(report, cycles, interactiveSeconds);
+        assertNoSteadyStateAllocations(report);
+    }
+
+    private static void assertNoSteadyStateAllocations(WatchFaceBenchmark.Report report) {
+        assertEquals("Steady-state frames allocated "
+                        + report.getSteadyStateAllocationCount() + " objects",
+                0, report.getSteadyStateAllocationCount());
+    }
+
+    /*
+     * Each cycle draws a frame on entering ambient mode, about one per ambient minute, one on
+     * leaving it, and one per interactive second. The minutes don't line up exactly with the
+     * mode changes, so allow one extra frame per cycle.
+     */
+    private static void assertFramesPerAmbientMinute(WatchFaceBenchmark.Report report, int cycles,
+            int interactiveSeconds) {
+        int perCycle = 1 + 5 + 1 + interactiveSeconds;
+        int frames = report.getFrameCount();
+        assertTrue("Drew " + frames + " frames", frames >= cycles * (perCycle - 1));
+        assertTrue("Drew " + frames + " frames", frames <= 1 + cycles * (perCycle + 1));
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.TimeZone;
+
+import static junit.framework.Assert.assertEquals;
+
+/**
+ * Makes sure that drawing the watch face doesn't allocate once it has settled. The watch face is
+ * redrawn every second in interactive mode, so any garbage created while drawing adds up quickly
+ * and eventually causes GC pauses that show up as dropped frames.
+ * <p>
+ * Each test draws a few warm-up frames first. The first frame of a day is allowed to allocate,
+ * since that is when the date string is built. After that, we count allocations on this thread
+ * while drawing a few minutes' worth of frames and expect there to be none.
+ */
+@RunWith(AndroidJUnit4.class)
+@SuppressWarnings("deprecation")
+public class TestWatchFaceRendererAllocations {
+
+    /* 1475366400000 is October 2, 2016 at midnight UTC. We start drawing at 10:58:30 that day. */
+    private static final long START_MILLIS = 1475366400000L + ((10 * 60 + 58) * 60 + 30) * 1000L;
+
+    private static final int WARM_UP_FRAMES = 2;
+
+    /* Three minutes of frames, so that minutes and the hour roll over while we count */
+    private static final int MEASURED_FRAMES = 180;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    private WatchFaceRenderer mRenderer;
+    private Bitmap mBitmap;
+    private Canvas mCanvas;
+    private Rect mBounds;
+
+    @Before
+    public void setUp() {
+        int size = mContext.getResources().getDisplayMetrics().widthPixels;
+        mBitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        mCanvas = new Canvas(mBitmap);
+        mBounds = new Rect(0, 0, size, size);
+
+        mRenderer = new WatchFaceRenderer(mContext.getResources());
+        mRenderer.setRound(true);
+        mRenderer.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        Bitmap icon = Bitmap.createBitmap(40, 40, Bitmap.Config.ARGB_8888);
+        mRenderer.setTodaysWeather(icon, "21°", "12°");
+        for (int i = 0; i < WatchFaceRenderer.UPCOMING_DAY_COUNT; i++) {
+            mRenderer.setUpcomingDay(i, icon, "18°");
+        }
+        mRenderer.setUpcomingDayCount(WatchFaceRenderer.UPCOMING_DAY_COUNT);
+    }
+
+    @After
+    public void tearDown() {
+        Debug.stopAllocCounting();
+        mBitmap.recycle();
+    }
+
+    @Test
+    public void testInteractiveDrawDoesNotAllocate() {
+        mRenderer.setAmbient(false);
+        assertNoAllocationsWhileDrawing();
+    }
+
+    @Test
+    public void testAmbientDrawDoesNotAllocate() {
+        mRenderer.setAmbientProperties(false, false);
+        mRenderer.setAmbient(true);
+        assertNoAllocationsWhileDrawing();
+    }
+
+    /**
+     * The low-bit, burn-in protected profile moves the ambient content every minute, which must
+     * not allocate either.
+     */
+    @Test
+    public void testLowBitBurnInAmbientDrawDoesNotAllocate() {
+        mRenderer.setAmbientProperties(true, true);
+        mRenderer.setAmbient(true);
+        assertNoAllocationsWhileDrawing();
+    }
+
+    private void assertNoAllocationsWhileDrawing() {
+        long now = START_MILLIS;
+        for (int i = 0; i < WARM_UP_FRAMES; i++) {
+            mRenderer.draw(mCanvas, mBounds, now);
+            now += 1000;
+        }
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+
+        for (int i = 0; i < MEASURED_FRAMES; i++) {
+            mRenderer.draw(mCanvas, mBounds, now);
+            now += 1000;
+        }
+
+        Debug.stopAllocCounting();
+        int allocations = Debug.getThreadAllocCount();
+
+        assertEquals("Drawing the watch face allocated " + allocations + " objects over "
+                + MEASURED_FRAMES + " frames", 0, allocations);
+    }
+}
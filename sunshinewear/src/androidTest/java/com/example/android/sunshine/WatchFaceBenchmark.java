@@ -0,0 +1,290 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.os.Debug;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a script of watch face events against an offscreen Canvas and measures every frame
+ * that gets drawn.
+ * <p>
+ * An Engine can only be created by the system's wallpaper host, so the benchmark drives the same
+ * pair of objects the Engine's onDraw does: a {@link FrameScheduler} decides whether an event
+ * needs a frame, exactly as Engine.requestFrame does, and a {@link WatchFaceRenderer} draws it.
+ * Time is simulated, so a script covering an hour of watch face time runs in seconds.
+ * <p>
+ * For every frame we record how long {@link WatchFaceRenderer#draw(Canvas, Rect, long)} took and
+ * how many objects it allocated. Events themselves, such as new weather arriving, are allowed to
+ * allocate; only the drawing is counted. Allocations in steady-state frames, the ones drawn only
+ * because the time moved on, are also counted on their own. Those must not allocate at all.
+ */
+@SuppressWarnings("deprecation")
+final class WatchFaceBenchmark {
+
+    private static final long SECOND_IN_MILLIS = TimeUnit.SECONDS.toMillis(1);
+
+    private static final int EVENT_TICK = 0;
+    private static final int EVENT_WEATHER = 1;
+    private static final int EVENT_AMBIENT = 2;
+    private static final int EVENT_TAP = 3;
+
+    private final WatchFaceRenderer mRenderer;
+    private final FrameScheduler mScheduler = new FrameScheduler();
+    private final Bitmap mBitmap;
+    private final Canvas mCanvas;
+    private final Rect mBounds;
+
+    private final List<Event> mEvents = new ArrayList<>();
+
+    /**
+     * @param resources Resources of the watch face, for its dimensions and colors
+     * @param size      Width and height of the offscreen surface, in pixels
+     * @param isRound   Whether to lay the watch face out for a round screen
+     */
+    WatchFaceBenchmark(Resources resources, int size, boolean isRound) {
+        mBitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        mCanvas = new Canvas(mBitmap);
+        mBounds = new Rect(0, 0, size, size);
+
+        mRenderer = new WatchFaceRenderer(resources);
+        mRenderer.setRound(isRound);
+        mRenderer.setTimeZone(TimeZone.getTimeZone("UTC"));
+    }
+
+    /**
+     * @return The renderer, so that a script can set up the display's ambient properties
+     */
+    WatchFaceRenderer getRenderer() {
+        return mRenderer;
+    }
+
+    /**
+     * Lets time pass, one second at a time, as the Engine's timer and time ticks do.
+     */
+    WatchFaceBenchmark tick(int seconds) {
+        for (int i = 0; i < seconds; i++) {
+            mEvents.add(new Event(EVENT_TICK));
+        }
+        return this;
+    }
+
+    /**
+     * New weather arrives from the phone. Upcoming days are given the same icon and high.
+     */
+    WatchFaceBenchmark weather(Bitmap icon, String highTemp, String lowTemp) {
+        Event event = new Event(EVENT_WEATHER);
+        event.mIcon = icon;
+        event.mHighTemp = highTemp;
+        event.mLowTemp = lowTemp;
+        mEvents.add(event);
+        return this;
+    }
+
+    /**
+     * The watch enters or leaves ambient mode.
+     */
+    WatchFaceBenchmark ambient(boolean inAmbientMode) {
+        Event event = new Event(EVENT_AMBIENT);
+        event.mAmbient = inAmbientMode;
+        mEvents.add(event);
+        return this;
+    }
+
+    /**
+     * The user taps the watch face. The watch face doesn't react to taps, so this should never
+     * cost a frame.
+     */
+    WatchFaceBenchmark tap() {
+        mEvents.add(new Event(EVENT_TAP));
+        return this;
+    }
+
+    /**
+     * Plays the script, starting at the given time. The script can only be run once.
+     *
+     * @param startMillis Simulated wall clock time of the first event
+     * @return Timings and allocations of every frame that was drawn
+     */
+    Report run(long startMillis) {
+        /* Each event leads to at most one frame, so this is big enough to record them all */
+        long[] frameNanos = new long[mEvents.size()];
+        int frameCount = 0;
+        int allocations = 0;
+        int steadyStateAllocations = 0;
+        /* The first frame, and any frame after weather or a mode change, may rebuild layers */
+        boolean settled = false;
+        boolean ambient = false;
+        long now = startMillis;
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        try {
+            for (Event event : mEvents) {
+                switch (event.mType) {
+                    case EVENT_TICK:
+                        now += SECOND_IN_MILLIS;
+                        break;
+                    case EVENT_WEATHER:
+                        mRenderer.setTodaysWeather(event.mIcon, event.mHighTemp, event.mLowTemp);
+                        for (int i = 0; i < WatchFaceRenderer.UPCOMING_DAY_COUNT; i++) {
+                            mRenderer.setUpcomingDay(i, event.mIcon, event.mHighTemp);
+                        }
+                        mRenderer.setUpcomingDayCount(WatchFaceRenderer.UPCOMING_DAY_COUNT);
+                        mScheduler.markDirty();
+                        settled = false;
+                        break;
+                    case EVENT_AMBIENT:
+                        ambient = event.mAmbient;
+                        mRenderer.setAmbient(ambient);
+                        mScheduler.markDirty();
+                        settled = false;
+                        break;
+                    case EVENT_TAP:
+                        break;
+                }
+
+                if (!mScheduler.needsFrame(now, ambient)) {
+                    continue;
+                }
+
+                int allocationsBefore = Debug.getThreadAllocCount();
+                long frameStart = System.nanoTime();
+                mRenderer.draw(mCanvas, mBounds, now);
+                long elapsed = System.nanoTime() - frameStart;
+                int frameAllocations = Debug.getThreadAllocCount() - allocationsBefore;
+                allocations += frameAllocations;
+                if (settled) {
+                    steadyStateAllocations += frameAllocations;
+                }
+                settled = true;
+
+                mScheduler.onFrameDrawn(now, elapsed);
+                frameNanos[frameCount++] = elapsed;
+            }
+        } finally {
+            Debug.stopAllocCounting();
+        }
+
+        return new Report(Arrays.copyOf(frameNanos, frameCount), mScheduler.getSkippedCount(),
+                allocations, steadyStateAllocations);
+    }
+
+    /**
+     * Frees the offscreen surface and the renderer's layers.
+     */
+    void release() {
+        mRenderer.release();
+        mBitmap.recycle();
+    }
+
+    private static final class Event {
+        final int mType;
+        Bitmap mIcon;
+        String mHighTemp;
+        String mLowTemp;
+        boolean mAmbient;
+
+        Event(int type) {
+            mType = type;
+        }
+    }
+
+    /**
+     * What a benchmark run measured.
+     */
+    static final class Report {
+
+        /* Sorted, shortest first */
+        private final long[] mFrameNanos;
+        private final int mSkippedCount;
+        private final int mAllocationCount;
+        private final int mSteadyStateAllocationCount;
+
+        Report(long[] frameNanos, int skippedCount, int allocationCount,
+               int steadyStateAllocationCount) {
+            mFrameNanos = frameNanos;
+            Arrays.sort(mFrameNanos);
+            mSkippedCount = skippedCount;
+            mAllocationCount = allocationCount;
+            mSteadyStateAllocationCount = steadyStateAllocationCount;
+        }
+
+        int getFrameCount() {
+            return mFrameNanos.length;
+        }
+
+        /**
+         * @return How many events didn't need a frame
+         */
+        int getSkippedCount() {
+            return mSkippedCount;
+        }
+
+        /**
+         * @return How many objects were allocated while drawing, across all frames
+         */
+        int getAllocationCount() {
+            return mAllocationCount;
+        }
+
+        /**
+         * @return How many objects were allocated while drawing frames where only the time had
+         * changed. Anything above zero is garbage created every second.
+         */
+        int getSteadyStateAllocationCount() {
+            return mSteadyStateAllocationCount;
+        }
+
+        /**
+         * @param percentile Between 0 and 100
+         * @return The frame time that the given percentage of frames took no longer than, using
+         * the nearest-rank method, or 0 if no frames were drawn
+         */
+        long getFrameNanos(double percentile) {
+            if (mFrameNanos.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(percentile / 100 * mFrameNanos.length);
+            return mFrameNanos[Math.max(rank, 1) - 1];
+        }
+
+        long getMaxFrameNanos() {
+            return getFrameNanos(100);
+        }
+
+        @Override
+        public String toString() {
+            return "frames=" + getFrameCount()
+                    + " skipped=" + mSkippedCount
+                    + " p50=" + TimeUnit.NANOSECONDS.toMicros(getFrameNanos(50)) + "us"
+                    + " p90=" + TimeUnit.NANOSECONDS.toMicros(getFrameNanos(90)) + "us"
+                    + " p99=" + TimeUnit.NANOSECONDS.toMicros(getFrameNanos(99)) + "us"
+                    + " max=" + TimeUnit.NANOSECONDS.toMicros(getMaxFrameNanos()) + "us"
+                    + " allocations=" + mAllocationCount
+                    + " steadyStateAllocations=" + mSteadyStateAllocationCount;
+        }
+    }
+}
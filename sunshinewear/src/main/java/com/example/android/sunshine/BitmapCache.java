@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.LruCache;
+
+import com.example.android.sunshine.shared.BitmapCachePolicy;
+
+/**
+ * A size-aware cache of decoded weather icons for the watch face. Bitmaps are keyed by resource
+ * ID, target size and config, and are decoded to exactly the size they are drawn at, so switching
+ * back and forth between the same few weather conditions never decodes the same icon twice.
+ * <p>
+ * The keys, sizes and downsampling come from {@link BitmapCachePolicy}, which the phone app's
+ * BitmapCache uses as well. Only the budget and the decoding itself are the watch's own.
+ */
+final class BitmapCache {
+
+    /* The watch only ever shows one icon at a time; leave room for a handful of conditions. */
+    private static final int MAX_CACHE_BYTES = 512 * 1024;
+
+    private static final LruCache<String, Bitmap> sCache =
+            new LruCache<String, Bitmap>(MAX_CACHE_BYTES) {
+                @Override
+                protected int sizeOf(String key, Bitmap bitmap) {
+                    return BitmapCachePolicy.getByteCount(
+                            bitmap.getRowBytes(), bitmap.getHeight());
+                }
+            };
+
+    private BitmapCache() {
+    }
+
+    /**
+     * Returns the icon for a resource at exactly the requested size, decoding it only if it
+     * isn't already cached.
+     *
+     * @param resources  Used to decode the resource
+     * @param resourceId The drawable to decode
+     * @param width      Target width in pixels
+     * @param height     Target height in pixels
+     * @param config     Bitmap config to decode to
+     * @return The decoded Bitmap, or null if the resource could not be decoded
+     */
+    static Bitmap getBitmap(Resources resources, int resourceId, int width, int height,
+                            Bitmap.Config config) {
+        String key = BitmapCachePolicy.getKey(resourceId, width, height, config.name());
+
+        Bitmap bitmap = sCache.get(key);
+        if (bitmap == null) {
+            bitmap = decode(resources, resourceId, width, height, config);
+            if (bitmap != null) {
+                sCache.put(key, bitmap);
+            }
+        }
+        return bitmap;
+    }
+
+    private static Bitmap decode(Resources resources, int resourceId, int width, int height,
+                                 Bitmap.Config config) {
+        /* First, only read the dimensions so that we can work out how much to downsample */
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeResource(resources, resourceId, options);
+
+        options.inJustDecodeBounds = false;
+        options.inPreferredConfig = config;
+        options.inSampleSize = BitmapCachePolicy.calculateInSampleSize(
+                options.outWidth, options.outHeight, width, height);
+
+        Bitmap sampled = BitmapFactory.decodeResource(resources, resourceId, options);
+        if (sampled == null || (sampled.getWidth() == width && sampled.getHeight() == height)) {
+            return sampled;
+        }
+
+        Bitmap scaled = Bitmap.createScaledBitmap(sampled, width, height, true);
+        if (scaled != sampled) {
+            sampled.recycle();
+        }
+        return scaled;
+    }
+}
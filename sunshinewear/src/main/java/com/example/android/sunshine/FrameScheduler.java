@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides when the watch face actually needs to be redrawn, and keeps statistics about the frames
+ * that are drawn.
+ * <p>
+ * The Engine marks the watch face dirty when something other than the time changes, such as the
+ * weather or the date. Before asking for a frame, it checks {@link #needsFrame(long, boolean)}.
+ * That check also works out whether the time that would be displayed has changed since the last
+ * frame: the second in interactive mode, the minute in ambient mode. If nothing visible has
+ * changed, for example when a timer message arrives early, no frame is requested.
+ * <p>
+ * A CanvasWatchFaceService gets a fresh surface buffer for every frame, so a frame always redraws
+ * the whole surface, and all this decides is whether to draw at all. Which layers a frame rebuilds
+ * is WatchFaceRenderer's business: it only rebuilds its static layer when the date or weather on
+ * it changed, so a frame where only the time changed is a single blit plus the time.
+ */
+class FrameScheduler {
+
+    private static final long SECOND_IN_MILLIS = TimeUnit.SECONDS.toMillis(1);
+    private static final long MINUTE_IN_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    /* Whether something other than the time has changed since the last frame */
+    private boolean mDirty;
+
+    /* The second and minute (since the epoch) that were on screen in the last frame */
+    private long mDrawnSecond = -1;
+    private long mDrawnMinute = -1;
+
+    private int mFrameCount;
+    private int mSkippedCount;
+    private long mTotalFrameNanos;
+    private long mMaxFrameNanos;
+
+    /**
+     * Marks the watch face as changed, so the next frame is drawn whatever the time.
+     */
+    void markDirty() {
+        mDirty = true;
+    }
+
+    /**
+     * Works out whether anything visible has changed since the last frame. A call that returns
+     * false is counted as a skipped frame.
+     *
+     * @param nowMillis The current time
+     * @param ambient   Whether we're in ambient mode, where seconds aren't shown
+     * @return true if a frame should be drawn
+     */
+    boolean needsFrame(long nowMillis, boolean ambient) {
+        if (mDirty
+                || nowMillis / MINUTE_IN_MILLIS != mDrawnMinute
+                || (!ambient && nowMillis / SECOND_IN_MILLIS != mDrawnSecond)) {
+            return true;
+        }
+        mSkippedCount++;
+        return false;
+    }
+
+    /**
+     * Records that a frame showing the given time was drawn, clearing the dirty flag.
+     *
+     * @param nowMillis   The time the frame showed
+     * @param frameNanos  How long the frame took to draw
+     */
+    void onFrameDrawn(long nowMillis, long frameNanos) {
+        mDirty = false;
+        mDrawnSecond = nowMillis / SECOND_IN_MILLIS;
+        mDrawnMinute = nowMillis / MINUTE_IN_MILLIS;
+
+        mFrameCount++;
+        mTotalFrameNanos += frameNanos;
+        if (frameNanos > mMaxFrameNanos) {
+            mMaxFrameNanos = frameNanos;
+        }
+    }
+
+    int getFrameCount() {
+        return mFrameCount;
+    }
+
+    /**
+     * @return How many times a frame was considered but not needed
+     */
+    int getSkippedCount() {
+        return mSkippedCount;
+    }
+
+    long getAverageFrameNanos() {
+        return mFrameCount == 0 ? 0 : mTotalFrameNanos / mFrameCount;
+    }
+
+    long getMaxFrameNanos() {
+        return mMaxFrameNanos;
+    }
+
+    void resetStats() {
+        mFrameCount = 0;
+        mSkippedCount = 0;
+        mTotalFrameNanos = 0;
+        mMaxFrameNanos = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "frames=" + mFrameCount
+                + " skipped=" + mSkippedCount
+                + " avg=" + TimeUnit.NANOSECONDS.toMicros(getAverageFrameNanos()) + "us"
+                + " max=" + TimeUnit.NANOSECONDS.toMicros(mMaxFrameNanos) + "us";
+    }
+}
@@ -22,15 +22,12 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.Paint;
 import android.graphics.Rect;
-import android.graphics.Typeface;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.wearable.watchface.CanvasWatchFaceService;
@@ -39,22 +36,30 @@ import android.util.Log;
 import android.view.SurfaceHolder;
 import android.view.WindowInsets;
 
+import com.example.android.sunshine.shared.ForecastDataset;
+import com.example.android.sunshine.shared.WeatherPayload;
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.common.api.ResultCallback;
 import com.google.android.gms.wearable.DataApi;
 import com.google.android.gms.wearable.DataEvent;
 import com.google.android.gms.wearable.DataEventBuffer;
+import com.google.android.gms.wearable.DataItem;
+import com.google.android.gms.wearable.DataItemBuffer;
 import com.google.android.gms.wearable.DataMap;
 import com.google.android.gms.wearable.DataMapItem;
 import com.google.android.gms.wearable.MessageApi;
+import com.google.android.gms.wearable.Node;
+import com.google.android.gms.wearable.NodeApi;
 import com.google.android.gms.wearable.Wearable;
 
 import java.lang.ref.WeakReference;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.Locale;
+import java.util.Map;
 import java.util.TimeZone;
+import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -63,9 +68,6 @@ import java.util.concurrent.TimeUnit;
  */
 public class SunshineWatchFace extends CanvasWatchFaceService {
 
-    private static final Typeface NORMAL_TYPEFACE = Typeface.create(Typeface.SANS_SERIF, Typeface.NORMAL);
-    private static final Typeface BOLD_TYPEFACE = Typeface.create(Typeface.SANS_SERIF, Typeface.BOLD);
-
     /**
      * Update rate in milliseconds for interactive mode. We update once a second since seconds are
      * displayed in interactive mode.
@@ -76,10 +78,9 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
      * Handler message id for updating the time periodically in interactive mode.
      */
     private static final int MSG_UPDATE_TIME = 0;
+
     private static final String TAG = SunshineWatchFace.class.getSimpleName();
     private int mWeatherId;
-    private String mHighTemp = "X";
-    private String mLowTemp = "Y";
 
     @Override
     public Engine onCreateEngine() {
@@ -110,50 +111,43 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
     private class Engine extends CanvasWatchFaceService.Engine implements DataApi.DataListener, GoogleApiClient.ConnectionCallbacks, GoogleApiClient
             .OnConnectionFailedListener {
 
-        private static final String WEATHER_PATH = "/sunshine-weather";
-
-        private static final String KEY_WEATHER_ID = "weather-id";
-        private static final String KEY_MAX_TEMP = "max-temp";
-        private static final String KEY_MIN_TEMP = "min-temp";
-
         GoogleApiClient mGoogleApiClient;
 
         final Handler mUpdateTimeHandler = new EngineHandler(this);
         boolean mRegisteredTimeZoneReceiver = false;
-        Paint mBackgroundPaint;
-        Paint mBackgroundPaintAmbient;
-        Paint mHourPaint;
-        Paint mMinutePaint;
-        Paint mDatePaint;
-        Paint mMaxTempPaint;
-        Paint mMinTempPaint;
-        Paint mWeatherPaint;
-        Paint mLinebreak;
+        WatchFaceRenderer mRenderer;
+        final FrameScheduler mScheduler = new FrameScheduler();
         Bitmap mWeatherBitmap;
 
-        SimpleDateFormat mDayOfWeekFormat;
+        /*
+         * Every day the phone has published, keyed by normalized date. This lets us roll over to
+         * tomorrow's weather at midnight and show the upcoming days without asking the phone.
+         */
+        final TreeMap<Long, WeatherPayload> mForecast = new TreeMap<>();
+        /* The normalized date the today and upcoming fields were last built for */
+        long mForecastDay = -1;
+        /* False if the phone published a forecast layout we don't understand */
+        boolean mForecastSupported = true;
+        boolean mHasWeather;
+        /* The last payload from the phone's single-day weather item */
+        WeatherPayload mSingleDayPayload;
 
         boolean mAmbient;
-        Calendar mCalendar;
-        SimpleDateFormat mDateFormat;
         final BroadcastReceiver mTimeZoneReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context context, Intent intent) {
-                mCalendar.setTimeZone(TimeZone.getDefault());
-                invalidate();
+                mRenderer.setTimeZone(TimeZone.getDefault());
+                requestFrame(true);
             }
         };
-        float mXOffset;
-        float mYOffset;
 
         /**
          * Whether the display supports fewer bits for each color in ambient mode. When true, we
          * disable anti-aliasing in ambient mode.
          */
         boolean mLowBitAmbient;
-        private float mLineHeight;
-        private float mLineWidth;
-        private float mTextPadding;
+        private int mWeatherIconSize;
+        private int mForecastIconSize;
 
         @Override
         public void onCreate(SurfaceHolder holder) {
@@ -171,47 +165,36 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
                                                                                   .build();
 
             Resources resources = SunshineWatchFace.this.getResources();
-            mYOffset = resources.getDimension(R.dimen.digital_y_offset);
-
-            mBackgroundPaint = new Paint();
-            mBackgroundPaint.setColor(resources.getColor(R.color.background));
+            mWeatherIconSize = resources.getDimensionPixelSize(R.dimen.weather_icon_size);
+            mForecastIconSize = resources.getDimensionPixelSize(R.dimen.forecast_icon_size);
 
-            mLineWidth = resources.getDimension(R.dimen.separator_line_width);
-            mTextPadding = resources.getDimension(R.dimen.text_padding);
-            int color_text = resources.getColor(R.color.text_white);
-            int color_text_blue = resources.getColor(R.color.text_blue);
+            mRenderer = new WatchFaceRenderer(resources);
 
-            mHourPaint = createTextPaint(color_text, BOLD_TYPEFACE);
-            mMinutePaint = createTextPaint(color_text, NORMAL_TYPEFACE);
-            mDatePaint = createTextPaint(color_text_blue, NORMAL_TYPEFACE);
-            mMaxTempPaint = createTextPaint(color_text, BOLD_TYPEFACE);
-            mMaxTempPaint.setTextAlign(Paint.Align.CENTER);
-            mMinTempPaint = createTextPaint(color_text_blue, NORMAL_TYPEFACE);
-            mMinTempPaint.setTextAlign(Paint.Align.CENTER);
-            mWeatherPaint = new Paint();
-            mWeatherPaint.setTextAlign(Paint.Align.CENTER);
-            mLinebreak = new Paint();
-            mLinebreak.setColor(color_text);
+            restoreCachedWeather();
+        }
 
-            mCalendar = Calendar.getInstance();
-            mDateFormat = new SimpleDateFormat("EEE, MMM d yyyy", Locale.getDefault());
-            mDateFormat.setCalendar(mCalendar);
+        /**
+         * Shows whatever weather we last received, so that the first frame already has real
+         * weather in it rather than placeholders.
+         */
+        private void restoreCachedWeather() {
+            Context context = SunshineWatchFace.this;
+            mForecast.putAll(WeatherCache.loadForecast(context));
+            mSingleDayPayload = WeatherCache.loadToday(context);
+            if (mSingleDayPayload != null) {
+                showToday(mSingleDayPayload);
+            }
+            /* Today's entry in the forecast, if there is one, replaces it on the first draw */
+            mForecastDay = -1;
         }
 
         @Override
         public void onDestroy() {
             mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME);
+            mRenderer.release();
             super.onDestroy();
         }
 
-        private Paint createTextPaint(int textColor, Typeface typeface) {
-            Paint paint = new Paint();
-            paint.setColor(textColor);
-            paint.setTypeface(typeface);
-            paint.setAntiAlias(true);
-            return paint;
-        }
-
         @Override
         public void onVisibilityChanged(boolean visible) {
             super.onVisibilityChanged(visible);
@@ -220,11 +203,16 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
                 registerReceiver();
                 registerGoogleApiClient();
                 // Update time zone in case it changed while we weren't visible.
-                mCalendar.setTimeZone(TimeZone.getDefault());
+                mRenderer.setTimeZone(TimeZone.getDefault());
+                mScheduler.markDirty();
                 invalidate();
             } else {
                 unregisterReceiver();
                 unregisterGoogleApiClient();
+                if (BuildConfig.DEBUG) {
+                    Log.d(TAG, "Frame stats: " + mScheduler);
+                }
+                mScheduler.resetStats();
             }
 
             // Whether the timer should be running depends on whether we're visible (as well as
@@ -267,32 +255,21 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
             super.onApplyWindowInsets(insets);
 
             // Load resources that have alternate values for round watches.
-            Resources resources = SunshineWatchFace.this.getResources();
-            boolean isRound = insets.isRound();
-            mXOffset = resources.getDimension(isRound ? R.dimen.digital_x_offset_round : R.dimen.digital_x_offset);
-            mLineHeight = resources.getDimension(isRound ? R.dimen.line_height_round : R.dimen.line_height);
-
-            float bigTextSize = resources.getDimension(isRound ? R.dimen.big_text_size_round : R.dimen.big_text_size);
-            float smallTextSize = resources.getDimension(isRound ? R.dimen.small_text_size_round : R.dimen.small_text_size);
-
-            mHourPaint.setTextSize(bigTextSize);
-            mMinutePaint.setTextSize(bigTextSize);
-            mDatePaint.setTextSize(smallTextSize);
-            mMaxTempPaint.setTextSize(bigTextSize);
-            mMinTempPaint.setTextSize(bigTextSize);
-
+            mRenderer.setRound(insets.isRound());
         }
 
         @Override
         public void onPropertiesChanged(Bundle properties) {
             super.onPropertiesChanged(properties);
             mLowBitAmbient = properties.getBoolean(PROPERTY_LOW_BIT_AMBIENT, false);
+            boolean burnInProtection = properties.getBoolean(PROPERTY_BURN_IN_PROTECTION, false);
+            mRenderer.setAmbientProperties(mLowBitAmbient, burnInProtection);
         }
 
         @Override
         public void onTimeTick() {
             super.onTimeTick();
-            invalidate();
+            requestFrame(false);
         }
 
         @Override
@@ -300,15 +277,8 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
             super.onAmbientModeChanged(inAmbientMode);
             if (mAmbient != inAmbientMode) {
                 mAmbient = inAmbientMode;
-                if (mLowBitAmbient) {
-                    mHourPaint.setAntiAlias(!inAmbientMode);
-                    mMinutePaint.setAntiAlias(!inAmbientMode);
-                    mDatePaint.setAntiAlias(!inAmbientMode);
-                    mMaxTempPaint.setAntiAlias(!inAmbientMode);
-                    mMinTempPaint.setAntiAlias(!inAmbientMode);
-                    mBackgroundPaint.setColor(getColor(R.color.background_ambient));
-                    mWeatherPaint.setAntiAlias(!inAmbientMode);
-                }
+                mRenderer.setAmbient(inAmbientMode);
+                mScheduler.markDirty();
                 invalidate();
             }
 
@@ -318,8 +288,8 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
         }
 
         /**
-         * Captures tap event (and tap type) and toggles the background color if the user finishes
-         * a tap.
+         * Captures tap event (and tap type). Nothing on the watch face responds to taps yet, so
+         * none of them, and certainly not a cancelled one, causes a redraw.
          */
         @Override
         public void onTapCommand(int tapType, int x, int y, long eventTime) {
@@ -333,52 +303,36 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
                 case TAP_TYPE_TAP:
                     break;
             }
-            invalidate();
         }
 
         @Override
         public void onDraw(Canvas canvas, Rect bounds) {
-            // Draw the background.
-            if (mAmbient) {
-                canvas.drawColor(Color.BLACK);
-            } else {
-                canvas.drawRect(0, 0, bounds.width(), bounds.height(), mBackgroundPaint);
-            }
-
-            // Draw H:MM in ambient mode or H:MM:SS in interactive mode.
+            long frameStart = SystemClock.elapsedRealtimeNanos();
             long now = System.currentTimeMillis();
-            mCalendar.setTimeInMillis(now);
-            String hourString = String.format("%d:", mCalendar.get(Calendar.HOUR));
-            String minutesString = mAmbient ?
-                                   String.format("%02d", mCalendar.get(Calendar.MINUTE)) :
-                                   String.format("%02d:%02d", mCalendar.get(Calendar.MINUTE), mCalendar.get(Calendar.SECOND));
-
-            String dateString = mDateFormat.format(mCalendar.getTime()).toUpperCase();
 
-            //canvas.drawText(text, mXOffset, mYOffset, mTextPaint);
-
-            float xHours = bounds.centerX() - (mHourPaint.measureText(hourString) + mMinutePaint.measureText(minutesString)) / 2;
-            canvas.drawText(hourString, xHours, mYOffset, mHourPaint);
-
-            float xMinutes = xHours + mHourPaint.measureText(hourString);
-            canvas.drawText(minutesString, xMinutes, mYOffset, mMinutePaint);
-            if (!mAmbient) {
-                float xDate = bounds.centerX() - mDatePaint.measureText(dateString) / 2;
-                canvas.drawText(dateString, xDate, mYOffset + mLineHeight * 2f, mDatePaint);
+            /* Cheap to check, and lets today's weather roll over at midnight with no round trip */
+            long today = ForecastDataset.getNormalizedDateForToday(now, mRenderer.getTimeZone());
+            if (today != mForecastDay) {
+                updateFromForecast(today);
+            }
 
-                canvas.drawLine(bounds.centerX() - mLineWidth / 2, mYOffset + mLineHeight * 3f, bounds.centerX() + mLineWidth / 2, mYOffset + mLineHeight *
-                        3f + 1, mLinebreak);
+            mRenderer.draw(canvas, bounds, now);
 
-                canvas.drawText(mHighTemp, bounds.centerX(), mYOffset + mLineHeight * 7, mMaxTempPaint);
-                float xMinTemp = bounds.centerX() + mMaxTempPaint.measureText(mHighTemp);
-                canvas.drawText(mLowTemp, xMinTemp, mYOffset + mLineHeight * 7, mMinTempPaint);
+            mScheduler.onFrameDrawn(now, SystemClock.elapsedRealtimeNanos() - frameStart);
+        }
 
-                if (mWeatherBitmap != null) {
-                    float xWeather = bounds.centerX() / 4;
-                    canvas.drawBitmap(mWeatherBitmap, xWeather, mYOffset + mLineHeight * 7 - mWeatherBitmap.getHeight() / 2, mWeatherPaint);
-                }
+        /**
+         * Asks for a frame, but only if something visible has actually changed since the last one.
+         *
+         * @param changed true if something other than the time changed, such as the weather
+         */
+        private void requestFrame(boolean changed) {
+            if (changed) {
+                mScheduler.markDirty();
+            }
+            if (mScheduler.needsFrame(System.currentTimeMillis(), mAmbient)) {
+                invalidate();
             }
-
         }
 
         /**
@@ -404,7 +358,7 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
          * Handle updating the time periodically in interactive mode.
          */
         private void handleUpdateTimeMessage() {
-            invalidate();
+            requestFrame(false);
             if (shouldTimerBeRunning()) {
                 long timeMs = System.currentTimeMillis();
                 long delayMs = INTERACTIVE_UPDATE_RATE_MS - (timeMs % INTERACTIVE_UPDATE_RATE_MS);
@@ -414,27 +368,187 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
 
         @Override
         public void onDataChanged(final DataEventBuffer dataBuffer) {
+            boolean received = false;
             for (DataEvent event : dataBuffer) {
                 if (event.getType() == DataEvent.TYPE_CHANGED) {
-                    if (event.getDataItem().getUri().getPath().equals(WEATHER_PATH)) {
-                        DataMap dataMap = DataMapItem.fromDataItem(event.getDataItem()).getDataMap();
-                        mWeatherId = dataMap.getInt(KEY_WEATHER_ID);
-                        mHighTemp = dataMap.getString(KEY_MAX_TEMP);
-                        mLowTemp = dataMap.getString(KEY_MIN_TEMP);
-                        Log.d(TAG, "Weather Data Received id: " + mWeatherId + " HighTemp: " + mHighTemp + " LowTemp: " + mLowTemp);
-                        Resources resources = SunshineWatchFace.this.getResources();
-                        mWeatherBitmap = BitmapFactory.decodeResource(resources, getSmallArtResourceIdForWeatherCondition(mWeatherId));
-                        invalidate();
+                    received |= updateWeather(event.getDataItem());
+                } else if (event.getType() == DataEvent.TYPE_DELETED) {
+                    removeForecastDay(event.getDataItem());
+                }
+            }
+
+            /* Items we read back on connect don't count; only new data from the phone does */
+            if (received) {
+                WeatherCache.markReceived(SunshineWatchFace.this, System.currentTimeMillis());
+            }
+        }
+
+        /**
+         * Applies a DataItem the phone published. That is either the single-day weather item, a
+         * day of the forecast or the forecast index. The phone sends temperatures in Celsius along
+         * with the user's preferred units, so the Strings we draw are built here rather than on
+         * the phone. Anything new is also written to the WeatherCache.
+         *
+         * @return true if the DataItem is one of the weather items the phone publishes
+         */
+        private boolean updateWeather(DataItem dataItem) {
+            String path = dataItem.getUri().getPath();
+            DataMap dataMap = DataMapItem.fromDataItem(dataItem).getDataMap();
+
+            if (ForecastDataset.INDEX_PATH.equals(path)) {
+                updateForecastIndex(dataMap);
+                return true;
+            }
+
+            long forecastDate = ForecastDataset.getDateFromDayPath(path);
+            if (forecastDate == -1 && !WeatherPayload.DATA_PATH.equals(path)) {
+                return false;
+            }
+
+            WeatherPayload payload;
+            try {
+                payload = WeatherPayload.decode(dataMap.getByteArray(WeatherPayload.KEY_PAYLOAD));
+            } catch (IllegalArgumentException e) {
+                /* Most likely a payload from a newer phone app; keep showing what we have */
+                Log.w(TAG, "Ignoring weather payload: " + e.getMessage());
+                return true;
+            }
+
+            Context context = SunshineWatchFace.this;
+            if (forecastDate != -1) {
+                if (!mForecastSupported || payload.equals(mForecast.put(forecastDate, payload))) {
+                    return true;
+                }
+                WeatherCache.saveDay(context, payload);
+                /* Rebuild today and the upcoming days on the next draw */
+                mForecastDay = -1;
+            } else {
+                if (payload.equals(mSingleDayPayload)) {
+                    return true;
+                }
+                mSingleDayPayload = payload;
+                WeatherCache.saveToday(context, payload);
+                if (!mForecast.containsKey(mForecastDay)) {
+                    /* Only fall back to the single-day item if the forecast doesn't cover today */
+                    showToday(payload);
+                }
+            }
+            requestFrame(true);
+            return true;
+        }
+
+        /**
+         * Drops any forecast days that the phone no longer lists. If the phone is using a
+         * dataset layout we don't understand, the whole forecast is dropped instead, and we only
+         * show the single-day weather item.
+         */
+        private void updateForecastIndex(DataMap index) {
+            mForecastSupported = index.getInt(ForecastDataset.KEY_VERSION) == ForecastDataset.VERSION;
+            if (!mForecastSupported) {
+                Log.w(TAG, "Ignoring forecast with version " + index.getInt(ForecastDataset.KEY_VERSION));
+                mForecast.clear();
+                WeatherCache.clearForecast(SunshineWatchFace.this);
+            } else {
+                long[] dates = index.getLongArray(ForecastDataset.KEY_DATES);
+                Iterator<Long> iterator = mForecast.keySet().iterator();
+                while (iterator.hasNext()) {
+                    long date = iterator.next();
+                    if (dates == null || Arrays.binarySearch(dates, date) < 0) {
+                        iterator.remove();
+                        WeatherCache.removeDay(SunshineWatchFace.this, date);
                     }
                 }
             }
+            mForecastDay = -1;
+            requestFrame(true);
+        }
+
+        private void removeForecastDay(DataItem dataItem) {
+            long date = ForecastDataset.getDateFromDayPath(dataItem.getUri().getPath());
+            if (date != -1 && mForecast.remove(date) != null) {
+                WeatherCache.removeDay(SunshineWatchFace.this, date);
+                mForecastDay = -1;
+                requestFrame(true);
+            }
+        }
+
+        /**
+         * Picks today's weather and the next few days out of the forecast and formats them.
+         * This only runs when the forecast changes or the date rolls over, not on every frame.
+         */
+        private void updateFromForecast(long today) {
+            mForecastDay = today;
+
+            WeatherPayload todaysWeather = mForecast.get(today);
+            if (todaysWeather != null) {
+                showToday(todaysWeather);
+            }
+
+            int upcomingCount = 0;
+            Resources resources = SunshineWatchFace.this.getResources();
+            for (Map.Entry<Long, WeatherPayload> day : mForecast.tailMap(today, false).entrySet()) {
+                if (upcomingCount == WatchFaceRenderer.UPCOMING_DAY_COUNT) {
+                    break;
+                }
+                WeatherPayload payload = day.getValue();
+                Bitmap icon = BitmapCache.getBitmap(resources,
+                        getSmallArtResourceIdForWeatherCondition(payload.getWeatherId()),
+                        mForecastIconSize, mForecastIconSize, Bitmap.Config.ARGB_8888);
+                mRenderer.setUpcomingDay(upcomingCount, icon, formatTemperature(payload.getHigh()));
+                upcomingCount++;
+            }
+            mRenderer.setUpcomingDayCount(upcomingCount);
+        }
+
+        private void showToday(WeatherPayload payload) {
+            mHasWeather = true;
+            int weatherId = payload.getWeatherId();
+            String highTemp = formatTemperature(payload.getHigh());
+            String lowTemp = formatTemperature(payload.getLow());
+            Log.d(TAG, "Weather Data Received id: " + weatherId + " HighTemp: " + highTemp + " LowTemp: " + lowTemp);
+            // Only look up the icon when the condition actually changed.
+            if (weatherId != mWeatherId || mWeatherBitmap == null) {
+                mWeatherId = weatherId;
+                Resources resources = SunshineWatchFace.this.getResources();
+                mWeatherBitmap = BitmapCache.getBitmap(resources,
+                        getSmallArtResourceIdForWeatherCondition(mWeatherId),
+                        mWeatherIconSize, mWeatherIconSize, Bitmap.Config.ARGB_8888);
+            }
+            mRenderer.setTodaysWeather(mWeatherBitmap, highTemp, lowTemp);
         }
 
         @Override
         public void onConnected(@Nullable final Bundle bundle) {
             Log.d(TAG, "OnConnected");
             Wearable.DataApi.addListener(mGoogleApiClient, this);
-            requestWeatherData();
+            loadCurrentWeather();
+        }
+
+        /**
+         * Reads the weather DataItems that are already synced to the watch. The phone no longer
+         * stamps every DataItem with the current time, so re-sending unchanged weather doesn't
+         * fire onDataChanged; this is how we pick up the last known weather when we connect.
+         * We only ask the phone for the weather if we have none, or haven't heard from the phone
+         * in a long time.
+         */
+        private void loadCurrentWeather() {
+            Wearable.DataApi.getDataItems(mGoogleApiClient).setResultCallback(new ResultCallback<DataItemBuffer>() {
+                @Override
+                public void onResult(@NonNull DataItemBuffer dataItems) {
+                    try {
+                        for (DataItem dataItem : dataItems) {
+                            updateWeather(dataItem);
+                        }
+                    } finally {
+                        dataItems.release();
+                    }
+
+                    boolean haveWeather = mHasWeather || !mForecast.isEmpty();
+                    if (!haveWeather || WeatherCache.shouldRequest(SunshineWatchFace.this, System.currentTimeMillis())) {
+                        requestWeatherData();
+                    }
+                }
+            });
         }
 
         @Override
@@ -447,16 +561,40 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
 
         }
 
+        /**
+         * Asks the phone to send us the weather. The cache only counts as fresh once weather
+         * actually arrives in onDataChanged. If the weather hasn't changed since it was last sent,
+         * the phone's answer is identical to what we have and never arrives, so we note when we
+         * asked to keep from asking again on every connect.
+         */
         public void requestWeatherData() {
-            Wearable.MessageApi.sendMessage(mGoogleApiClient, "", WEATHER_PATH, null).setResultCallback(new ResultCallback<MessageApi.SendMessageResult>() {
+            Wearable.NodeApi.getConnectedNodes(mGoogleApiClient).setResultCallback(new ResultCallback<NodeApi.GetConnectedNodesResult>() {
                 @Override
-                public void onResult(MessageApi.SendMessageResult sendMessageResult) {
-                    Log.e(TAG, "requestWeatherData:" + sendMessageResult.getStatus());
+                public void onResult(@NonNull NodeApi.GetConnectedNodesResult connectedNodes) {
+                    for (Node node : connectedNodes.getNodes()) {
+                        Wearable.MessageApi.sendMessage(mGoogleApiClient, node.getId(), WeatherPayload.DATA_PATH, null).setResultCallback(new ResultCallback<MessageApi.SendMessageResult>() {
+                            @Override
+                            public void onResult(@NonNull MessageApi.SendMessageResult sendMessageResult) {
+                                Log.d(TAG, "requestWeatherData:" + sendMessageResult.getStatus());
+                                if (sendMessageResult.getStatus().isSuccess()) {
+                                    WeatherCache.markRequested(SunshineWatchFace.this, System.currentTimeMillis());
+                                }
+                            }
+                        });
+                    }
                 }
             });
         }
     }
 
+    /**
+     * Formats a temperature, already converted to the user's preferred units, for display.
+     * For example, 21.6 becomes "22°".
+     */
+    private static String formatTemperature(float temperature) {
+        return String.format(Locale.getDefault(), "%.0f\u00B0", temperature);
+    }
+
     public static int getSmallArtResourceIdForWeatherCondition(int weatherId) {
 
         /*
@@ -0,0 +1,551 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Typeface;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Draws Sunshine's watch face. The Engine owns the lifecycle and the weather data; this class owns
+ * the Paints and everything that ends up on the Canvas.
+ * <p>
+ * {@link #draw(Canvas, Rect, long)} runs once a second in interactive mode, so it doesn't allocate
+ * once it has settled:
+ * <ul>
+ *   <li>The time is written digit by digit into preallocated char arrays rather than with
+ *   String.format.</li>
+ *   <li>The width of each digit and of ':' is measured once per text size, and the width of the
+ *   time is summed from those.</li>
+ *   <li>The date string and its width are only rebuilt when the day changes.</li>
+ *   <li>The weather strings are measured when they are set, not when they are drawn.</li>
+ * </ul>
+ * In interactive mode, everything except the time (background, date, separator and weather) is
+ * composed into an offscreen static layer. Each frame then blits that layer and draws the time on
+ * top, instead of redrawing every element. The layer is only rebuilt when something on it changes:
+ * the weather, the day, the insets or the size of the surface.
+ * <p>
+ * Ambient mode has its own profile, since that is where the watch spends most of its day. It uses
+ * separate white-on-black Paints, set up once for the display's low-bit and burn-in properties, so
+ * switching modes never touches the interactive Paints. Today's weather is pre-rendered into a
+ * small white glyph (thresholded to fully on or off pixels on low-bit displays) whenever it
+ * changes. Each ambient minute then draws just the time and that glyph on black. On displays that
+ * need burn-in protection, the glyph leaves out the solid weather icon, and everything is shifted
+ * by a few pixels each minute so that no pixel stays lit.
+ */
+class WatchFaceRenderer {
+
+    private static final Typeface NORMAL_TYPEFACE = Typeface.create(Typeface.SANS_SERIF, Typeface.NORMAL);
+    private static final Typeface BOLD_TYPEFACE = Typeface.create(Typeface.SANS_SERIF, Typeface.BOLD);
+
+    /* Number of days after today that can be shown along the bottom of the watch face */
+    static final int UPCOMING_DAY_COUNT = 3;
+
+    /* Characters whose widths we cache: the ten digits, then ':' */
+    private static final String MEASURED_GLYPHS = "0123456789:";
+    private static final int COLON_GLYPH = 10;
+
+    /* Number of positions the ambient content cycles through, one per minute, on burn-in displays */
+    private static final int BURN_IN_STEPS = 8;
+
+    private static final long MINUTE_IN_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final Resources mResources;
+
+    private final Paint mBackgroundPaint;
+    private final Paint mHourPaint;
+    private final Paint mMinutePaint;
+    private final Paint mDatePaint;
+    private final Paint mMaxTempPaint;
+    private final Paint mMinTempPaint;
+    private final Paint mUpcomingPaint;
+    private final Paint mWeatherPaint;
+    private final Paint mLinebreak;
+
+    private final float mYOffset;
+    private final float mLineWidth;
+    private final float mTextPadding;
+    private final float mForecastColumnWidth;
+    private float mXOffset;
+    private float mLineHeight;
+
+    private final Calendar mCalendar;
+    private final SimpleDateFormat mDateFormat;
+
+    /* "H:" or "HH:" */
+    private final char[] mHourChars = new char[3];
+    private int mHourLength;
+    /* "MM" in ambient mode, "MM:SS" in interactive mode */
+    private final char[] mMinuteChars = new char[5];
+    private int mMinuteLength;
+
+    /* Widths of MEASURED_GLYPHS in mHourPaint and mMinutePaint */
+    private final float[] mHourGlyphWidths = new float[MEASURED_GLYPHS.length()];
+    private final float[] mMinuteGlyphWidths = new float[MEASURED_GLYPHS.length()];
+
+    /* The date string, and the day it was built for, as year * 1000 + day of year */
+    private String mDateString;
+    private float mDateWidth;
+    private int mDateDay = -1;
+
+    private Bitmap mWeatherBitmap;
+    private String mHighTemp = "X";
+    private String mLowTemp = "Y";
+    private float mHighTempWidth;
+
+    private final Bitmap[] mUpcomingBitmaps = new Bitmap[UPCOMING_DAY_COUNT];
+    private final String[] mUpcomingHighs = new String[UPCOMING_DAY_COUNT];
+    private int mUpcomingCount;
+
+    private boolean mAmbient;
+
+    /* The ambient profile. These Paints are only ever used in ambient mode. */
+    private final Paint mAmbientHourPaint;
+    private final Paint mAmbientMinutePaint;
+    private final Paint mAmbientWeatherPaint;
+    private final Paint mAmbientGlyphPaint;
+    private final float[] mAmbientHourGlyphWidths = new float[MEASURED_GLYPHS.length()];
+    private final float[] mAmbientMinuteGlyphWidths = new float[MEASURED_GLYPHS.length()];
+    private final int mAmbientIconSize;
+    private boolean mLowBitAmbient;
+    private boolean mBurnInProtection;
+
+    /* Today's weather, pre-rendered for ambient mode */
+    private Bitmap mAmbientWeather;
+    private boolean mAmbientWeatherValid;
+
+    /* Offsets the ambient content moves through on displays that need burn-in protection */
+    private final float[] mBurnInOffsetsX = new float[BURN_IN_STEPS];
+    private final float[] mBurnInOffsetsY = new float[BURN_IN_STEPS];
+
+    /* Background, date and weather, composed offscreen for interactive mode */
+    private Bitmap mStaticLayer;
+    private Canvas mStaticLayerCanvas;
+    private boolean mStaticLayerValid;
+
+    WatchFaceRenderer(Resources resources) {
+        mResources = resources;
+
+        mYOffset = resources.getDimension(R.dimen.digital_y_offset);
+        mLineWidth = resources.getDimension(R.dimen.separator_line_width);
+        mTextPadding = resources.getDimension(R.dimen.text_padding);
+        mForecastColumnWidth = resources.getDimension(R.dimen.forecast_column_width);
+
+        mBackgroundPaint = new Paint();
+        mBackgroundPaint.setColor(resources.getColor(R.color.background));
+
+        int color_text = resources.getColor(R.color.text_white);
+        int color_text_blue = resources.getColor(R.color.text_blue);
+
+        mHourPaint = createTextPaint(color_text, BOLD_TYPEFACE);
+        mMinutePaint = createTextPaint(color_text, NORMAL_TYPEFACE);
+        mDatePaint = createTextPaint(color_text_blue, NORMAL_TYPEFACE);
+        mMaxTempPaint = createTextPaint(color_text, BOLD_TYPEFACE);
+        mMaxTempPaint.setTextAlign(Paint.Align.CENTER);
+        mMinTempPaint = createTextPaint(color_text_blue, NORMAL_TYPEFACE);
+        mMinTempPaint.setTextAlign(Paint.Align.CENTER);
+        mUpcomingPaint = createTextPaint(color_text, NORMAL_TYPEFACE);
+        mWeatherPaint = new Paint();
+        mWeatherPaint.setTextAlign(Paint.Align.CENTER);
+        mLinebreak = new Paint();
+        mLinebreak.setColor(color_text);
+
+        int color_ambient = resources.getColor(R.color.text_white);
+        mAmbientHourPaint = createTextPaint(color_ambient, BOLD_TYPEFACE);
+        mAmbientMinutePaint = createTextPaint(color_ambient, NORMAL_TYPEFACE);
+        mAmbientWeatherPaint = createTextPaint(color_ambient, NORMAL_TYPEFACE);
+        mAmbientGlyphPaint = new Paint();
+        mAmbientGlyphPaint.setColor(color_ambient);
+        mAmbientGlyphPaint.setFilterBitmap(true);
+        mAmbientIconSize = resources.getDimensionPixelSize(R.dimen.ambient_weather_icon_size);
+
+        /* Points evenly spaced around a small circle */
+        float burnInOffset = resources.getDimension(R.dimen.burn_in_offset);
+        for (int i = 0; i < BURN_IN_STEPS; i++) {
+            double angle = 2 * Math.PI * i / BURN_IN_STEPS;
+            mBurnInOffsetsX[i] = (float) (Math.cos(angle) * burnInOffset);
+            mBurnInOffsetsY[i] = (float) (Math.sin(angle) * burnInOffset);
+        }
+
+        mCalendar = Calendar.getInstance();
+        mDateFormat = new SimpleDateFormat("EEE, MMM d yyyy", Locale.getDefault());
+        mDateFormat.setCalendar(mCalendar);
+    }
+
+    private static Paint createTextPaint(int textColor, Typeface typeface) {
+        Paint paint = new Paint();
+        paint.setColor(textColor);
+        paint.setTypeface(typeface);
+        paint.setAntiAlias(true);
+        return paint;
+    }
+
+    /**
+     * Loads the dimensions that have alternate values for round watches.
+     */
+    void setRound(boolean isRound) {
+        mXOffset = mResources.getDimension(isRound ? R.dimen.digital_x_offset_round : R.dimen.digital_x_offset);
+        mLineHeight = mResources.getDimension(isRound ? R.dimen.line_height_round : R.dimen.line_height);
+
+        float bigTextSize = mResources.getDimension(isRound ? R.dimen.big_text_size_round : R.dimen.big_text_size);
+        float smallTextSize = mResources.getDimension(isRound ? R.dimen.small_text_size_round : R.dimen.small_text_size);
+
+        mHourPaint.setTextSize(bigTextSize);
+        mMinutePaint.setTextSize(bigTextSize);
+        mDatePaint.setTextSize(smallTextSize);
+        mUpcomingPaint.setTextSize(smallTextSize);
+        mMaxTempPaint.setTextSize(bigTextSize);
+        mMinTempPaint.setTextSize(bigTextSize);
+        mAmbientHourPaint.setTextSize(bigTextSize);
+        mAmbientMinutePaint.setTextSize(bigTextSize);
+        mAmbientWeatherPaint.setTextSize(smallTextSize);
+
+        /* Every cached width depends on the text size */
+        mHourPaint.getTextWidths(MEASURED_GLYPHS, mHourGlyphWidths);
+        mMinutePaint.getTextWidths(MEASURED_GLYPHS, mMinuteGlyphWidths);
+        mAmbientHourPaint.getTextWidths(MEASURED_GLYPHS, mAmbientHourGlyphWidths);
+        mAmbientMinutePaint.getTextWidths(MEASURED_GLYPHS, mAmbientMinuteGlyphWidths);
+        mHighTempWidth = mMaxTempPaint.measureText(mHighTemp);
+        mDateDay = -1;
+        mStaticLayerValid = false;
+        mAmbientWeatherValid = false;
+    }
+
+    /**
+     * Sets up the ambient profile for the display's properties.
+     *
+     * @param lowBitAmbient    Whether the display uses fewer bits per color in ambient mode. If so,
+     *                         ambient drawing is done without anti-aliasing.
+     * @param burnInProtection Whether the display needs burn-in protection in ambient mode
+     */
+    void setAmbientProperties(boolean lowBitAmbient, boolean burnInProtection) {
+        mLowBitAmbient = lowBitAmbient;
+        mBurnInProtection = burnInProtection;
+
+        mAmbientHourPaint.setAntiAlias(!lowBitAmbient);
+        mAmbientMinutePaint.setAntiAlias(!lowBitAmbient);
+        mAmbientWeatherPaint.setAntiAlias(!lowBitAmbient);
+        mAmbientGlyphPaint.setFilterBitmap(!lowBitAmbient);
+        mAmbientWeatherValid = false;
+    }
+
+    void setAmbient(boolean inAmbientMode) {
+        mAmbient = inAmbientMode;
+    }
+
+    void setTimeZone(TimeZone timeZone) {
+        mCalendar.setTimeZone(timeZone);
+        mDateDay = -1;
+        mStaticLayerValid = false;
+    }
+
+    TimeZone getTimeZone() {
+        return mCalendar.getTimeZone();
+    }
+
+    /**
+     * Sets today's weather. The Strings are already formatted for display.
+     */
+    void setTodaysWeather(Bitmap weatherBitmap, String highTemp, String lowTemp) {
+        mWeatherBitmap = weatherBitmap;
+        mHighTemp = highTemp;
+        mLowTemp = lowTemp;
+        mHighTempWidth = mMaxTempPaint.measureText(highTemp);
+        mStaticLayerValid = false;
+        mAmbientWeatherValid = false;
+    }
+
+    /**
+     * Sets one of the upcoming days shown along the bottom of the watch face.
+     *
+     * @param index    Which day, from 0 to {@link #UPCOMING_DAY_COUNT} - 1
+     * @param icon     The day's weather icon
+     * @param highTemp The day's high, already formatted for display
+     */
+    void setUpcomingDay(int index, Bitmap icon, String highTemp) {
+        mUpcomingBitmaps[index] = icon;
+        mUpcomingHighs[index] = highTemp;
+        mStaticLayerValid = false;
+    }
+
+    void setUpcomingDayCount(int count) {
+        mUpcomingCount = count;
+        mStaticLayerValid = false;
+    }
+
+    /**
+     * Frees the static layer and the ambient weather glyph. The renderer can still be used
+     * afterwards; both are simply rebuilt on the next frame that needs them.
+     */
+    void release() {
+        if (mStaticLayer != null) {
+            mStaticLayer.recycle();
+            mStaticLayer = null;
+            mStaticLayerCanvas = null;
+        }
+        mStaticLayerValid = false;
+
+        if (mAmbientWeather != null) {
+            mAmbientWeather.recycle();
+            mAmbientWeather = null;
+        }
+        mAmbientWeatherValid = false;
+    }
+
+    /**
+     * Draws the watch face for the given time.
+     */
+    void draw(Canvas canvas, Rect bounds, long nowMillis) {
+        mCalendar.setTimeInMillis(nowMillis);
+
+        if (mAmbient) {
+            drawAmbient(canvas, bounds, nowMillis);
+            return;
+        }
+
+        // Draw the background, date and weather.
+        updateDateString();
+        if (!mStaticLayerValid || mStaticLayer == null
+                || mStaticLayer.getWidth() != bounds.width()
+                || mStaticLayer.getHeight() != bounds.height()) {
+            rebuildStaticLayer(bounds);
+        }
+        canvas.drawBitmap(mStaticLayer, bounds.left, bounds.top, null);
+
+        // Draw H:MM:SS.
+        updateTimeChars();
+
+        float hourWidth = measureTime(mHourChars, mHourLength, mHourGlyphWidths);
+        float minuteWidth = measureTime(mMinuteChars, mMinuteLength, mMinuteGlyphWidths);
+
+        float xHours = bounds.centerX() - (hourWidth + minuteWidth) / 2;
+        canvas.drawText(mHourChars, 0, mHourLength, xHours, mYOffset, mHourPaint);
+
+        float xMinutes = xHours + hourWidth;
+        canvas.drawText(mMinuteChars, 0, mMinuteLength, xMinutes, mYOffset, mMinutePaint);
+    }
+
+    /**
+     * The ambient draw path: H:MM and the pre-rendered weather glyph on black, nudged to a new
+     * position every minute on displays that need burn-in protection.
+     */
+    private void drawAmbient(Canvas canvas, Rect bounds, long nowMillis) {
+        canvas.drawColor(Color.BLACK);
+
+        if (!mAmbientWeatherValid) {
+            rebuildAmbientWeather();
+        }
+
+        int saveCount = canvas.save();
+        if (mBurnInProtection) {
+            int step = (int) ((nowMillis / MINUTE_IN_MILLIS) % BURN_IN_STEPS);
+            canvas.translate(mBurnInOffsetsX[step], mBurnInOffsetsY[step]);
+        }
+
+        updateTimeChars();
+
+        float hourWidth = measureTime(mHourChars, mHourLength, mAmbientHourGlyphWidths);
+        float minuteWidth = measureTime(mMinuteChars, mMinuteLength, mAmbientMinuteGlyphWidths);
+
+        float xHours = bounds.centerX() - (hourWidth + minuteWidth) / 2;
+        canvas.drawText(mHourChars, 0, mHourLength, xHours, mYOffset, mAmbientHourPaint);
+        canvas.drawText(mMinuteChars, 0, mMinuteLength, xHours + hourWidth, mYOffset, mAmbientMinutePaint);
+
+        if (mAmbientWeather != null) {
+            float xWeather = bounds.centerX() - mAmbientWeather.getWidth() / 2f;
+            canvas.drawBitmap(mAmbientWeather, xWeather, mYOffset + mLineHeight * 3f, null);
+        }
+
+        canvas.restoreToCount(saveCount);
+    }
+
+    /**
+     * Pre-renders today's weather for ambient mode: a white silhouette of the weather icon
+     * followed by the high and low. This only runs when the weather or the ambient properties
+     * change, never on an ordinary ambient minute.
+     */
+    private void rebuildAmbientWeather() {
+        mAmbientWeatherValid = true;
+        if (mAmbientWeather != null) {
+            mAmbientWeather.recycle();
+            mAmbientWeather = null;
+        }
+
+        /* With burn-in protection, a solid icon lights too many pixels; show the temperatures only */
+        Bitmap icon = mBurnInProtection ? null : mWeatherBitmap;
+        int iconSize = icon == null ? 0 : mAmbientIconSize;
+        float iconSpace = icon == null ? 0 : iconSize + mTextPadding * 2;
+
+        String temperatures = mHighTemp + " " + mLowTemp;
+        float textWidth = mAmbientWeatherPaint.measureText(temperatures);
+        Paint.FontMetricsInt fontMetrics = mAmbientWeatherPaint.getFontMetricsInt();
+        int textHeight = fontMetrics.descent - fontMetrics.ascent;
+
+        int width = (int) Math.ceil(iconSpace + textWidth);
+        int height = Math.max(iconSize, textHeight);
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+
+        Bitmap glyph = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(glyph);
+
+        if (icon != null) {
+            /* Only the icon's shape is kept; mAmbientGlyphPaint colors it white */
+            Bitmap silhouette = icon.extractAlpha();
+            int top = (height - iconSize) / 2;
+            canvas.drawBitmap(silhouette, null, new Rect(0, top, iconSize, top + iconSize), mAmbientGlyphPaint);
+            silhouette.recycle();
+        }
+
+        float baseline = (height - textHeight) / 2f - fontMetrics.ascent;
+        canvas.drawText(temperatures, iconSpace, baseline, mAmbientWeatherPaint);
+
+        if (mLowBitAmbient) {
+            thresholdToOneBit(glyph);
+        }
+        mAmbientWeather = glyph;
+    }
+
+    /**
+     * Makes every pixel of a white glyph either fully opaque or fully transparent, since low-bit
+     * displays can't show the partially transparent edges that scaling leaves behind.
+     */
+    private static void thresholdToOneBit(Bitmap glyph) {
+        int width = glyph.getWidth();
+        int height = glyph.getHeight();
+        int[] pixels = new int[width * height];
+        glyph.getPixels(pixels, 0, width, 0, 0, width, height);
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = Color.alpha(pixels[i]) >= 0x80 ? Color.WHITE : Color.TRANSPARENT;
+        }
+        glyph.setPixels(pixels, 0, width, 0, 0, width, height);
+    }
+
+    /**
+     * Redraws everything except the time into the static layer, creating the layer if it doesn't
+     * exist yet or the surface has changed size.
+     */
+    private void rebuildStaticLayer(Rect bounds) {
+        int width = bounds.width();
+        int height = bounds.height();
+        if (mStaticLayer == null || mStaticLayer.getWidth() != width
+                || mStaticLayer.getHeight() != height) {
+            if (mStaticLayer != null) {
+                mStaticLayer.recycle();
+            }
+            mStaticLayer = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            mStaticLayerCanvas = new Canvas(mStaticLayer);
+        }
+
+        Canvas canvas = mStaticLayerCanvas;
+        float centerX = width / 2f;
+
+        canvas.drawRect(0, 0, width, height, mBackgroundPaint);
+
+        float xDate = centerX - mDateWidth / 2;
+        canvas.drawText(mDateString, xDate, mYOffset + mLineHeight * 2f, mDatePaint);
+
+        canvas.drawLine(centerX - mLineWidth / 2, mYOffset + mLineHeight * 3f, centerX + mLineWidth / 2, mYOffset + mLineHeight *
+                3f + 1, mLinebreak);
+
+        canvas.drawText(mHighTemp, centerX, mYOffset + mLineHeight * 7, mMaxTempPaint);
+        float xMinTemp = centerX + mHighTempWidth;
+        canvas.drawText(mLowTemp, xMinTemp, mYOffset + mLineHeight * 7, mMinTempPaint);
+
+        if (mWeatherBitmap != null) {
+            float xWeather = centerX / 4;
+            canvas.drawBitmap(mWeatherBitmap, xWeather, mYOffset + mLineHeight * 7 - mWeatherBitmap.getHeight() / 2, mWeatherPaint);
+        }
+
+        // Upcoming days, one column each, centered under today's weather.
+        float yUpcoming = mYOffset + mLineHeight * 10.5f;
+        float xFirstColumn = centerX - mForecastColumnWidth * (mUpcomingCount - 1) / 2f;
+        for (int i = 0; i < mUpcomingCount; i++) {
+            float xColumn = xFirstColumn + mForecastColumnWidth * i;
+            Bitmap icon = mUpcomingBitmaps[i];
+            if (icon != null) {
+                canvas.drawBitmap(icon, xColumn - icon.getWidth() - mTextPadding, yUpcoming - icon.getHeight(), mWeatherPaint);
+            }
+            canvas.drawText(mUpcomingHighs[i], xColumn, yUpcoming, mUpcomingPaint);
+        }
+
+        mStaticLayerValid = true;
+    }
+
+    /**
+     * Writes the current time into mHourChars and mMinuteChars.
+     */
+    private void updateTimeChars() {
+        int hour = mCalendar.get(Calendar.HOUR);
+        mHourLength = 0;
+        if (hour >= 10) {
+            mHourChars[mHourLength++] = (char) ('0' + hour / 10);
+        }
+        mHourChars[mHourLength++] = (char) ('0' + hour % 10);
+        mHourChars[mHourLength++] = ':';
+
+        int minute = mCalendar.get(Calendar.MINUTE);
+        mMinuteChars[0] = (char) ('0' + minute / 10);
+        mMinuteChars[1] = (char) ('0' + minute % 10);
+        mMinuteLength = 2;
+
+        if (!mAmbient) {
+            int second = mCalendar.get(Calendar.SECOND);
+            mMinuteChars[2] = ':';
+            mMinuteChars[3] = (char) ('0' + second / 10);
+            mMinuteChars[4] = (char) ('0' + second % 10);
+            mMinuteLength = 5;
+        }
+    }
+
+    /**
+     * Sums the cached widths of a run of digits and colons.
+     */
+    private static float measureTime(char[] chars, int length, float[] glyphWidths) {
+        float width = 0;
+        for (int i = 0; i < length; i++) {
+            char c = chars[i];
+            width += glyphWidths[c == ':' ? COLON_GLYPH : c - '0'];
+        }
+        return width;
+    }
+
+    /**
+     * Rebuilds the date string if the day has changed since it was last built. mCalendar must
+     * already be set to the current time.
+     */
+    private void updateDateString() {
+        int day = mCalendar.get(Calendar.YEAR) * 1000 + mCalendar.get(Calendar.DAY_OF_YEAR);
+        if (day == mDateDay) {
+            return;
+        }
+        mDateDay = day;
+        mDateString = mDateFormat.format(mCalendar.getTime()).toUpperCase();
+        mDateWidth = mDatePaint.measureText(mDateString);
+        mStaticLayerValid = false;
+    }
+}
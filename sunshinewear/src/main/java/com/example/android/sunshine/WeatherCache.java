@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Base64;
+import android.util.Log;
+
+import com.example.android.sunshine.shared.WeatherPayload;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the last weather the phone sent us on disk, so that a new watch face engine can draw real
+ * weather on its very first frame instead of waiting for Google Play services to connect.
+ * <p>
+ * Payloads are stored exactly as the phone encoded them. Along with them we store the last time we
+ * were brought up to date by the phone; only once that is older than {@link #STALE_AFTER_MILLIS}
+ * do we ask the phone to send the weather again. Asking doesn't count as being brought up to date,
+ * since the phone may never answer, so the time we last asked is kept separately and only used to
+ * avoid asking again and again.
+ */
+final class WeatherCache {
+
+    private static final String TAG = WeatherCache.class.getSimpleName();
+
+    /*
+     * The phone syncs every three hours and pushes whenever the weather changes, so if we haven't
+     * heard from it in twice that long, something was probably missed.
+     */
+    static final long STALE_AFTER_MILLIS = TimeUnit.HOURS.toMillis(6);
+
+    /*
+     * If the phone's weather is the same as ours, its answer to a request doesn't reach us at all,
+     * so we stay stale. Don't ask again more often than this.
+     */
+    static final long REQUEST_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+    private static final String PREFS_NAME = "weather_cache";
+
+    private static final String KEY_TODAY = "today";
+    private static final String KEY_RECEIVED_AT = "received_at";
+    private static final String KEY_REQUESTED_AT = "requested_at";
+    private static final String DAY_KEY_PREFIX = "day_";
+
+    private WeatherCache() {
+    }
+
+    private static SharedPreferences getPreferences(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Saves the weather from the phone's single-day weather item.
+     */
+    static void saveToday(Context context, WeatherPayload payload) {
+        getPreferences(context).edit().putString(KEY_TODAY, encode(payload)).apply();
+    }
+
+    /**
+     * Saves one day of the forecast.
+     */
+    static void saveDay(Context context, WeatherPayload payload) {
+        getPreferences(context).edit()
+                .putString(DAY_KEY_PREFIX + payload.getDate(), encode(payload))
+                .apply();
+    }
+
+    /**
+     * Removes one day of the forecast, for example once the phone has dropped it from the window.
+     */
+    static void removeDay(Context context, long date) {
+        getPreferences(context).edit().remove(DAY_KEY_PREFIX + date).apply();
+    }
+
+    /**
+     * Removes every day of the forecast, leaving today's weather in place.
+     */
+    static void clearForecast(Context context) {
+        SharedPreferences sp = getPreferences(context);
+        SharedPreferences.Editor editor = sp.edit();
+        for (String key : sp.getAll().keySet()) {
+            if (key.startsWith(DAY_KEY_PREFIX)) {
+                editor.remove(key);
+            }
+        }
+        editor.apply();
+    }
+
+    /**
+     * Records that we are up to date with the phone, because it just sent us weather.
+     */
+    static void markReceived(Context context, long receivedAtMillis) {
+        getPreferences(context).edit().putLong(KEY_RECEIVED_AT, receivedAtMillis).apply();
+    }
+
+    /**
+     * Records that the phone has our request for the weather. This says nothing about whether
+     * the weather will ever arrive; it only holds back the next request.
+     */
+    static void markRequested(Context context, long requestedAtMillis) {
+        getPreferences(context).edit().putLong(KEY_REQUESTED_AT, requestedAtMillis).apply();
+    }
+
+    /**
+     * @return The cached weather from the single-day item, or null if there is none
+     */
+    static WeatherPayload loadToday(Context context) {
+        return decode(getPreferences(context).getString(KEY_TODAY, null));
+    }
+
+    /**
+     * @return Every cached day of the forecast, keyed by normalized date
+     */
+    static TreeMap<Long, WeatherPayload> loadForecast(Context context) {
+        TreeMap<Long, WeatherPayload> forecast = new TreeMap<>();
+        for (Map.Entry<String, ?> entry : getPreferences(context).getAll().entrySet()) {
+            if (!entry.getKey().startsWith(DAY_KEY_PREFIX)) {
+                continue;
+            }
+            WeatherPayload payload = decode((String) entry.getValue());
+            if (payload != null) {
+                forecast.put(payload.getDate(), payload);
+            }
+        }
+        return forecast;
+    }
+
+    /**
+     * @param context   Used to access SharedPreferences
+     * @param nowMillis The current time
+     * @return true if it has been too long since we heard from the phone, or we never have
+     */
+    static boolean isStale(Context context, long nowMillis) {
+        long receivedAt = getPreferences(context).getLong(KEY_RECEIVED_AT, 0);
+        return nowMillis - receivedAt > STALE_AFTER_MILLIS;
+    }
+
+    /**
+     * @param context   Used to access SharedPreferences
+     * @param nowMillis The current time
+     * @return true if the cache is stale and we haven't asked the phone for the weather recently
+     */
+    static boolean shouldRequest(Context context, long nowMillis) {
+        long requestedAt = getPreferences(context).getLong(KEY_REQUESTED_AT, 0);
+        return isStale(context, nowMillis) && nowMillis - requestedAt > REQUEST_INTERVAL_MILLIS;
+    }
+
+    private static String encode(WeatherPayload payload) {
+        return Base64.encodeToString(payload.encode(), Base64.NO_WRAP);
+    }
+
+    private static WeatherPayload decode(String encoded) {
+        if (encoded == null) {
+            return null;
+        }
+        try {
+            return WeatherPayload.decode(Base64.decode(encoded, Base64.NO_WRAP));
+        } catch (IllegalArgumentException e) {
+            /* Written by an older or newer version of the app; the phone will send it again */
+            Log.w(TAG, "Discarding cached weather: " + e.getMessage());
+            return null;
+        }
+    }
+}